@@ -0,0 +1,143 @@
+package com.digitalserverhost.plugins.listeners;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import be.seeseemelk.mockbukkit.ServerMock;
+import be.seeseemelk.mockbukkit.entity.PlayerMock;
+import com.digitalserverhost.plugins.MCDataBridge;
+import com.digitalserverhost.plugins.managers.DatabaseManager;
+import com.digitalserverhost.plugins.utils.PlayerData;
+import com.digitalserverhost.plugins.utils.PlayerDataFixtures;
+import com.digitalserverhost.plugins.utils.PlayerDataFixtures.Profile;
+import org.bukkit.potion.PotionEffect;
+import org.bukkit.potion.PotionEffectType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * The two sync operations that run on the main thread: capturing a
+ * snapshot when a player leaves and applying loaded data when one joins.
+ * Times are microseconds per player; with {@code -prof gc},
+ * gc.alloc.rate.norm is the bytes allocated per player.
+ * <p>
+ * {@link #toggles} is the set of enabled sync-data keys. Besides the presets,
+ * any comma-separated combination can be passed with
+ * {@code -p toggles=inventory,armor}. Advancements are never synced here:
+ * MockBukkit does not implement them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MainThreadSyncBenchmark {
+
+    private static final String ALL = "health,food-level,experience,inventory,armor,potion-effects,"
+            + "ender-chest,location";
+
+    @Param({ "SURVIVAL", "SHULKERS", "ENCHANTED" })
+    public Profile profile;
+
+    @Param({ "all", "defaults", "items", "stats", "none" })
+    public String toggles;
+
+    private PlayerMock player;
+    private MCDataBridge plugin;
+    private PlayerListener listener;
+    private PlayerData loaded;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ServerMock server = MockBukkit.mock();
+        server.addSimpleWorld("world");
+
+        Set<String> enabled = new HashSet<>(Arrays.asList(expand(toggles).split(",")));
+        plugin = mock(MCDataBridge.class, withSettings().stubOnly());
+        Logger logger = Logger.getLogger("mc-data-bridge.benchmark");
+        logger.setLevel(java.util.logging.Level.WARNING);
+        when(plugin.getLogger()).thenReturn(logger);
+        when(plugin.getServerId()).thenReturn("benchmark");
+        when(plugin.isSyncEnabled(anyString()))
+                .thenAnswer(invocation -> enabled.contains(invocation.getArgument(0)));
+        when(plugin.isSyncEnabledNewFeature(anyString()))
+                .thenAnswer(invocation -> enabled.contains(invocation.getArgument(0)));
+
+        // MockBukkit does not implement saturation and exhaustion
+        player = spy(new PlayerMock(server, "Benchmark", UUID.randomUUID()));
+        doReturn(5.0f).when(player).getSaturation();
+        doReturn(0.0f).when(player).getExhaustion();
+        doNothing().when(player).setSaturation(anyFloat());
+        doNothing().when(player).setExhaustion(anyFloat());
+        server.addPlayer(player);
+
+        player.getInventory().setContents(PlayerDataFixtures.inventory(profile));
+        player.getEnderChest().setContents(PlayerDataFixtures.enderChest(profile));
+        player.setLevel(30);
+        player.addPotionEffect(new PotionEffect(PotionEffectType.SPEED, 6000, 1));
+        player.addPotionEffect(new PotionEffect(PotionEffectType.NIGHT_VISION, 6000, 0));
+
+        listener = new PlayerListener(mock(DatabaseManager.class, withSettings().stubOnly()), plugin);
+        loaded = PlayerDataFixtures.playerData(profile);
+
+        // A failed apply kicks the player, after which every apply returns early
+        listener.applyPlayerData(player, loaded);
+        if (!player.isOnline()) {
+            throw new IllegalStateException("Applying " + profile + " with toggles '" + toggles
+                    + "' kicked the player; see the log above.");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    @Benchmark
+    public PlayerData capture() {
+        return new PlayerData(player, plugin);
+    }
+
+    @Benchmark
+    public PlayerMock apply() {
+        listener.applyPlayerData(player, loaded);
+        return player;
+    }
+
+    private static String expand(String toggles) {
+        return switch (toggles) {
+            case "all" -> ALL;
+            case "defaults" -> "health,food-level,experience,inventory,armor,potion-effects";
+            case "items" -> "inventory,armor,ender-chest";
+            case "stats" -> "health,food-level,experience,potion-effects";
+            case "none" -> "";
+            default -> toggles;
+        };
+    }
+}
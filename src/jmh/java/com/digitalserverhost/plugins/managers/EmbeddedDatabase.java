@@ -0,0 +1,95 @@
+package com.digitalserverhost.plugins.managers;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * An in-memory H2 database in MySQL mode holding the player data table, so
+ * DatabaseManager can be driven without a MySQL server. The table mirrors the
+ * columns the migrations produce; is_locked is a TINYINT, which is what MySQL
+ * stores a BOOLEAN as.
+ */
+public final class EmbeddedDatabase {
+
+    public static final String TABLE = "player_data";
+
+    private EmbeddedDatabase() {
+    }
+
+    /**
+     * Creates (or recreates) the named database and its player data table.
+     */
+    public static HikariDataSource start(String name, int poolSize) throws SQLException {
+        HikariDataSource dataSource = connect(name, poolSize);
+        try (Connection connection = dataSource.getConnection();
+                Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DROP TABLE IF EXISTS `" + TABLE + "`");
+            statement.executeUpdate("CREATE TABLE `" + TABLE + "` (" +
+                    "uuid VARCHAR(36) NOT NULL, " +
+                    "data BLOB NULL, " +
+                    "is_locked TINYINT DEFAULT 0, " +
+                    "locking_server VARCHAR(255) DEFAULT NULL, " +
+                    "lock_timestamp BIGINT DEFAULT 0, " +
+                    "last_updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, " +
+                    "data_version BIGINT NOT NULL DEFAULT 0, " +
+                    "data_size INT NULL, " +
+                    "trace_id BIGINT NULL, " +
+                    "PRIMARY KEY (uuid))");
+        }
+        return dataSource;
+    }
+
+    /**
+     * A further pool on a database created by {@link #start}, as another
+     * server would have.
+     */
+    public static HikariDataSource connect(String name, int poolSize) {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:" + name
+                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        config.setMaximumPoolSize(poolSize);
+        config.setMinimumIdle(poolSize);
+        return new HikariDataSource(config);
+    }
+
+    /**
+     * Inserts unlocked rows for new random players.
+     *
+     * @return their UUIDs.
+     */
+    public static List<UUID> seed(HikariDataSource dataSource, int players, byte[] data) throws SQLException {
+        List<UUID> uuids = new ArrayList<>(players);
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(
+                        "INSERT INTO `" + TABLE + "` (uuid, data, data_size) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < players; i++) {
+                UUID uuid = UUID.randomUUID();
+                statement.setString(1, uuid.toString());
+                statement.setBytes(2, data);
+                statement.setInt(3, data.length);
+                statement.addBatch();
+                uuids.add(uuid);
+            }
+            statement.executeBatch();
+        }
+        return uuids;
+    }
+
+    public static void stop(HikariDataSource dataSource) {
+        try (Connection connection = dataSource.getConnection();
+                Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        } catch (SQLException e) {
+            // The pool is closed below either way
+        }
+        dataSource.close();
+    }
+}
@@ -0,0 +1,146 @@
+package com.digitalserverhost.plugins.managers;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The lock subsystem under contention. Every benchmark thread is a server
+ * with its own server-id, picking random players out of {@link #hotPlayers}:
+ * with one hot player every server fights over the same row, with 1024 they
+ * rarely meet. Raise the number of servers with {@code -t}.
+ * <p>
+ * {@code lockCycle} reports throughput plus acquired and failed lock attempts
+ * per millisecond; {@code lockCycleLatency} samples the same cycle for its
+ * percentiles. Per-statement latencies are printed at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class LockContentionBenchmark {
+
+    private static final long LOCK_TIMEOUT = 60_000;
+    private static final int PAYLOAD_BYTES = 8 * 1024;
+
+    @Param({ "1", "16", "1024" })
+    public int hotPlayers;
+
+    @Param({ "UPDATE_THEN_INSERT", "SELECT_FOR_UPDATE" })
+    public LockStrategy strategy;
+
+    private HikariDataSource dataSource;
+    private DatabaseManager database;
+    private UUID[] players;
+    private String payload;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        dataSource = EmbeddedDatabase.start("lock-contention", 64);
+        database = new DatabaseManager(dataSource, EmbeddedDatabase.TABLE, LOCK_TIMEOUT);
+        payload = "{\"padding\":\"" + "x".repeat(PAYLOAD_BYTES - 14) + "\"}";
+        players = EmbeddedDatabase.seed(dataSource, hotPlayers, payload.getBytes(StandardCharsets.UTF_8))
+                .toArray(new UUID[0]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.getStatementStats().report().forEach(System.out::println);
+        EmbeddedDatabase.stop(dataSource);
+    }
+
+    @State(Scope.Thread)
+    public static class Server {
+        private static final AtomicInteger IDS = new AtomicInteger();
+
+        private final String serverId = "server-" + IDS.incrementAndGet();
+
+        private UUID pick(UUID[] players) {
+            return players[ThreadLocalRandom.current().nextInt(players.length)];
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Outcomes {
+        public long acquired;
+        public long failed;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            acquired = 0;
+            failed = 0;
+        }
+
+        private boolean count(boolean locked) {
+            if (locked) {
+                acquired++;
+            } else {
+                failed++;
+            }
+            return locked;
+        }
+    }
+
+    /**
+     * What a switch does to the lock: acquire, one heartbeat, then save and
+     * release in one statement.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public boolean lockCycle(Server server, Outcomes outcomes) throws SQLException {
+        return outcomes.count(cycle(server));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public boolean lockCycleLatency(Server server) throws SQLException {
+        return cycle(server);
+    }
+
+    /**
+     * Acquire and plain release, without writing data: the lock statements
+     * alone.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public boolean acquireRelease(Server server, Outcomes outcomes) throws SQLException {
+        UUID player = server.pick(players);
+        boolean locked = strategy.acquire(database, player, server.serverId, LOCK_TIMEOUT);
+        if (locked) {
+            database.releaseLock(player, server.serverId);
+        }
+        return outcomes.count(locked);
+    }
+
+    private boolean cycle(Server server) throws SQLException {
+        UUID player = server.pick(players);
+        if (!strategy.acquire(database, player, server.serverId, LOCK_TIMEOUT)) {
+            return false;
+        }
+        database.updateLock(player, server.serverId);
+        return database.saveAndReleaseLock(payload, player, server.serverId);
+    }
+}
@@ -0,0 +1,85 @@
+package com.digitalserverhost.plugins.managers;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+
+/**
+ * Ways of taking a player's lock, compared by {@link LockContentionBenchmark}.
+ * Heartbeats, saves and releases always go through DatabaseManager; only the
+ * acquisition differs.
+ */
+public enum LockStrategy {
+
+    /** DatabaseManager's conditional UPDATE, falling back to an INSERT for new players. */
+    UPDATE_THEN_INSERT {
+        @Override
+        public boolean acquire(DatabaseManager database, UUID uuid, String serverId, long lockTimeout)
+                throws SQLException {
+            return database.acquireLock(uuid, serverId);
+        }
+    },
+
+    /**
+     * Reads the row with SELECT ... FOR UPDATE and takes the lock in the same
+     * transaction. Contending servers queue on the row lock instead of failing
+     * straight away.
+     */
+    SELECT_FOR_UPDATE {
+        @Override
+        public boolean acquire(DatabaseManager database, UUID uuid, String serverId, long lockTimeout)
+                throws SQLException {
+            long currentTime = System.currentTimeMillis();
+            String table = database.getTableName();
+            try (Connection connection = database.getConnection()) {
+                connection.setAutoCommit(false);
+                try {
+                    boolean acquired;
+                    try (PreparedStatement select = connection.prepareStatement(
+                            "SELECT is_locked, lock_timestamp FROM " + table + " WHERE uuid = ? FOR UPDATE")) {
+                        select.setString(1, uuid.toString());
+                        try (ResultSet row = select.executeQuery()) {
+                            if (!row.next()) {
+                                acquired = write(connection, "INSERT INTO " + table
+                                        + " (locking_server, lock_timestamp, uuid, data, is_locked) VALUES (?, ?, ?, NULL, 1)",
+                                        uuid, serverId, currentTime);
+                            } else if (row.getInt(1) == 0 || row.getLong(2) < currentTime - lockTimeout) {
+                                acquired = write(connection, "UPDATE " + table
+                                        + " SET is_locked = 1, locking_server = ?, lock_timestamp = ? WHERE uuid = ?",
+                                        uuid, serverId, currentTime);
+                            } else {
+                                acquired = false;
+                            }
+                        }
+                    }
+                    connection.commit();
+                    return acquired;
+                } catch (SQLException e) {
+                    // Lock wait timeout or a concurrent insert of a new player
+                    connection.rollback();
+                    return false;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            }
+        }
+    };
+
+    /**
+     * @return true if the lock was taken.
+     */
+    public abstract boolean acquire(DatabaseManager database, UUID uuid, String serverId, long lockTimeout)
+            throws SQLException;
+
+    private static boolean write(Connection connection, String sql, UUID uuid, String serverId, long currentTime)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, serverId);
+            statement.setLong(2, currentTime);
+            statement.setString(3, uuid.toString());
+            return statement.executeUpdate() > 0;
+        }
+    }
+}
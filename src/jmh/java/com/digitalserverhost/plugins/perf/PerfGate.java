@@ -0,0 +1,176 @@
+package com.digitalserverhost.plugins.perf;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Runs the key benchmark scenarios and fails if any got slower, or allocates
+ * more per operation, than the committed baseline by more than the threshold.
+ * <p>
+ * The baseline is a JMH JSON result file. A missing or empty baseline, or a
+ * scenario without a matching entry, fails the gate too: record one with
+ * {@code -Dperf.updateBaseline=true} and commit it. Baselines are only
+ * comparable on the machine that recorded them.
+ * <p>
+ * System properties: {@code perf.baseline} (the baseline file),
+ * {@code perf.result} (where this run's results go), {@code perf.threshold}
+ * (allowed regression in percent, default 10) and {@code perf.updateBaseline}.
+ */
+public final class PerfGate {
+
+    // Allocation differences below this are noise, whatever the percentage
+    private static final double ALLOC_SLACK_BYTES = 64;
+    private static final String ALLOC_METRIC = "gc.alloc.rate.norm";
+
+    private PerfGate() {
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        Path baselineFile = Path.of(System.getProperty("perf.baseline", "perf/baseline.json"));
+        Path resultFile = Path.of(System.getProperty("perf.result", "target/perf-result.json"));
+        double threshold = Double.parseDouble(System.getProperty("perf.threshold", "10")) / 100.0;
+        boolean updateBaseline = Boolean.getBoolean("perf.updateBaseline");
+
+        Files.createDirectories(resultFile.toAbsolutePath().getParent());
+        new Runner(scenarios(resultFile)).run();
+
+        if (updateBaseline) {
+            Files.createDirectories(baselineFile.toAbsolutePath().getParent());
+            Files.copy(resultFile, baselineFile, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Recorded a new baseline in " + baselineFile + ". Commit it to make it the reference.");
+            return;
+        }
+
+        Map<String, Score> baseline = Files.exists(baselineFile) ? read(baselineFile) : Map.of();
+        if (baseline.isEmpty()) {
+            System.out.println();
+            System.out.println("No baseline in " + baselineFile + ", so nothing was compared. Record one on this"
+                    + " machine with -Dperf.updateBaseline=true and commit it.");
+            System.exit(1);
+        }
+        Map<String, Score> current = read(resultFile);
+        List<String> regressions = compare(baseline, current, threshold);
+        if (!regressions.isEmpty()) {
+            System.out.println();
+            System.out.println(regressions.size() + " regression(s) over " + Math.round(threshold * 100)
+                    + "% or missing baseline(s) against " + baselineFile + ":");
+            regressions.forEach(line -> System.out.println("  " + line));
+            System.exit(1);
+        }
+        System.out.println("Performance gate passed.");
+    }
+
+    /**
+     * Encoding and decoding a full inventory, the lock cycle on an
+     * uncontended table, and capturing a snapshot with the default toggles.
+     */
+    static Options scenarios(Path resultFile) {
+        return new OptionsBuilder()
+                .include("PlayerDataCodecBenchmark\\.(encodeItems|decodeItems)$")
+                .include("LockContentionBenchmark\\.lockCycle$")
+                .include("MainThreadSyncBenchmark\\.capture$")
+                .param("profile", "SURVIVAL")
+                .param("hotPlayers", "1024")
+                .param("strategy", "UPDATE_THEN_INSERT")
+                .param("toggles", "defaults")
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile.toString())
+                .build();
+    }
+
+    record Score(String mode, double score, String unit, double allocBytes) {
+
+        boolean higherIsBetter() {
+            return "thrpt".equals(mode);
+        }
+    }
+
+    /**
+     * @return every scenario in a JMH JSON result file, keyed by benchmark and
+     *         parameters.
+     */
+    static Map<String, Score> read(Path file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        JsonArray results = JsonParser.parseString(Files.readString(file, StandardCharsets.UTF_8)).getAsJsonArray();
+        for (JsonElement element : results) {
+            JsonObject result = element.getAsJsonObject();
+            Map<String, String> params = new TreeMap<>();
+            if (result.has("params")) {
+                result.getAsJsonObject("params").entrySet()
+                        .forEach(param -> params.put(param.getKey(), param.getValue().getAsString()));
+            }
+            String key = result.get("benchmark").getAsString() + params;
+
+            JsonObject primary = result.getAsJsonObject("primaryMetric");
+            double allocBytes = Double.NaN;
+            JsonObject secondary = result.getAsJsonObject("secondaryMetrics");
+            if (secondary != null && secondary.has(ALLOC_METRIC)) {
+                allocBytes = secondary.getAsJsonObject(ALLOC_METRIC).get("score").getAsDouble();
+            }
+            scores.put(key, new Score(result.get("mode").getAsString(), primary.get("score").getAsDouble(),
+                    primary.get("scoreUnit").getAsString(), allocBytes));
+        }
+        return scores;
+    }
+
+    /**
+     * @return a line per scenario that regressed beyond the threshold or has
+     *         no comparable baseline.
+     */
+    static List<String> compare(Map<String, Score> baseline, Map<String, Score> current, double threshold) {
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            String key = entry.getKey();
+            Score now = entry.getValue();
+            Score before = baseline.get(key);
+            if (before == null || !before.mode().equals(now.mode()) || !before.unit().equals(now.unit())) {
+                System.out.println("No baseline for " + key + ": " + format(now));
+                regressions.add(key + ": no matching baseline entry, record one with -Dperf.updateBaseline=true");
+                continue;
+            }
+
+            double change = (now.score() - before.score()) / before.score();
+            boolean slower = now.higherIsBetter() ? change < -threshold : change > threshold;
+            System.out.println(key + ": " + format(now) + " (baseline " + format(before) + ")");
+            if (slower) {
+                regressions.add(String.format(Locale.ROOT, "%s: %.2f %s, baseline %.2f (%+.1f%%)", key,
+                        now.score(), now.unit(), before.score(), change * 100));
+            }
+
+            if (!Double.isNaN(now.allocBytes()) && !Double.isNaN(before.allocBytes())
+                    && now.allocBytes() - before.allocBytes() > ALLOC_SLACK_BYTES
+                    && now.allocBytes() > before.allocBytes() * (1 + threshold)) {
+                regressions.add(String.format(Locale.ROOT, "%s: allocates %.0f B/op, baseline %.0f B/op", key,
+                        now.allocBytes(), before.allocBytes()));
+            }
+        }
+        return regressions;
+    }
+
+    private static String format(Score score) {
+        String alloc = Double.isNaN(score.allocBytes()) ? ""
+                : String.format(Locale.ROOT, ", %.0f B/op", score.allocBytes());
+        return String.format(Locale.ROOT, "%.2f %s%s", score.score(), score.unit(), alloc);
+    }
+}
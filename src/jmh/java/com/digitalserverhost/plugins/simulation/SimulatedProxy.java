@@ -0,0 +1,340 @@
+package com.digitalserverhost.plugins.simulation;
+
+import be.seeseemelk.mockbukkit.entity.PlayerMock;
+import com.digitalserverhost.plugins.metrics.BridgeMetrics;
+import com.digitalserverhost.plugins.metrics.LatencyHistogram;
+import com.digitalserverhost.plugins.protocol.BridgeCommand;
+import com.digitalserverhost.plugins.protocol.TraceId;
+import com.digitalserverhost.plugins.utils.PlayerDataFixtures;
+import com.digitalserverhost.plugins.utils.PlayerDataFixtures.Profile;
+import net.kyori.adventure.text.Component;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.inventory.ItemStack;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Stands in for the proxy: moves every player between servers the way the
+ * Velocity and BungeeCord listeners do. A switch sends SaveAndRelease to the
+ * source, waits for its Saved acknowledgement, disconnects the player there
+ * and logs them in at the destination.
+ * <p>
+ * Before each switch the player's level is set to the number of switches so
+ * far, and their state is wiped while they are between servers, so whatever
+ * they have after joining can only have come through the bridge. That is the
+ * oracle: a level or item count other than expected is lost data.
+ * <p>
+ * Everything except pre-logins runs on the thread calling {@link #poll},
+ * which must be the mocked server's main thread.
+ */
+public class SimulatedProxy {
+
+    // The real proxies give up waiting for an acknowledgement after this
+    private static final long ACK_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final long RELOG_DELAY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private enum State {
+        CONNECTING, ONLINE, SAVING, RELOGGING
+    }
+
+    private record Message(String serverId, BridgeCommand command) {
+    }
+
+    private static final class SimulatedPlayer {
+        private final PlayerMock player;
+        private State state;
+        private SimulatedServer server;
+        private SimulatedServer destination;
+        private Future<AsyncPlayerPreLoginEvent.Result> login;
+        private long dueNanos;
+        private long switchStartNanos;
+        private long loginStartNanos;
+        private int requestId;
+        private long traceId = TraceId.NONE;
+        private int switches;
+        private int expectedItems = -1;
+
+        private SimulatedPlayer(PlayerMock player, SimulatedServer server) {
+            this.player = player;
+            this.server = server;
+        }
+    }
+
+    private final List<SimulatedServer> servers;
+    private final Profile profile;
+    private final long thinkNanos;
+    private final ExecutorService loginPool;
+    private final Logger logger;
+    private final Random random = new Random();
+    private final Queue<Message> inbox = new ConcurrentLinkedQueue<>();
+    private final List<SimulatedPlayer> players = new ArrayList<>();
+    private final Map<UUID, SimulatedPlayer> byUuid = new HashMap<>();
+    private final Map<Integer, SimulatedPlayer> pendingSaves = new HashMap<>();
+    private int nextRequestId;
+    private boolean switching = true;
+
+    final LatencyHistogram switchLatency = new LatencyHistogram();
+    final LatencyHistogram ackWait = new LatencyHistogram();
+    final LatencyHistogram loginLatency = new LatencyHistogram();
+    long completedSwitches;
+    long refusedLogins;
+    long ackTimeouts;
+    long lostOnJoin;
+
+    public SimulatedProxy(List<SimulatedServer> servers, Profile profile, long thinkMs, ExecutorService loginPool,
+            Logger logger) {
+        this.servers = servers;
+        this.profile = profile;
+        this.thinkNanos = TimeUnit.MILLISECONDS.toNanos(thinkMs);
+        this.loginPool = loginPool;
+        this.logger = logger;
+    }
+
+    /**
+     * Called by a server's control channel, from any thread.
+     */
+    public void receive(String serverId, BridgeCommand command) {
+        inbox.add(new Message(serverId, command));
+    }
+
+    /**
+     * Takes over a player added to the mocked server and connects them to a
+     * random backend.
+     */
+    public void connect(PlayerMock player, long now) {
+        SimulatedPlayer simulated = new SimulatedPlayer(player, servers.get(random.nextInt(servers.size())));
+        players.add(simulated);
+        byUuid.put(player.getUniqueId(), simulated);
+        player.disconnect();
+        login(simulated, now);
+    }
+
+    /**
+     * Stops starting new switches; those in progress still complete.
+     */
+    public void stopSwitching() {
+        switching = false;
+    }
+
+    /**
+     * @return true once no player is between servers.
+     */
+    public boolean isSettled() {
+        for (SimulatedPlayer player : players) {
+            if (player.state != State.ONLINE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * One pass of the proxy's loop: delivers what the servers sent, then moves
+     * every player whose next step is due.
+     */
+    public void poll(long now) {
+        Message message;
+        while ((message = inbox.poll()) != null) {
+            deliver(message, now);
+        }
+
+        for (SimulatedPlayer player : players) {
+            switch (player.state) {
+                case ONLINE -> {
+                    if (switching && now >= player.dueNanos) {
+                        startSwitch(player, now);
+                    }
+                }
+                case SAVING -> {
+                    if (now - player.switchStartNanos > ACK_TIMEOUT_NANOS) {
+                        ackTimeouts++;
+                        pendingSaves.remove(player.requestId);
+                        logger.warning(TraceId.tag(player.traceId) + "No Saved acknowledgement for "
+                                + player.player.getName() + " from " + player.server.getServerId()
+                                + ". Switching anyway.");
+                        leaveSource(player, now);
+                    }
+                }
+                case CONNECTING -> {
+                    if (player.login.isDone()) {
+                        finishLogin(player, now);
+                    }
+                }
+                case RELOGGING -> {
+                    if (now >= player.dueNanos) {
+                        login(player, now);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Disconnects every online player, which saves them on quit.
+     */
+    public void disconnectAll() {
+        for (SimulatedPlayer player : players) {
+            if (player.state == State.ONLINE) {
+                quit(player);
+            }
+        }
+    }
+
+    /**
+     * Calls back for every player with the level and item count they should
+     * have in the database.
+     */
+    public void forEachExpectation(Expectation expectation) {
+        for (SimulatedPlayer player : players) {
+            expectation.check(player.player.getUniqueId(), player.player.getName(), player.switches,
+                    player.expectedItems);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Expectation {
+        void check(UUID uuid, String name, int level, int items);
+    }
+
+    private void deliver(Message message, long now) {
+        BridgeCommand command = message.command();
+        switch (command.getType()) {
+            case BridgeCommand.SAVED -> {
+                SimulatedPlayer player = pendingSaves.remove(command.getRequestId());
+                if (player != null && player.state == State.SAVING) {
+                    ackWait.record((now - player.switchStartNanos) / 1000);
+                    leaveSource(player, now);
+                }
+            }
+            case BridgeCommand.HANDOFF -> {
+                // Relayed to wherever the player is headed, like the real proxies do
+                SimulatedPlayer player = byUuid.get(command.getUuid());
+                if (player != null && player.destination != null) {
+                    player.destination.getListener().handleControlCommand(command);
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void startSwitch(SimulatedPlayer player, long now) {
+        SimulatedServer destination;
+        do {
+            destination = servers.get(random.nextInt(servers.size()));
+        } while (destination == player.server);
+
+        player.switches++;
+        player.player.setLevel(player.switches);
+        player.destination = destination;
+        player.requestId = ++nextRequestId;
+        player.traceId = TraceId.next();
+        player.switchStartNanos = now;
+        player.state = State.SAVING;
+        pendingSaves.put(player.requestId, player);
+        player.server.getListener().handleControlCommand(
+                BridgeCommand.saveAndRelease(player.player.getUniqueId(), player.requestId, player.traceId));
+    }
+
+    private void leaveSource(SimulatedPlayer player, long now) {
+        quit(player);
+        player.server = player.destination;
+        player.destination = null;
+        login(player, now);
+    }
+
+    @SuppressWarnings("deprecation")
+    private void quit(SimulatedPlayer player) {
+        player.server.getListener().onPlayerQuit(new PlayerQuitEvent(player.player, "Switching servers"));
+        player.player.disconnect();
+        // Nothing the player had may survive outside the bridge
+        player.player.setLevel(0);
+        player.player.getInventory().clear();
+        player.player.getEnderChest().clear();
+    }
+
+    private void login(SimulatedPlayer player, long now) {
+        SimulatedServer server = player.server;
+        PlayerMock mock = player.player;
+        player.state = State.CONNECTING;
+        player.loginStartNanos = now;
+        player.login = loginPool.submit(() -> {
+            @SuppressWarnings("deprecation")
+            AsyncPlayerPreLoginEvent event = new AsyncPlayerPreLoginEvent(mock.getName(),
+                    InetAddress.getLoopbackAddress(), mock.getUniqueId());
+            server.getListener().onAsyncPlayerPreLogin(event);
+            return event.getLoginResult();
+        });
+    }
+
+    private void finishLogin(SimulatedPlayer player, long now) {
+        AsyncPlayerPreLoginEvent.Result result;
+        try {
+            result = player.login.get();
+        } catch (InterruptedException | ExecutionException e) {
+            logger.severe("Pre-login of " + player.player.getName() + " failed: " + e);
+            result = AsyncPlayerPreLoginEvent.Result.KICK_OTHER;
+        }
+        if (result != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            refusedLogins++;
+            player.state = State.RELOGGING;
+            player.dueNanos = now + RELOG_DELAY_NANOS;
+            return;
+        }
+        loginLatency.record((now - player.loginStartNanos) / 1000);
+
+        player.player.reconnect();
+        player.server.getListener().onPlayerJoin(new PlayerJoinEvent(player.player, Component.text("Joined")));
+        long joinedNanos = System.nanoTime();
+
+        if (player.expectedItems < 0) {
+            // First join: a new profile, which gets the configured inventory
+            player.player.getInventory().setContents(PlayerDataFixtures.inventory(profile));
+            player.player.getEnderChest().setContents(PlayerDataFixtures.enderChest(profile));
+            player.expectedItems = countItems(player.player);
+        } else {
+            completedSwitches++;
+            switchLatency.record(BridgeMetrics.since(player.switchStartNanos));
+            int level = player.player.getLevel();
+            int items = countItems(player.player);
+            if (level != player.switches || items != player.expectedItems) {
+                lostOnJoin++;
+                logger.warning(TraceId.tag(player.traceId) + player.player.getName() + " joined "
+                        + player.server.getServerId() + " with level " + level + " and " + items
+                        + " items; expected level " + player.switches + " and " + player.expectedItems + " items.");
+            }
+        }
+
+        player.state = State.ONLINE;
+        player.dueNanos = joinedNanos + (long) (thinkNanos * (0.5 + random.nextDouble()));
+    }
+
+    static int countItems(PlayerMock player) {
+        return countItems(player.getInventory().getContents()) + countItems(player.getEnderChest().getContents());
+    }
+
+    static int countItems(ItemStack[] items) {
+        int count = 0;
+        for (ItemStack item : items) {
+            if (item != null && !item.getType().isAir()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
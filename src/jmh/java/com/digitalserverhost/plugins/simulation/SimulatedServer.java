@@ -0,0 +1,82 @@
+package com.digitalserverhost.plugins.simulation;
+
+import be.seeseemelk.mockbukkit.ServerMock;
+import com.digitalserverhost.plugins.MCDataBridge;
+import com.digitalserverhost.plugins.control.ControlServer;
+import com.digitalserverhost.plugins.listeners.PlayerListener;
+import com.digitalserverhost.plugins.managers.DatabaseManager;
+import com.digitalserverhost.plugins.metrics.BridgeMetrics;
+import com.digitalserverhost.plugins.protocol.BridgeCommand;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * One backend: a real PlayerListener with its own server-id, database pool
+ * and metrics, behind a mocked plugin. Everything it sends to the proxy goes
+ * through a mocked control channel into {@link SimulatedProxy#receive}.
+ * <p>
+ * Food level is not synced and only the ender chest of the newer features is:
+ * MockBukkit does not implement saturation, exhaustion or advancements.
+ */
+public class SimulatedServer {
+
+    private final String serverId;
+    private final DatabaseManager database;
+    private final BridgeMetrics metrics = new BridgeMetrics();
+    private final PlayerListener listener;
+
+    public SimulatedServer(String serverId, ServerMock server, DatabaseManager database, SimulatedProxy proxy,
+            boolean handoff, boolean verbose) {
+        this.serverId = serverId;
+        this.database = database;
+
+        // Stub only: a long run would otherwise keep every invocation for verification
+        ControlServer controlServer = mock(ControlServer.class, withSettings().stubOnly());
+        when(controlServer.broadcast(any(BridgeCommand.class))).thenAnswer(invocation -> {
+            proxy.receive(serverId, invocation.getArgument(0));
+            return true;
+        });
+
+        Logger logger = Logger.getLogger("mc-data-bridge." + serverId);
+        logger.setLevel(verbose ? Level.INFO : Level.WARNING);
+
+        MCDataBridge plugin = mock(MCDataBridge.class, withSettings().stubOnly());
+        when(plugin.isEnabled()).thenReturn(true);
+        when(plugin.getServer()).thenReturn(server);
+        when(plugin.getLogger()).thenReturn(logger);
+        when(plugin.getServerId()).thenReturn(serverId);
+        when(plugin.getLockHeartbeatSeconds()).thenReturn(30);
+        when(plugin.awaitSchemaReady()).thenReturn(true);
+        when(plugin.isHandoffEnabled()).thenReturn(handoff);
+        when(plugin.getControlServer()).thenReturn(controlServer);
+        when(plugin.isSyncEnabled(anyString()))
+                .thenAnswer(invocation -> !"food-level".equals(invocation.getArgument(0)));
+        when(plugin.isSyncEnabledNewFeature(anyString()))
+                .thenAnswer(invocation -> "ender-chest".equals(invocation.getArgument(0)));
+
+        this.listener = new PlayerListener(database, plugin, metrics);
+    }
+
+    public String getServerId() {
+        return serverId;
+    }
+
+    public DatabaseManager getDatabase() {
+        return database;
+    }
+
+    public BridgeMetrics getMetrics() {
+        return metrics;
+    }
+
+    public PlayerListener getListener() {
+        return listener;
+    }
+}
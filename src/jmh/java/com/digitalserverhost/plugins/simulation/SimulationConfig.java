@@ -0,0 +1,67 @@
+package com.digitalserverhost.plugins.simulation;
+
+import com.digitalserverhost.plugins.utils.PlayerDataFixtures.Profile;
+
+import java.util.Locale;
+
+/**
+ * Settings of a {@link SwitchSimulator} run, parsed from
+ * {@code --name value} arguments.
+ *
+ * @param servers      backend servers, each with its own server-id and pool.
+ * @param players      simulated players.
+ * @param thinkMs      mean time a player stays on a server between switches;
+ *                     each stay is drawn uniformly from half to one and a half
+ *                     times this.
+ * @param durationMs   how long players keep switching.
+ * @param profile      the inventory every player carries, which sets the
+ *                     payload size.
+ * @param handoff      whether source servers hand their snapshot to the
+ *                     destination through the proxy.
+ * @param loginThreads threads running pre-logins, which block while waiting
+ *                     for a lock.
+ * @param verbose      log at INFO instead of WARNING.
+ */
+public record SimulationConfig(int servers, int players, long thinkMs, long durationMs, Profile profile,
+        boolean handoff, int loginThreads, boolean verbose) {
+
+    public static final String USAGE = "Options: --servers N (4), --players N (1000), --think-ms MS (2000), "
+            + "--duration-s S (60), --profile EMPTY|SURVIVAL|SHULKERS|ENCHANTED|ADVANCEMENTS (SURVIVAL), "
+            + "--handoff, --login-threads N (64), --verbose";
+
+    public static SimulationConfig parse(String[] args) {
+        int servers = 4;
+        int players = 1000;
+        long thinkMs = 2000;
+        long durationMs = 60_000;
+        Profile profile = Profile.SURVIVAL;
+        boolean handoff = false;
+        int loginThreads = 64;
+        boolean verbose = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--servers" -> servers = Integer.parseInt(value(args, ++i));
+                case "--players" -> players = Integer.parseInt(value(args, ++i));
+                case "--think-ms" -> thinkMs = Long.parseLong(value(args, ++i));
+                case "--duration-s" -> durationMs = Long.parseLong(value(args, ++i)) * 1000;
+                case "--profile" -> profile = Profile.valueOf(value(args, ++i).toUpperCase(Locale.ROOT));
+                case "--handoff" -> handoff = true;
+                case "--login-threads" -> loginThreads = Integer.parseInt(value(args, ++i));
+                case "--verbose" -> verbose = true;
+                default -> throw new IllegalArgumentException("Unknown option '" + args[i] + "'. " + USAGE);
+            }
+        }
+        if (servers < 2) {
+            throw new IllegalArgumentException("At least 2 servers are needed to switch between.");
+        }
+        return new SimulationConfig(servers, players, thinkMs, durationMs, profile, handoff, loginThreads, verbose);
+    }
+
+    private static String value(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[index - 1] + ". " + USAGE);
+        }
+        return args[index];
+    }
+}
@@ -0,0 +1,217 @@
+package com.digitalserverhost.plugins.simulation;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import be.seeseemelk.mockbukkit.ServerMock;
+import com.digitalserverhost.plugins.MCDataBridge;
+import com.digitalserverhost.plugins.managers.DatabaseManager;
+import com.digitalserverhost.plugins.managers.EmbeddedDatabase;
+import com.digitalserverhost.plugins.metrics.BridgeMetrics;
+import com.digitalserverhost.plugins.utils.PlayerData;
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+import java.util.logging.Logger;
+
+/**
+ * Offline simulation of a network: several backends running the real
+ * PlayerListener over one embedded database, and a proxy stand-in moving
+ * thousands of players between them. Reports switch latency, lock waits,
+ * kicks and any data the oracle finds missing, on joins and in the final
+ * database state. Exits with status 1 if data was lost, so it can guard the
+ * handshake in CI.
+ * <p>
+ * Run with {@code mvn -P benchmarks test-compile exec:exec@simulate}, passing
+ * options through {@code -Dsim.args="..."}; see {@link SimulationConfig}.
+ * Prefetching is off: with a single mocked server the destination would see
+ * the player as still online and skip it.
+ */
+public final class SwitchSimulator {
+
+    private static final String DATABASE = "switch-simulator";
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long SETTLE_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private SwitchSimulator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        SimulationConfig config = SimulationConfig.parse(args);
+        Logger logger = Logger.getLogger("mc-data-bridge.simulator");
+        ServerMock server = MockBukkit.mock();
+        ExecutorService loginPool = Executors.newFixedThreadPool(config.loginThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "simulated-login");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        HikariDataSource schema = EmbeddedDatabase.start(DATABASE, 1);
+        List<HikariDataSource> pools = new ArrayList<>();
+        List<SimulatedServer> servers = new ArrayList<>();
+        SimulatedProxy proxy = new SimulatedProxy(servers, config.profile(), config.thinkMs(), loginPool, logger);
+        for (int i = 1; i <= config.servers(); i++) {
+            HikariDataSource pool = EmbeddedDatabase.connect(DATABASE, 10);
+            pools.add(pool);
+            servers.add(new SimulatedServer("server-" + i, server, new DatabaseManager(pool, EmbeddedDatabase.TABLE,
+                    60_000), proxy, config.handoff(), config.verbose()));
+        }
+
+        System.out.println("Simulating " + config.players() + " players on " + config.servers() + " servers for "
+                + config.durationMs() / 1000 + " s: think time " + config.thinkMs() + " ms, " + config.profile()
+                + " inventories, handoff " + (config.handoff() ? "on" : "off") + ".");
+
+        int exitCode;
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < config.players(); i++) {
+                proxy.connect(server.addPlayer(), start);
+            }
+
+            long end = start + TimeUnit.MILLISECONDS.toNanos(config.durationMs());
+            run(server, proxy, end, false);
+            long switchingNanos = System.nanoTime() - start;
+
+            proxy.stopSwitching();
+            run(server, proxy, System.nanoTime() + SETTLE_NANOS, true);
+            proxy.disconnectAll();
+            awaitUnlocked(schema);
+
+            Verification verification = verify(schema, proxy);
+            report(proxy, servers, switchingNanos, verification);
+            exitCode = proxy.lostOnJoin > 0 || verification.mismatched() > 0 || verification.missing() > 0
+                    || verification.locked() > 0 ? 1 : 0;
+        } finally {
+            loginPool.shutdownNow();
+            MockBukkit.unmock();
+            pools.forEach(HikariDataSource::close);
+            EmbeddedDatabase.stop(schema);
+        }
+        System.exit(exitCode);
+    }
+
+    /**
+     * Runs the proxy and the server's ticks until the deadline, or until every
+     * player is settled on a server.
+     */
+    private static void run(ServerMock server, SimulatedProxy proxy, long deadline, boolean untilSettled)
+            throws InterruptedException {
+        long nextTick = System.nanoTime();
+        long now;
+        while ((now = System.nanoTime()) < deadline) {
+            proxy.poll(now);
+            if (now >= nextTick) {
+                server.getScheduler().performTicks(1);
+                nextTick = now + TICK_NANOS;
+            }
+            if (untilSettled && proxy.isSettled()) {
+                return;
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Waits for the saves of the final disconnects, which run asynchronously.
+     */
+    private static void awaitUnlocked(HikariDataSource database) throws SQLException, InterruptedException {
+        long deadline = System.nanoTime() + SETTLE_NANOS;
+        while (System.nanoTime() < deadline) {
+            try (Connection connection = database.getConnection();
+                    PreparedStatement statement = connection.prepareStatement(
+                            "SELECT COUNT(*) FROM `" + EmbeddedDatabase.TABLE + "` WHERE is_locked = 1");
+                    ResultSet count = statement.executeQuery()) {
+                if (count.next() && count.getLong(1) == 0) {
+                    return;
+                }
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    private record Verification(int mismatched, int locked, int missing) {
+    }
+
+    /**
+     * Compares every player's row against the oracle.
+     */
+    private static Verification verify(HikariDataSource database, SimulatedProxy proxy) throws SQLException {
+        AtomicInteger mismatched = new AtomicInteger();
+        AtomicInteger locked = new AtomicInteger();
+        AtomicInteger missing = new AtomicInteger();
+        try (Connection connection = database.getConnection();
+                PreparedStatement statement = connection.prepareStatement(
+                        "SELECT data, is_locked, locking_server FROM `" + EmbeddedDatabase.TABLE + "` WHERE uuid = ?")) {
+            proxy.forEachExpectation((uuid, name, level, items) -> {
+                try {
+                    statement.setString(1, uuid.toString());
+                    try (ResultSet row = statement.executeQuery()) {
+                        if (!row.next() || row.getBytes("data") == null) {
+                            missing.incrementAndGet();
+                            System.out.println("  " + name + ": no saved data");
+                            return;
+                        }
+                        if (row.getInt("is_locked") != 0) {
+                            locked.incrementAndGet();
+                            System.out.println("  " + name + ": still locked by " + row.getString("locking_server"));
+                        }
+                        PlayerData data = MCDataBridge.getGson().fromJson(
+                                new String(row.getBytes("data"), StandardCharsets.UTF_8), PlayerData.class);
+                        int savedItems = SimulatedProxy.countItems(data.getInventoryContents())
+                                + SimulatedProxy.countItems(data.getEnderChestContents());
+                        if (data.getLevel() != level || savedItems != items) {
+                            mismatched.incrementAndGet();
+                            System.out.println("  " + name + ": saved level " + data.getLevel() + " and " + savedItems
+                                    + " items; expected level " + level + " and " + items + " items");
+                        }
+                    }
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Could not read " + name + "'s row", e);
+                }
+            });
+        }
+        return new Verification(mismatched.get(), locked.get(), missing.get());
+    }
+
+    private static void report(SimulatedProxy proxy, List<SimulatedServer> servers, long switchingNanos,
+            Verification verification) {
+        double seconds = switchingNanos / 1e9;
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "%d switches in %.1f s (%.1f/s)", proxy.completedSwitches,
+                seconds, proxy.completedSwitches / seconds));
+        System.out.println("Switch, request to data applied (us): " + proxy.switchLatency.summary());
+        System.out.println("  save acknowledged (us):            " + proxy.ackWait.summary());
+        System.out.println("  destination pre-login (us):        " + proxy.loginLatency.summary());
+        System.out.println("Lock waits: " + sum(servers, metrics -> metrics.lockWaits.sum())
+                + ", kicks: " + sum(servers, metrics -> metrics.kicks.sum())
+                + ", refused logins: " + proxy.refusedLogins
+                + ", unacknowledged saves: " + proxy.ackTimeouts);
+        System.out.println("Failed saves: " + sum(servers, metrics -> metrics.failedSaves.sum())
+                + ", saves without the lock: " + sum(servers, metrics -> metrics.lostLockSaves.sum()));
+        for (SimulatedServer server : servers) {
+            BridgeMetrics metrics = server.getMetrics();
+            System.out.println("  " + server.getServerId() + ": lock " + metrics.lockAcquire.summary()
+                    + " | save " + metrics.save.summary());
+        }
+        System.out.println("Data loss on join: " + proxy.lostOnJoin + ", final rows wrong: "
+                + verification.mismatched() + ", missing: " + verification.missing() + ", still locked: "
+                + verification.locked());
+    }
+
+    private static long sum(List<SimulatedServer> servers, ToLongFunction<BridgeMetrics> counter) {
+        AtomicLong total = new AtomicLong();
+        servers.forEach(server -> total.addAndGet(counter.applyAsLong(server.getMetrics())));
+        return total.get();
+    }
+}
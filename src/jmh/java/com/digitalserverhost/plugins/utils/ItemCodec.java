@@ -0,0 +1,130 @@
+package com.digitalserverhost.plugins.utils;
+
+import com.digitalserverhost.plugins.MCDataBridge;
+import com.digitalserverhost.plugins.utils.PlayerData.SerializableItemStack;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Ways of encoding an inventory, compared side by side by
+ * {@link ItemCodecBenchmark}. {@link #NESTED_JSON} is the format PlayerData
+ * stores today; the others are candidates.
+ */
+public enum ItemCodec {
+
+    /** Each item as a SerializableItemStack JSON string, inside a JSON array. */
+    NESTED_JSON {
+        @Override
+        public String encode(ItemStack[] items) {
+            List<String> encoded = new ArrayList<>(items.length);
+            for (ItemStack item : items) {
+                encoded.add(isEmpty(item) ? null : GSON.toJson(new SerializableItemStack(item)));
+            }
+            return GSON.toJson(encoded);
+        }
+
+        @Override
+        public ItemStack[] decode(String encoded) {
+            List<String> strings = GSON.fromJson(encoded, STRING_LIST);
+            ItemStack[] items = new ItemStack[strings.size()];
+            for (int i = 0; i < items.length; i++) {
+                String item = strings.get(i);
+                items[i] = item == null ? air() : GSON.fromJson(item, SerializableItemStack.class).toItemStack();
+            }
+            return items;
+        }
+    },
+
+    /** Each item's bytes as a plain Base64 string, without the wrapper object. */
+    BASE64_ARRAY {
+        @Override
+        public String encode(ItemStack[] items) {
+            List<String> encoded = new ArrayList<>(items.length);
+            for (ItemStack item : items) {
+                encoded.add(isEmpty(item) ? null : Base64.getEncoder().encodeToString(item.serializeAsBytes()));
+            }
+            return GSON.toJson(encoded);
+        }
+
+        @Override
+        public ItemStack[] decode(String encoded) {
+            List<String> strings = GSON.fromJson(encoded, STRING_LIST);
+            ItemStack[] items = new ItemStack[strings.size()];
+            for (int i = 0; i < items.length; i++) {
+                String item = strings.get(i);
+                items[i] = item == null ? air() : ItemStack.deserializeBytes(Base64.getDecoder().decode(item));
+            }
+            return items;
+        }
+    },
+
+    /** All items length-prefixed in one GZIP stream, as a single Base64 string. */
+    GZIP_BLOB {
+        @Override
+        public String encode(ItemStack[] items) {
+            try {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(buffer))) {
+                    out.writeInt(items.length);
+                    for (ItemStack item : items) {
+                        byte[] bytes = isEmpty(item) ? new byte[0] : item.serializeAsBytes();
+                        out.writeInt(bytes.length);
+                        out.write(bytes);
+                    }
+                }
+                return Base64.getEncoder().encodeToString(buffer.toByteArray());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public ItemStack[] decode(String encoded) {
+            byte[] compressed = Base64.getDecoder().decode(encoded);
+            try (DataInputStream in = new DataInputStream(
+                    new GZIPInputStream(new ByteArrayInputStream(compressed)))) {
+                ItemStack[] items = new ItemStack[in.readInt()];
+                for (int i = 0; i < items.length; i++) {
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    items[i] = bytes.length == 0 ? air() : ItemStack.deserializeBytes(bytes);
+                }
+                return items;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    };
+
+    private static final Gson GSON = MCDataBridge.getGson();
+    private static final Type STRING_LIST = new TypeToken<List<String>>() {
+    }.getType();
+
+    public abstract String encode(ItemStack[] items);
+
+    public abstract ItemStack[] decode(String encoded);
+
+    // Not a constant: the enum is loaded before the benchmark starts the mock server
+    private static ItemStack air() {
+        return new ItemStack(Material.AIR);
+    }
+
+    private static boolean isEmpty(ItemStack item) {
+        return item == null || item.getType().isAir();
+    }
+}
@@ -0,0 +1,69 @@
+package com.digitalserverhost.plugins.utils;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import com.digitalserverhost.plugins.utils.PlayerDataFixtures.Profile;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inventory codecs side by side, on the same fixtures. Run with
+ * {@code -prof gc} (the default in the benchmarks profile) to compare
+ * allocation per operation as well as throughput; the encoded size of each
+ * codec is printed at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItemCodecBenchmark {
+
+    @Param({ "NESTED_JSON", "BASE64_ARRAY", "GZIP_BLOB" })
+    public ItemCodec codec;
+
+    @Param({ "SURVIVAL", "SHULKERS", "ENCHANTED" })
+    public Profile profile;
+
+    private ItemStack[] items;
+    private String encoded;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        MockBukkit.mock();
+        items = PlayerDataFixtures.inventory(profile);
+        encoded = codec.encode(items);
+        System.out.println(codec + "/" + profile + ": " + encoded.getBytes(StandardCharsets.UTF_8).length
+                + " bytes");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    @Benchmark
+    public String encode() {
+        return codec.encode(items);
+    }
+
+    @Benchmark
+    public ItemStack[] decode() {
+        return codec.decode(encoded);
+    }
+}
@@ -0,0 +1,94 @@
+package com.digitalserverhost.plugins.utils;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import com.digitalserverhost.plugins.MCDataBridge;
+import com.digitalserverhost.plugins.utils.PlayerData.SerializableItemStack;
+import com.digitalserverhost.plugins.utils.PlayerDataFixtures.Profile;
+import com.google.gson.Gson;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of a whole PlayerData, split the way the save and
+ * load paths run it: items to SerializableItemStack strings (main thread on
+ * save, async on load), then the outer Gson pass (async).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlayerDataCodecBenchmark {
+
+    @Param({ "EMPTY", "SURVIVAL", "SHULKERS", "ENCHANTED", "ADVANCEMENTS" })
+    public Profile profile;
+
+    private final Gson gson = MCDataBridge.getGson();
+    private ItemStack[] inventory;
+    private PlayerData data;
+    private String json;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        MockBukkit.mock();
+        inventory = PlayerDataFixtures.inventory(profile);
+        json = PlayerDataFixtures.json(profile);
+        data = gson.fromJson(json, PlayerData.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    @Benchmark
+    public void encodeItems(Blackhole blackhole) {
+        for (ItemStack item : inventory) {
+            if (item != null && !item.getType().isAir()) {
+                blackhole.consume(gson.toJson(new SerializableItemStack(item)));
+            }
+        }
+    }
+
+    @Benchmark
+    public ItemStack[] decodeItems() {
+        return data.getInventoryContents();
+    }
+
+    @Benchmark
+    public String encodeJson() {
+        return gson.toJson(data, PlayerData.class);
+    }
+
+    @Benchmark
+    public PlayerData decodeJson() {
+        return gson.fromJson(json, PlayerData.class);
+    }
+
+    /**
+     * What a load costs end to end: the outer parse, then every item.
+     */
+    @Benchmark
+    public void decodeAll(Blackhole blackhole) {
+        PlayerData parsed = gson.fromJson(json, PlayerData.class);
+        blackhole.consume(parsed.getInventoryContents());
+        blackhole.consume(parsed.getArmorContents());
+        blackhole.consume(parsed.getEnderChestContents());
+    }
+}
@@ -0,0 +1,182 @@
+package com.digitalserverhost.plugins.utils;
+
+import com.digitalserverhost.plugins.MCDataBridge;
+import com.digitalserverhost.plugins.utils.PlayerData.SerializableItemStack;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Material;
+import org.bukkit.block.ShulkerBox;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.BlockStateMeta;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Realistic player profiles for the benchmarks. Items are built with
+ * MockBukkit's ItemStack support, so a mocked server must be running.
+ */
+public final class PlayerDataFixtures {
+
+    public enum Profile {
+        /** A new player: nothing in any inventory. */
+        EMPTY,
+        /** 36 slots of mixed survival gear and stacks, armor, a half-full ender chest. */
+        SURVIVAL,
+        /** 27 shulker boxes in the inventory, each holding a full survival load. */
+        SHULKERS,
+        /** Every slot a heavily enchanted, renamed item with ten lines of lore. */
+        ENCHANTED,
+        /** A survival inventory plus 1,500 advancements with their criteria. */
+        ADVANCEMENTS
+    }
+
+    private static final Gson GSON = MCDataBridge.getGson();
+    private static final int INVENTORY_SIZE = 41; // 36 storage, 4 armor, 1 offhand
+    private static final int ENDER_CHEST_SIZE = 27;
+
+    private static final Material[] SURVIVAL_ITEMS = { Material.DIAMOND_SWORD, Material.DIAMOND_PICKAXE,
+            Material.IRON_AXE, Material.BOW, Material.ARROW, Material.COOKED_BEEF, Material.TORCH,
+            Material.COBBLESTONE, Material.OAK_LOG, Material.IRON_INGOT, Material.REDSTONE, Material.BREAD,
+            Material.WATER_BUCKET, Material.SHIELD, Material.ENDER_PEARL, Material.OAK_PLANKS };
+
+    private PlayerDataFixtures() {
+    }
+
+    public static ItemStack[] inventory(Profile profile) {
+        ItemStack[] items = new ItemStack[INVENTORY_SIZE];
+        switch (profile) {
+            case EMPTY -> {
+            }
+            case SURVIVAL, ADVANCEMENTS -> fillSurvival(items, 36);
+            case SHULKERS -> {
+                for (int i = 0; i < 27; i++) {
+                    items[i] = shulkerBox(i);
+                }
+            }
+            case ENCHANTED -> {
+                for (int i = 0; i < 36; i++) {
+                    items[i] = enchantedItem(i);
+                }
+            }
+        }
+        if (profile != Profile.EMPTY) {
+            items[36] = new ItemStack(Material.DIAMOND_BOOTS);
+            items[37] = new ItemStack(Material.DIAMOND_LEGGINGS);
+            items[38] = new ItemStack(Material.DIAMOND_CHESTPLATE);
+            items[39] = new ItemStack(Material.DIAMOND_HELMET);
+            items[40] = new ItemStack(Material.SHIELD);
+        }
+        return items;
+    }
+
+    public static ItemStack[] enderChest(Profile profile) {
+        ItemStack[] items = new ItemStack[ENDER_CHEST_SIZE];
+        if (profile != Profile.EMPTY) {
+            fillSurvival(items, ENDER_CHEST_SIZE / 2);
+        }
+        return items;
+    }
+
+    /**
+     * The profile as saved: built the way a load parses it, so the benchmarks
+     * do not depend on capturing from a live player.
+     */
+    public static PlayerData playerData(Profile profile) {
+        return GSON.fromJson(json(profile), PlayerData.class);
+    }
+
+    public static String json(Profile profile) {
+        JsonObject root = new JsonObject();
+        root.addProperty("health", 20.0);
+        root.addProperty("foodLevel", 20);
+        root.addProperty("saturation", 5.0f);
+        root.addProperty("totalExperience", 1395);
+        root.addProperty("exp", 0.5f);
+        root.addProperty("level", 30);
+        ItemStack[] inventory = inventory(profile);
+        root.add("inventoryContentsNBT", encodeItems(inventory));
+        root.add("armorContentsNBT", encodeItems(Arrays.copyOfRange(inventory, 36, 40)));
+        root.add("enderChestContentsNBT", encodeItems(enderChest(profile)));
+        root.add("potionEffects", new JsonArray());
+
+        JsonArray recipes = new JsonArray();
+        JsonObject advancements = new JsonObject();
+        if (profile == Profile.ADVANCEMENTS) {
+            for (int i = 0; i < 1500; i++) {
+                JsonArray criteria = new JsonArray();
+                for (int c = 0; c <= i % 4; c++) {
+                    criteria.add("criterion_" + c);
+                }
+                advancements.add("minecraft:generated/advancement_" + i, criteria);
+                if (i % 2 == 0) {
+                    recipes.add("minecraft:recipe_" + i);
+                }
+            }
+        }
+        root.add("discoveredRecipes", recipes);
+        root.add("advancements", advancements);
+        return GSON.toJson(root);
+    }
+
+    /**
+     * Encodes items the way PlayerData does: each non-empty item as a
+     * SerializableItemStack JSON string, empty slots as null.
+     */
+    public static JsonArray encodeItems(ItemStack[] items) {
+        JsonArray array = new JsonArray();
+        for (ItemStack item : items) {
+            if (item != null && !item.getType().isAir()) {
+                array.add(GSON.toJson(new SerializableItemStack(item)));
+            } else {
+                array.add((String) null);
+            }
+        }
+        return array;
+    }
+
+    private static void fillSurvival(ItemStack[] items, int count) {
+        for (int i = 0; i < count; i++) {
+            Material material = SURVIVAL_ITEMS[i % SURVIVAL_ITEMS.length];
+            items[i] = new ItemStack(material, Math.min(material.getMaxStackSize(), 1 + i * 7 % 64));
+        }
+    }
+
+    private static ItemStack enchantedItem(int index) {
+        ItemStack item = new ItemStack(index % 2 == 0 ? Material.NETHERITE_SWORD : Material.NETHERITE_PICKAXE);
+        ItemMeta meta = item.getItemMeta();
+        meta.displayName(Component.text("Relic of the Deep #" + index));
+        List<Component> lore = new ArrayList<>();
+        for (int line = 0; line < 10; line++) {
+            lore.add(Component.text("Forged in the " + line + "th age, it remembers every hand that held it."));
+        }
+        meta.lore(lore);
+        meta.addEnchant(Enchantment.SHARPNESS, 5, true);
+        meta.addEnchant(Enchantment.UNBREAKING, 3, true);
+        meta.addEnchant(Enchantment.MENDING, 1, true);
+        meta.addEnchant(Enchantment.LOOTING, 3, true);
+        meta.addEnchant(Enchantment.FIRE_ASPECT, 2, true);
+        meta.addEnchant(Enchantment.EFFICIENCY, 5, true);
+        item.setItemMeta(meta);
+        return item;
+    }
+
+    private static ItemStack shulkerBox(int index) {
+        ItemStack box = new ItemStack(Material.SHULKER_BOX);
+        // Fall back to a plain box where the mock server has no block state meta
+        if (box.getItemMeta() instanceof BlockStateMeta meta && meta.getBlockState() instanceof ShulkerBox shulker) {
+            ItemStack[] contents = new ItemStack[27];
+            fillSurvival(contents, 27);
+            contents[index % 27] = enchantedItem(index);
+            shulker.getInventory().setContents(contents);
+            meta.setBlockState(shulker);
+            box.setItemMeta(meta);
+        }
+        return box;
+    }
+}
@@ -1,19 +1,36 @@
 package com.digitalserverhost.plugins;
 
+import com.digitalserverhost.plugins.commands.DataBridgeCommand;
+import com.digitalserverhost.plugins.commands.LargestCommand;
+import com.digitalserverhost.plugins.commands.LocksCommand;
+import com.digitalserverhost.plugins.commands.ReleaseCommand;
+import com.digitalserverhost.plugins.commands.StatsCommand;
+import com.digitalserverhost.plugins.commands.UnlockCommand;
+import com.digitalserverhost.plugins.control.ControlServer;
 import com.digitalserverhost.plugins.listeners.PlayerListener;
 import com.digitalserverhost.plugins.managers.DatabaseManager;
+import com.digitalserverhost.plugins.managers.LockReaper;
+import com.digitalserverhost.plugins.managers.PlayerNameIndex;
+import com.digitalserverhost.plugins.managers.SchemaManager;
+import com.digitalserverhost.plugins.metrics.BridgeMetrics;
+import com.digitalserverhost.plugins.metrics.MetricsHttpServer;
+import com.digitalserverhost.plugins.metrics.StatementStats;
+import com.digitalserverhost.plugins.protocol.BridgeCommand;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import org.bukkit.plugin.java.JavaPlugin;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.Statement;
+import java.io.File;
+import java.io.IOException;
 
 public class MCDataBridge extends JavaPlugin {
 
     private DatabaseManager databaseManager;
+    private SchemaManager schemaManager;
+    private ControlServer controlServer;
+    private PlayerNameIndex nameIndex;
+    private final BridgeMetrics metrics = new BridgeMetrics();
+    private MetricsHttpServer metricsHttpServer;
     private boolean debugMode;
     private String serverId;
     private String tableName;
@@ -37,21 +54,42 @@ public class MCDataBridge extends JavaPlugin {
             getLogger().warning("!!! This is UNSAFE for multi-server setups.           !!!");
             getLogger().warning("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
         }
-        databaseManager = new DatabaseManager(getConfig(), this.tableName);
-
-        getServer().getScheduler().runTaskAsynchronously(this, this::createServerTable);
-        getServer().getScheduler().runTaskAsynchronously(this, this::releaseOrphanedLocks);
+        StatementStats statementStats = new StatementStats(metrics.getRegistry(), getLogger());
+        statementStats.setSlowThresholdMs(getConfig().getLong("slow-statement-ms", 250));
+        databaseManager = new DatabaseManager(getConfig(), this.tableName, statementStats);
+        schemaManager = new SchemaManager(databaseManager, this.tableName, getConfig(), getLogger());
+        nameIndex = new PlayerNameIndex(databaseManager, getConfig().getInt("name-cache-size", 10000));
+        metrics.registerPool(databaseManager::getPoolMXBean);
+        metrics.mainThread.setBudgetNanos((long) (getConfig().getDouble("main-thread-budget-ms", 5.0) * 1_000_000));
+
+        // Players are held at pre-login until the blocking migrations are done
+        // and the locks left by this server's previous run are released
+        getServer().getScheduler().runTaskAsynchronously(this, () -> {
+            if (!schemaManager.migrate(this::releaseOrphanedLocks)) {
+                getServer().getScheduler().runTask(this, () -> getServer().getPluginManager().disablePlugin(this));
+                return;
+            }
+            startLockReaper();
+            schemaManager.runBackgroundMigrations();
+        });
 
         // Create the listener instance
-        PlayerListener playerListener = new PlayerListener(databaseManager, this);
+        PlayerListener playerListener = new PlayerListener(databaseManager, this, metrics);
 
         // Register its Bukkit events
         getServer().getPluginManager().registerEvents(playerListener, this);
 
         // Register Commands
         if (getCommand("databridge") != null) {
-            getCommand("databridge")
-                    .setExecutor(new com.digitalserverhost.plugins.commands.UnlockCommand(databaseManager));
+            DataBridgeCommand dataBridgeCommand = new DataBridgeCommand()
+                    .register("unlock", new UnlockCommand(databaseManager, nameIndex))
+                    .register("stats", new StatsCommand(metrics, statementStats))
+                    .register("largest", new LargestCommand(databaseManager, nameIndex))
+                    .register("locks", new LocksCommand(databaseManager, nameIndex, getLockHeartbeatSeconds()))
+                    .register("release", new ReleaseCommand(databaseManager, nameIndex,
+                            getBulkReleaseBatchSize(), getBulkReleaseThrottleMs()));
+            getCommand("databridge").setExecutor(dataBridgeCommand);
+            getCommand("databridge").setTabCompleter(dataBridgeCommand);
         }
 
         // Register it as the listener for our custom plugin channel
@@ -62,6 +100,9 @@ public class MCDataBridge extends JavaPlugin {
             getLogger().info("Registered 'mc-data-bridge:main' plugin channel.");
         }
 
+        startControlChannel(playerListener);
+        startMetricsExport();
+
         getLogger().info("mc-data-bridge has been enabled on Spigot/Paper!");
     }
 
@@ -69,106 +110,81 @@ public class MCDataBridge extends JavaPlugin {
     public void onDisable() {
         this.getServer().getMessenger().unregisterIncomingPluginChannel(this, "mc-data-bridge:main");
         this.getServer().getMessenger().unregisterOutgoingPluginChannel(this, "mc-data-bridge:main");
+        if (controlServer != null) {
+            controlServer.close();
+        }
+        if (metricsHttpServer != null) {
+            metricsHttpServer.close();
+        }
         databaseManager.close();
         getLogger().info("mc-data-bridge has been disabled!");
     }
 
-    private void createServerTable() {
-        String escapedTableName = "`" + tableName + "`";
-        String createTableSQL = "CREATE TABLE IF NOT EXISTS " + escapedTableName + " (" +
-                "uuid VARCHAR(36) NOT NULL, " +
-                "data LONGTEXT, " +
-                "is_locked BOOLEAN DEFAULT 0, " +
-                "locking_server VARCHAR(255) DEFAULT NULL, " +
-                "lock_timestamp BIGINT DEFAULT 0, " +
-                "last_updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, " +
-                "PRIMARY KEY (uuid)) ENGINE=InnoDB;";
-
-        try (Connection connection = databaseManager.getConnection();
-                Statement statement = connection.createStatement()) {
-
-            // Check for migration from default 'player_data' to prefixed table
-            if (!tableName.equals("player_data")) {
+    private void startControlChannel(PlayerListener playerListener) {
+        if (!getConfig().getBoolean("control-channel.enabled", false)) {
+            return;
+        }
+        String secret = getConfig().getString("control-channel.secret", "");
+        if (secret == null || secret.isEmpty()) {
+            getLogger().warning("control-channel is enabled but no secret is set. Control channel disabled.");
+            return;
+        }
+        // Commands run on the main thread, like plugin messages do
+        controlServer = new ControlServer(getConfig().getString("control-channel.bind", "127.0.0.1"),
+                getConfig().getInt("control-channel.port", 25580), secret,
+                command -> getServer().getScheduler().runTask(this, () -> playerListener.handleControlCommand(command)),
+                getLogger());
+        controlServer.setGreeting(BridgeCommand.hello(serverId));
+        try {
+            controlServer.start();
+        } catch (IOException e) {
+            getLogger().severe("Could not start the control channel: " + e.getMessage());
+            controlServer = null;
+        }
+    }
+
+    private void startMetricsExport() {
+        if (getConfig().getBoolean("metrics.file.enabled", false)) {
+            File file = new File(getDataFolder(), getConfig().getString("metrics.file.path", "metrics.prom"));
+            long intervalTicks = Math.max(1, getConfig().getLong("metrics.file.interval-seconds", 60)) * 20L;
+            getServer().getScheduler().runTaskTimerAsynchronously(this, () -> {
                 try {
-                    ResultSet oldTable = connection.getMetaData().getTables(null, null, "player_data", null);
-                    boolean oldExists = oldTable.next();
-                    oldTable.close();
-
-                    ResultSet newTable = connection.getMetaData().getTables(null, null, tableName, null);
-                    boolean newExists = newTable.next();
-                    newTable.close();
-
-                    if (oldExists && !newExists) {
-                        getLogger().warning("Detected old 'player_data' table and new prefix setting.");
-                        getLogger().warning("Migrating 'player_data' to '" + tableName + "'...");
-                        statement.executeUpdate("RENAME TABLE `player_data` TO " + escapedTableName);
-                        getLogger().info("Migration successful!");
-                    }
-                } catch (Exception e) {
-                    getLogger().severe("Failed to migrate table: " + e.getMessage());
+                    metrics.getRegistry().writeTo(file.toPath());
+                } catch (IOException e) {
+                    getLogger().warning("Could not write metrics to " + file + ": " + e.getMessage());
                 }
-            }
-
-            statement.executeUpdate(createTableSQL);
-            getLogger().info("Successfully verified or created the '" + tableName + "' table.");
+            }, intervalTicks, intervalTicks);
+        }
 
-            if (!connection.getMetaData().getColumns(null, null, tableName, "is_locked").next()) {
-                statement.executeUpdate("ALTER TABLE " + escapedTableName + " ADD COLUMN is_locked BOOLEAN DEFAULT 0");
-            }
-            if (!connection.getMetaData().getColumns(null, null, tableName, "locking_server").next()) {
-                statement.executeUpdate(
-                        "ALTER TABLE " + escapedTableName + " ADD COLUMN locking_server VARCHAR(255) DEFAULT NULL");
-            }
-            if (!connection.getMetaData().getColumns(null, null, tableName, "lock_timestamp").next()) {
-                statement.executeUpdate(
-                        "ALTER TABLE " + escapedTableName + " ADD COLUMN lock_timestamp BIGINT DEFAULT 0");
-            }
-            if (!connection.getMetaData().getColumns(null, null, tableName, "last_updated").next()) {
-                statement.executeUpdate(
-                        "ALTER TABLE " + escapedTableName
-                                + " ADD COLUMN last_updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP");
+        if (getConfig().getBoolean("metrics.http.enabled", false)) {
+            metricsHttpServer = new MetricsHttpServer(metrics.getRegistry(),
+                    getConfig().getString("metrics.http.bind", "127.0.0.1"),
+                    getConfig().getInt("metrics.http.port", 9225));
+            try {
+                metricsHttpServer.start();
+                getLogger().info("Serving metrics on port " + metricsHttpServer.getPort() + " at /metrics.");
+            } catch (IOException e) {
+                getLogger().severe("Could not start the metrics endpoint: " + e.getMessage());
+                metricsHttpServer = null;
             }
+        }
+    }
 
-            ResultSet columns = connection.getMetaData().getColumns(null, null, tableName, "data");
-            if (columns.next()) {
-                String typeName = columns.getString("TYPE_NAME");
-                boolean needsMigration = "LONGTEXT".equalsIgnoreCase(typeName) || "TEXT".equalsIgnoreCase(typeName);
-
-                if (needsMigration) {
-                    if (getConfig().getBoolean("auto-update-schema", false)) {
-                        getLogger().info("Migrating 'data' column from " + typeName + " to LONGBLOB as requested...");
-                        statement
-                                .executeUpdate("ALTER TABLE " + escapedTableName + " MODIFY COLUMN data LONGBLOB NULL");
-                        getLogger().info("Migration complete! 'data' is now LONGBLOB.");
-                    } else {
-                        getLogger().warning("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-                        getLogger().warning("!!! YOUR DATABASE IS USING '" + typeName + "' FOR 'data' COLUMN. !!!");
-                        getLogger().warning("!!! IT IS RECOMMENDED TO SWITCH TO 'LONGBLOB' !!!");
-                        getLogger().warning("!!! ENABLE 'auto-update-schema: true' IN CONFIG TO FIX AUTOMATICALLY !!!");
-                        getLogger().warning("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-                    }
-                }
-
-                if ("NO".equalsIgnoreCase(columns.getString("IS_NULLABLE"))) {
-                    statement.executeUpdate("ALTER TABLE " + escapedTableName + " MODIFY COLUMN data LONGBLOB NULL");
-                }
-            }
-        } catch (Exception e) {
-            getLogger().severe("CRITICAL: Error creating or updating player_data table: " + e.getMessage());
-            getServer().getPluginManager().disablePlugin(this);
+    private void startLockReaper() {
+        if (!getConfig().getBoolean("lock-reaper.enabled", true)) {
+            return;
         }
+        long intervalTicks = Math.max(1, getConfig().getLong("lock-reaper.interval-seconds", 60)) * 20L;
+        LockReaper reaper = new LockReaper(databaseManager, metrics, getLogger(),
+                getConfig().getInt("lock-reaper.batch-size", 500), getConfig().getLong("lock-reaper.throttle-ms", 50));
+        getServer().getScheduler().runTaskTimerAsynchronously(this, reaper, intervalTicks, intervalTicks);
     }
 
     private void releaseOrphanedLocks() {
-        String escapedTableName = "`" + tableName + "`";
-        String releaseSQL = "UPDATE " + escapedTableName
-                + " SET is_locked = 0, locking_server = NULL, lock_timestamp = 0 WHERE locking_server = ?";
-
-        try (Connection connection = databaseManager.getConnection();
-                PreparedStatement statement = connection.prepareStatement(releaseSQL)) {
-
-            statement.setString(1, this.serverId);
-            int affectedRows = statement.executeUpdate();
+        try {
+            // No throttle: players cannot join until this has run
+            int affectedRows = databaseManager.releaseLocksByServer(this.serverId, getBulkReleaseBatchSize(), 0,
+                    released -> {});
 
             if (affectedRows > 0) {
                 getLogger()
@@ -190,10 +206,57 @@ public class MCDataBridge extends JavaPlugin {
         return serverId;
     }
 
+    /**
+     * Blocks the calling (async) thread until the database schema is ready, for
+     * at most 'schema-ready-timeout' milliseconds.
+     */
+    public boolean awaitSchemaReady() {
+        return schemaManager != null && schemaManager.awaitReady(getConfig().getLong("schema-ready-timeout", 10000));
+    }
+
     public int getLockHeartbeatSeconds() {
         return getConfig().getInt("lock-heartbeat-seconds", 30);
     }
 
+    public int getBulkReleaseBatchSize() {
+        return Math.max(1, getConfig().getInt("bulk-lock-release.batch-size", 500));
+    }
+
+    public long getBulkReleaseThrottleMs() {
+        return Math.max(0, getConfig().getLong("bulk-lock-release.throttle-ms", 20));
+    }
+
+    public boolean isPrefetchEnabled() {
+        return getConfig().getBoolean("prefetch.enabled", true);
+    }
+
+    public long getPrefetchTtlMs() {
+        return getConfig().getLong("prefetch.ttl-ms", 10000);
+    }
+
+    public boolean isHandoffEnabled() {
+        return getConfig().getBoolean("handoff.enabled", false);
+    }
+
+    public BridgeMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the control channel, or null if it is disabled.
+     */
+    public ControlServer getControlServer() {
+        return controlServer;
+    }
+
+    /**
+     * @return the name index admin commands resolve players through, or null
+     *         before the plugin is enabled.
+     */
+    public PlayerNameIndex getNameIndex() {
+        return nameIndex;
+    }
+
     public boolean isSyncEnabled(String key) {
         return getConfig().getBoolean("sync-data." + key, true); // Default to true for safety
     }
@@ -293,6 +356,127 @@ public class MCDataBridge extends JavaPlugin {
             updated = true;
         }
 
+        // Check for 'schema-migration-mode'
+        if (!fileConfig.contains("schema-migration-mode")) {
+            newConfigContent.append("\n");
+            newConfigContent.append("# How long-running schema migrations are applied: 'online' copies rows in chunks\n");
+            newConfigContent.append("# while players stay online, 'offline' runs a single (blocking) ALTER TABLE.\n");
+            newConfigContent.append("schema-migration-mode: online\n");
+            newConfigContent.append("online-migration:\n");
+            newConfigContent.append("  chunk-size: 1000\n");
+            newConfigContent.append("  throttle-ms: 50\n");
+            updated = true;
+        }
+
+        // Check for 'schema-ready-timeout'
+        if (!fileConfig.contains("schema-ready-timeout")) {
+            newConfigContent.append("\n");
+            newConfigContent
+                    .append("# How long (ms) a joining player waits for database migrations to finish on startup.\n");
+            newConfigContent.append("# Default: 10000 (10 seconds)\n");
+            newConfigContent.append("schema-ready-timeout: 10000\n");
+            updated = true;
+        }
+
+        // Check for 'prefetch'
+        if (!fileConfig.contains("prefetch")) {
+            newConfigContent.append("\n");
+            newConfigContent.append("# Load a switching player's data as soon as the proxy announces the switch.\n");
+            newConfigContent.append("# Unclaimed prefetches release their lock after ttl-ms.\n");
+            newConfigContent.append("prefetch:\n");
+            newConfigContent.append("  enabled: true\n");
+            newConfigContent.append("  ttl-ms: 10000\n");
+            updated = true;
+        }
+
+        // Check for 'control-channel'
+        if (!fileConfig.contains("control-channel")) {
+            newConfigContent.append("\n");
+            newConfigContent.append("# Optional TCP channel for proxy commands that works without players online.\n");
+            newConfigContent.append("# The proxy lists this server in its control.properties with the same secret.\n");
+            newConfigContent.append("control-channel:\n");
+            newConfigContent.append("  enabled: false\n");
+            newConfigContent.append("  bind: \"127.0.0.1\"\n");
+            newConfigContent.append("  port: 25580\n");
+            newConfigContent.append("  secret: \"\"\n");
+            updated = true;
+        }
+
+        // Check for 'handoff'
+        if (!fileConfig.contains("handoff")) {
+            newConfigContent.append("\n");
+            newConfigContent.append("# Send a switching player's snapshot to the destination through the proxy.\n");
+            newConfigContent.append("# Requires the plugin on the proxy as well.\n");
+            newConfigContent.append("handoff:\n");
+            newConfigContent.append("  enabled: false\n");
+            updated = true;
+        }
+
+        // Check for 'main-thread-budget-ms'
+        if (!fileConfig.contains("main-thread-budget-ms")) {
+            newConfigContent.append("\n");
+            newConfigContent
+                    .append("# Warn when capturing and applying player data takes longer than this (ms) in one tick.\n");
+            newConfigContent.append("# Set to 0 to disable the warning.\n");
+            newConfigContent.append("main-thread-budget-ms: 5.0\n");
+            updated = true;
+        }
+
+        // Check for 'bulk-lock-release'
+        if (!fileConfig.contains("bulk-lock-release")) {
+            newConfigContent.append("\n");
+            newConfigContent
+                    .append("# Batching for '/databridge release' and the startup release of this server's locks.\n");
+            newConfigContent.append("bulk-lock-release:\n");
+            newConfigContent.append("  batch-size: 500\n");
+            newConfigContent.append("  throttle-ms: 20\n");
+            updated = true;
+        }
+
+        // Check for 'lock-reaper'
+        if (!fileConfig.contains("lock-reaper")) {
+            newConfigContent.append("\n");
+            newConfigContent.append("# Periodically release locks not refreshed for longer than lock-timeout.\n");
+            newConfigContent.append("lock-reaper:\n");
+            newConfigContent.append("  enabled: true\n");
+            newConfigContent.append("  interval-seconds: 60\n");
+            newConfigContent.append("  batch-size: 500\n");
+            newConfigContent.append("  throttle-ms: 50\n");
+            updated = true;
+        }
+
+        // Check for 'name-cache-size'
+        if (!fileConfig.contains("name-cache-size")) {
+            newConfigContent.append("\n");
+            newConfigContent.append("# Player names admin commands keep in memory (see the name index table).\n");
+            newConfigContent.append("name-cache-size: 10000\n");
+            updated = true;
+        }
+
+        // Check for 'slow-statement-ms'
+        if (!fileConfig.contains("slow-statement-ms")) {
+            newConfigContent.append("\n");
+            newConfigContent.append("# Log database statements slower than this (ms). Set to 0 to disable.\n");
+            newConfigContent.append("slow-statement-ms: 250\n");
+            updated = true;
+        }
+
+        // Check for 'metrics'
+        if (!fileConfig.contains("metrics")) {
+            newConfigContent.append("\n");
+            newConfigContent.append("# Export the /databridge stats metrics in Prometheus text format.\n");
+            newConfigContent.append("metrics:\n");
+            newConfigContent.append("  file:\n");
+            newConfigContent.append("    enabled: false\n");
+            newConfigContent.append("    path: \"metrics.prom\"\n");
+            newConfigContent.append("    interval-seconds: 60\n");
+            newConfigContent.append("  http:\n");
+            newConfigContent.append("    enabled: false\n");
+            newConfigContent.append("    bind: \"127.0.0.1\"\n");
+            newConfigContent.append("    port: 9225\n");
+            updated = true;
+        }
+
         // Check if sync-data exists
         if (!fileConfig.contains("sync-data")) {
             newConfigContent.append("\n");
@@ -0,0 +1,61 @@
+package com.digitalserverhost.plugins.commands;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Routes '/databridge &lt;subcommand&gt; ...' to the subcommand's executor, which
+ * receives the remaining arguments.
+ */
+public class DataBridgeCommand implements CommandExecutor, TabCompleter {
+
+    private final Map<String, CommandExecutor> subcommands = new LinkedHashMap<>();
+
+    public DataBridgeCommand register(String name, CommandExecutor executor) {
+        subcommands.put(name.toLowerCase(Locale.ROOT), executor);
+        return this;
+    }
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label,
+            @NotNull String[] args) {
+        if (!sender.hasPermission("databridge.admin")) {
+            sender.sendMessage(Component.text("You do not have permission to use this command.", NamedTextColor.RED));
+            return true;
+        }
+
+        CommandExecutor executor = args.length > 0 ? subcommands.get(args[0].toLowerCase(Locale.ROOT)) : null;
+        if (executor == null) {
+            sender.sendMessage(Component.text("Usage: /databridge <" + String.join("|", subcommands.keySet()) + ">",
+                    NamedTextColor.RED));
+            return true;
+        }
+        return executor.onCommand(sender, command, label, Arrays.copyOfRange(args, 1, args.length));
+    }
+
+    @Override
+    public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label,
+            @NotNull String[] args) {
+        List<String> matches = new ArrayList<>();
+        if (args.length == 1 && sender.hasPermission("databridge.admin")) {
+            for (String name : subcommands.keySet()) {
+                if (name.startsWith(args[0].toLowerCase(Locale.ROOT))) {
+                    matches.add(name);
+                }
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,87 @@
+package com.digitalserverhost.plugins.commands;
+
+import com.digitalserverhost.plugins.managers.DatabaseManager;
+import com.digitalserverhost.plugins.managers.PlayerNameIndex;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * /databridge largest [count] - the players with the largest saved data.
+ */
+public class LargestCommand implements CommandExecutor {
+
+    private static final int DEFAULT_COUNT = 10;
+    private static final int MAX_COUNT = 100;
+
+    private final DatabaseManager databaseManager;
+    private final PlayerNameIndex nameIndex;
+
+    public LargestCommand(DatabaseManager databaseManager, PlayerNameIndex nameIndex) {
+        this.databaseManager = databaseManager;
+        this.nameIndex = nameIndex;
+    }
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label,
+            @NotNull String[] args) {
+        int count = DEFAULT_COUNT;
+        if (args.length == 1) {
+            try {
+                count = Integer.parseInt(args[0]);
+            } catch (NumberFormatException e) {
+                count = -1;
+            }
+        }
+        if (args.length > 1 || count < 1 || count > MAX_COUNT) {
+            sender.sendMessage(Component.text("Usage: /databridge largest [1-" + MAX_COUNT + "]", NamedTextColor.RED));
+            return true;
+        }
+
+        int limit = count;
+        Bukkit.getScheduler().runTaskAsynchronously(Bukkit.getPluginManager().getPlugin("mc-data-bridge"), () -> {
+            List<DatabaseManager.PayloadSize> largest;
+            try {
+                largest = databaseManager.findLargestPayloads(limit);
+            } catch (SQLException e) {
+                sender.sendMessage(Component.text("Failed to query player data sizes: " + e.getMessage(),
+                        NamedTextColor.RED));
+                return;
+            }
+            if (largest.isEmpty()) {
+                sender.sendMessage(Component.text("No player data sizes recorded yet.", NamedTextColor.YELLOW));
+                return;
+            }
+
+            sender.sendMessage(Component.text("Largest player data:", NamedTextColor.GOLD));
+            int rank = 1;
+            for (DatabaseManager.PayloadSize size : largest) {
+                String name = nameOf(size.uuid());
+                String line = String.format(Locale.ROOT, "%d. %s - %.1f KiB", rank++, name, size.bytes() / 1024.0);
+                if (size.lockingServer() != null) {
+                    line += " (locked by " + size.lockingServer() + ")";
+                }
+                sender.sendMessage(Component.text(line, NamedTextColor.GRAY));
+            }
+        });
+        return true;
+    }
+
+    private String nameOf(UUID uuid) {
+        try {
+            String name = nameIndex.nameOf(uuid);
+            return name != null ? name : uuid.toString();
+        } catch (SQLException e) {
+            return uuid.toString();
+        }
+    }
+}
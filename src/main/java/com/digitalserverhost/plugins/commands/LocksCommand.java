@@ -0,0 +1,132 @@
+package com.digitalserverhost.plugins.commands;
+
+import com.digitalserverhost.plugins.managers.DatabaseManager;
+import com.digitalserverhost.plugins.managers.PlayerNameIndex;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * /databridge locks [server] [page] - held locks with their holder and how
+ * long ago the holder's heartbeat last refreshed them. A lock is stale once
+ * it has missed two heartbeats and expired once any server may take it over.
+ * A lone number is a page of every server's locks, so a numeric server id is
+ * listed with its page: /databridge locks 1 1.
+ */
+public class LocksCommand implements CommandExecutor {
+
+    private static final int PAGE_SIZE = 10;
+
+    private final DatabaseManager databaseManager;
+    private final PlayerNameIndex nameIndex;
+    private final long heartbeatMs;
+
+    public LocksCommand(DatabaseManager databaseManager, PlayerNameIndex nameIndex, int heartbeatSeconds) {
+        this.databaseManager = databaseManager;
+        this.nameIndex = nameIndex;
+        this.heartbeatMs = heartbeatSeconds * 1000L;
+    }
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label,
+            @NotNull String[] args) {
+        String serverId = null;
+        int page = 1;
+        try {
+            if (args.length == 1) {
+                // A lone number is a page of every server's locks
+                if (args[0].chars().allMatch(Character::isDigit)) {
+                    page = Integer.parseInt(args[0]);
+                } else {
+                    serverId = args[0];
+                }
+            } else if (args.length == 2) {
+                // Always a server, even a numeric one
+                serverId = args[0];
+                page = Integer.parseInt(args[1]);
+            }
+        } catch (NumberFormatException e) {
+            page = -1;
+        }
+        if (args.length > 2 || page < 1) {
+            sender.sendMessage(Component.text("Usage: /databridge locks [server] [page]", NamedTextColor.RED));
+            return true;
+        }
+
+        String holder = serverId;
+        int requestedPage = page;
+        // Past the last page either way, but must not wrap around
+        int offset = (int) Math.min(Integer.MAX_VALUE, (page - 1L) * PAGE_SIZE);
+        Bukkit.getScheduler().runTaskAsynchronously(Bukkit.getPluginManager().getPlugin("mc-data-bridge"), () -> {
+            int total;
+            List<DatabaseManager.HeldLock> locks;
+            try {
+                total = databaseManager.countLocks(holder);
+                locks = databaseManager.findLocks(holder, PAGE_SIZE, offset);
+            } catch (SQLException e) {
+                sender.sendMessage(Component.text("Failed to query locks: " + e.getMessage(), NamedTextColor.RED));
+                return;
+            }
+            String scope = holder != null ? " held by " + holder : "";
+            if (total == 0) {
+                sender.sendMessage(Component.text("No locks" + scope + ".", NamedTextColor.GREEN));
+                return;
+            }
+            int pages = (total + PAGE_SIZE - 1) / PAGE_SIZE;
+            sender.sendMessage(Component.text(total + " locks" + scope + " (page " + requestedPage + "/" + pages
+                    + "):", NamedTextColor.GOLD));
+            if (locks.isEmpty()) {
+                sender.sendMessage(Component.text("No locks on this page.", NamedTextColor.YELLOW));
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            for (DatabaseManager.HeldLock lock : locks) {
+                long sinceHeartbeat = Math.max(0, now - lock.lockTimestamp());
+                NamedTextColor color;
+                String state;
+                if (sinceHeartbeat >= databaseManager.getLockTimeout()) {
+                    color = NamedTextColor.RED;
+                    state = "expired";
+                } else if (sinceHeartbeat > 2 * heartbeatMs) {
+                    color = NamedTextColor.YELLOW;
+                    state = "stale";
+                } else {
+                    color = NamedTextColor.GRAY;
+                    state = "fresh";
+                }
+                sender.sendMessage(Component.text(nameOf(lock.uuid()) + " - " + lock.lockingServer()
+                        + ", heartbeat " + formatAge(sinceHeartbeat) + " ago (" + state + ")", color));
+            }
+        });
+        return true;
+    }
+
+    private String nameOf(UUID uuid) {
+        try {
+            String name = nameIndex.nameOf(uuid);
+            return name != null ? name : uuid.toString();
+        } catch (SQLException e) {
+            return uuid.toString();
+        }
+    }
+
+    private static String formatAge(long ms) {
+        long seconds = ms / 1000;
+        if (seconds < 120) {
+            return seconds + "s";
+        }
+        if (seconds < 7200) {
+            return seconds / 60 + "m";
+        }
+        return seconds / 3600 + "h";
+    }
+}
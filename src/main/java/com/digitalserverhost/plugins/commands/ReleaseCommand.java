@@ -0,0 +1,116 @@
+package com.digitalserverhost.plugins.commands;
+
+import com.digitalserverhost.plugins.managers.DatabaseManager;
+import com.digitalserverhost.plugins.managers.PlayerNameIndex;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.function.IntConsumer;
+
+/**
+ * /databridge release &lt;server &lt;id&gt; | older-than &lt;minutes&gt; | players &lt;name|uuid&gt;...&gt;
+ * - force-releases many locks at once, in batches, reporting progress as it
+ * goes.
+ */
+public class ReleaseCommand implements CommandExecutor {
+
+    private static final String USAGE = "Usage: /databridge release "
+            + "<server <id> | older-than <minutes> | players <name|uuid>...>";
+
+    private final DatabaseManager databaseManager;
+    private final PlayerNameIndex nameIndex;
+    private final int batchSize;
+    private final long throttleMs;
+
+    public ReleaseCommand(DatabaseManager databaseManager, PlayerNameIndex nameIndex, int batchSize,
+            long throttleMs) {
+        this.databaseManager = databaseManager;
+        this.nameIndex = nameIndex;
+        this.batchSize = Math.max(1, batchSize);
+        this.throttleMs = Math.max(0, throttleMs);
+    }
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label,
+            @NotNull String[] args) {
+        if (args.length < 2) {
+            sender.sendMessage(Component.text(USAGE, NamedTextColor.RED));
+            return true;
+        }
+
+        String mode = args[0].toLowerCase(Locale.ROOT);
+        if (!mode.equals("server") && !mode.equals("older-than") && !mode.equals("players")) {
+            sender.sendMessage(Component.text(USAGE, NamedTextColor.RED));
+            return true;
+        }
+        long minutes = 0;
+        if (mode.equals("older-than")) {
+            try {
+                minutes = Long.parseLong(args[1]);
+            } catch (NumberFormatException e) {
+                minutes = -1;
+            }
+            if (args.length != 2 || minutes < 1) {
+                sender.sendMessage(Component.text("Usage: /databridge release older-than <minutes>",
+                        NamedTextColor.RED));
+                return true;
+            }
+        } else if (mode.equals("server") && args.length != 2) {
+            sender.sendMessage(Component.text("Usage: /databridge release server <id>", NamedTextColor.RED));
+            return true;
+        }
+
+        long notRefreshedSince = System.currentTimeMillis() - minutes * 60_000;
+        Bukkit.getScheduler().runTaskAsynchronously(Bukkit.getPluginManager().getPlugin("mc-data-bridge"), () -> {
+            IntConsumer progress = released -> sender.sendMessage(
+                    Component.text("Released " + released + " locks so far...", NamedTextColor.GRAY));
+            long start = System.nanoTime();
+            int released;
+            try {
+                released = switch (mode) {
+                    case "server" -> databaseManager.releaseLocksByServer(args[1], batchSize, throttleMs, progress);
+                    case "older-than" -> databaseManager.releaseLocksNotRefreshedSince(notRefreshedSince, batchSize,
+                            throttleMs, progress);
+                    default -> databaseManager.releaseLocks(resolve(sender, args), batchSize, throttleMs, progress);
+                };
+            } catch (SQLException e) {
+                sender.sendMessage(Component.text("Failed to release locks: " + e.getMessage()
+                        + ". Locks released before the error stay released.", NamedTextColor.RED));
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            sender.sendMessage(Component.text(String.format(Locale.ROOT, "Released %d locks in %.1f s.", released,
+                    (System.nanoTime() - start) / 1e9), NamedTextColor.GREEN));
+        });
+        return true;
+    }
+
+    /**
+     * The players named after 'players', as UUIDs or names.
+     */
+    private List<UUID> resolve(CommandSender sender, String[] args) throws SQLException {
+        List<UUID> uuids = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            UUID uuid = nameIndex.resolveFresh(args[i]);
+            if (uuid != null) {
+                uuids.add(uuid);
+            } else {
+                sender.sendMessage(Component.text("No player named " + args[i] + " has logged in; skipping.",
+                        NamedTextColor.RED));
+            }
+        }
+        return uuids;
+    }
+}
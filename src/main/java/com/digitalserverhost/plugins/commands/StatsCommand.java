@@ -0,0 +1,47 @@
+package com.digitalserverhost.plugins.commands;
+
+import com.digitalserverhost.plugins.metrics.BridgeMetrics;
+import com.digitalserverhost.plugins.metrics.StatementStats;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * /databridge stats - timings (microseconds), payload sizes (bytes), counters
+ * and connection pool state since startup.
+ * /databridge stats sql - the same per SQL statement.
+ */
+public class StatsCommand implements CommandExecutor {
+
+    private final BridgeMetrics metrics;
+    private final StatementStats statementStats;
+
+    public StatsCommand(BridgeMetrics metrics, StatementStats statementStats) {
+        this.metrics = metrics;
+        this.statementStats = statementStats;
+    }
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label,
+            @NotNull String[] args) {
+        if (args.length == 1 && args[0].equalsIgnoreCase("sql")) {
+            sender.sendMessage(Component.text("SQL statements (us):", NamedTextColor.GOLD));
+            for (String line : statementStats.report()) {
+                sender.sendMessage(Component.text(line, NamedTextColor.GRAY));
+            }
+            return true;
+        }
+        if (args.length != 0) {
+            sender.sendMessage(Component.text("Usage: /databridge stats [sql]", NamedTextColor.RED));
+            return true;
+        }
+        sender.sendMessage(Component.text("mc-data-bridge metrics (us / bytes):", NamedTextColor.GOLD));
+        for (String line : metrics.getRegistry().report()) {
+            sender.sendMessage(Component.text(line, NamedTextColor.GRAY));
+        }
+        return true;
+    }
+}
@@ -1,23 +1,26 @@
 package com.digitalserverhost.plugins.commands;
 
 import com.digitalserverhost.plugins.managers.DatabaseManager;
+import com.digitalserverhost.plugins.managers.PlayerNameIndex;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import org.bukkit.Bukkit;
-import org.bukkit.OfflinePlayer;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.jetbrains.annotations.NotNull;
 
+import java.sql.SQLException;
 import java.util.UUID;
 
 public class UnlockCommand implements CommandExecutor {
 
     private final DatabaseManager databaseManager;
+    private final PlayerNameIndex nameIndex;
 
-    public UnlockCommand(DatabaseManager databaseManager) {
+    public UnlockCommand(DatabaseManager databaseManager, PlayerNameIndex nameIndex) {
         this.databaseManager = databaseManager;
+        this.nameIndex = nameIndex;
     }
 
     @Override
@@ -29,7 +32,7 @@ public class UnlockCommand implements CommandExecutor {
         }
 
         if (args.length != 1) {
-            sender.sendMessage(Component.text("Usage: /databridge unlock <player>", NamedTextColor.RED));
+            sender.sendMessage(Component.text("Usage: /databridge unlock <name|uuid>", NamedTextColor.RED));
             return true;
         }
 
@@ -37,16 +40,20 @@ public class UnlockCommand implements CommandExecutor {
 
         // Run async to avoid blocking main thread with DB lookup
         Bukkit.getScheduler().runTaskAsynchronously(Bukkit.getPluginManager().getPlugin("mc-data-bridge"), () -> {
-            OfflinePlayer target = Bukkit.getOfflinePlayer(targetName); // Deprecated but necessary for name lookup if
-                                                                        // UUID unknown
-
-            if (target == null || target.getUniqueId() == null) { // Should not happen with getOfflinePlayer but
-                                                                  // checking sanity
-                sender.sendMessage(Component.text("Could not resolve player " + targetName, NamedTextColor.RED));
+            UUID uuid;
+            try {
+                uuid = nameIndex.resolveFresh(targetName);
+            } catch (SQLException e) {
+                sender.sendMessage(Component.text("Failed to look up player " + targetName + ": " + e.getMessage(),
+                        NamedTextColor.RED));
+                return;
+            }
+            if (uuid == null) {
+                sender.sendMessage(Component.text("No player named " + targetName
+                        + " has logged in since names were recorded. Use their UUID instead.", NamedTextColor.RED));
                 return;
             }
 
-            UUID uuid = target.getUniqueId();
             boolean success = databaseManager.releaseLock(uuid);
 
             if (success) {
@@ -0,0 +1,101 @@
+package com.digitalserverhost.plugins.control;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Proxy-side control channel settings, read from 'control.properties' in the
+ * plugin's data folder. The proxies have no config.yml, and this keeps one
+ * format for Velocity and BungeeCord.
+ */
+public class ControlChannelConfig {
+
+    private static final String FILE_NAME = "control.properties";
+    private static final String DEFAULT_CONTENT = """
+            # mc-data-bridge control channel (optional)
+            # Lets the proxy reach backends without a player online on them.
+            # Enable 'control-channel' in each backend's config.yml as well.
+
+            # Shared secret; must match 'control-channel.secret' on every backend.
+            # Leave empty to disable the control channel.
+            secret=
+
+            # One line per backend, keyed by its name in the proxy config:
+            # server.lobby=127.0.0.1:25580
+            # server.survival=10.0.0.12:25580
+            """;
+
+    private final String secret;
+    private final Map<String, String> hosts;
+    private final Map<String, Integer> ports;
+
+    ControlChannelConfig(String secret, Map<String, String> hosts, Map<String, Integer> ports) {
+        this.secret = secret;
+        this.hosts = hosts;
+        this.ports = ports;
+    }
+
+    /**
+     * Loads the file, writing a commented default first if it is missing.
+     */
+    public static ControlChannelConfig load(Path dataFolder, Logger logger) {
+        Path file = dataFolder.resolve(FILE_NAME);
+        Properties properties = new Properties();
+        try {
+            if (Files.notExists(file)) {
+                Files.createDirectories(dataFolder);
+                Files.writeString(file, DEFAULT_CONTENT, StandardCharsets.UTF_8);
+            }
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+        } catch (IOException e) {
+            logger.warning("Could not read " + file + ": " + e.getMessage() + ". Control channel disabled.");
+        }
+        return parse(properties, logger);
+    }
+
+    private static ControlChannelConfig parse(Properties properties, Logger logger) {
+        Map<String, String> hosts = new LinkedHashMap<>();
+        Map<String, Integer> ports = new LinkedHashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (!key.startsWith("server.")) {
+                continue;
+            }
+            String name = key.substring("server.".length());
+            String value = properties.getProperty(key).trim();
+            int colon = value.lastIndexOf(':');
+            try {
+                ports.put(name, Integer.parseInt(value.substring(colon + 1)));
+                hosts.put(name, value.substring(0, colon));
+            } catch (RuntimeException e) {
+                logger.warning("Ignoring control channel entry '" + key + "': expected host:port.");
+            }
+        }
+        return new ControlChannelConfig(properties.getProperty("secret", "").trim(), hosts, ports);
+    }
+
+    public boolean isEnabled() {
+        return !secret.isEmpty() && !hosts.isEmpty();
+    }
+
+    public String getSecret() {
+        return secret;
+    }
+
+    public Map<String, String> getHosts() {
+        return Collections.unmodifiableMap(hosts);
+    }
+
+    public int getPort(String server) {
+        return ports.get(server);
+    }
+}
@@ -0,0 +1,124 @@
+package com.digitalserverhost.plugins.control;
+
+import com.digitalserverhost.plugins.protocol.BridgeCommand;
+import com.digitalserverhost.plugins.protocol.BridgeFrame;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Proxy end of the control channel to one backend. A background thread keeps
+ * the connection up, reconnecting after failures; {@link #send} never blocks
+ * on connecting, so callers fall back to plugin messages while it is down.
+ */
+public class ControlClient {
+
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+    private static final long RECONNECT_DELAY_MS = 5000;
+
+    private final String name;
+    private final String host;
+    private final int port;
+    private final String secret;
+    private final Consumer<BridgeCommand> handler;
+    private final Logger logger;
+    private volatile ControlConnection connection;
+    private volatile boolean running;
+    private Thread thread;
+
+    public ControlClient(String name, String host, int port, String secret, Consumer<BridgeCommand> handler,
+            Logger logger) {
+        this.name = name;
+        this.host = host;
+        this.port = port;
+        this.secret = secret;
+        this.handler = handler;
+        this.logger = logger;
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "mc-data-bridge-control-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public boolean isConnected() {
+        return connection != null;
+    }
+
+    public boolean send(BridgeCommand command) {
+        return send(List.of(command));
+    }
+
+    /**
+     * @return false if the backend is not connected or the write failed; the
+     *         caller should use another transport.
+     */
+    public boolean send(List<BridgeCommand> commands) {
+        ControlConnection current = connection;
+        if (current == null) {
+            return false;
+        }
+        try {
+            current.send(commands);
+            return true;
+        } catch (IOException e) {
+            current.close();
+            return false;
+        }
+    }
+
+    public void close() {
+        running = false;
+        ControlConnection current = connection;
+        if (current != null) {
+            current.close();
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void run() {
+        boolean warned = false;
+        while (running) {
+            try {
+                Socket socket = new Socket();
+                socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+                connection = ControlConnection.connect(socket, secret);
+                logger.info("Connected to the control channel of " + name + " (" + host + ":" + port + ").");
+                warned = false;
+
+                while (running) {
+                    BridgeFrame frame = connection.read();
+                    for (BridgeCommand command : frame.getCommands()) {
+                        handler.accept(command);
+                    }
+                }
+            } catch (IOException e) {
+                if (running && !warned) {
+                    logger.warning("Control channel to " + name + " unavailable: " + e.getMessage()
+                            + ". Using plugin messages until it is back.");
+                    warned = true;
+                }
+            } finally {
+                ControlConnection current = connection;
+                connection = null;
+                if (current != null) {
+                    current.close();
+                }
+            }
+
+            try {
+                Thread.sleep(RECONNECT_DELAY_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+}
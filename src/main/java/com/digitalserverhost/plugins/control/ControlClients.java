@@ -0,0 +1,56 @@
+package com.digitalserverhost.plugins.control;
+
+import com.digitalserverhost.plugins.protocol.BridgeCommand;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+
+/**
+ * The proxy's control connections, one per configured backend.
+ */
+public class ControlClients {
+
+    private final Map<String, ControlClient> clients = new ConcurrentHashMap<>();
+
+    /**
+     * @param handler receives every command from a backend, with the backend's
+     *                name.
+     */
+    public ControlClients(ControlChannelConfig config, BiConsumer<String, BridgeCommand> handler, Logger logger) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        for (Map.Entry<String, String> entry : config.getHosts().entrySet()) {
+            String server = entry.getKey();
+            ControlClient client = new ControlClient(server, entry.getValue(), config.getPort(server),
+                    config.getSecret(), command -> handler.accept(server, command), logger);
+            clients.put(server, client);
+            client.start();
+        }
+    }
+
+    public boolean isConnected(String server) {
+        ControlClient client = clients.get(server);
+        return client != null && client.isConnected();
+    }
+
+    /**
+     * @return false if there is no live control connection to the backend.
+     */
+    public boolean send(String server, BridgeCommand command) {
+        return send(server, List.of(command));
+    }
+
+    public boolean send(String server, List<BridgeCommand> commands) {
+        ControlClient client = clients.get(server);
+        return client != null && client.send(commands);
+    }
+
+    public void close() {
+        clients.values().forEach(ControlClient::close);
+        clients.clear();
+    }
+}
@@ -0,0 +1,189 @@
+package com.digitalserverhost.plugins.control;
+
+import com.digitalserverhost.plugins.protocol.BridgeCommand;
+import com.digitalserverhost.plugins.protocol.BridgeFrame;
+import com.digitalserverhost.plugins.protocol.BridgeProtocol;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.List;
+
+/**
+ * One authenticated control connection between a proxy and a backend.
+ *
+ * <p>
+ * Handshake: the backend sends a magic number, the protocol version and a
+ * random nonce; the proxy answers with HMAC-SHA256(secret, "proxy" + nonce)
+ * and a nonce of its own; the backend checks the proof and answers with
+ * HMAC-SHA256(secret, "backend" + proxy nonce), or closes the socket. Each side
+ * only reads commands once the other has proven it knows the secret, and the
+ * role in the signed data keeps either side's proof from being reflected back
+ * at it. The secret itself never crosses the wire. After that both sides
+ * exchange {@link BridgeProtocol} frames, each prefixed with its length.
+ */
+public class ControlConnection implements Closeable {
+
+    private static final int MAGIC = 0x4D434442; // "MCDB"
+    private static final int NONCE_LENGTH = 32;
+    private static final int PROOF_LENGTH = 32;
+    private static final byte[] PROXY_ROLE = "proxy".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BACKEND_ROLE = "backend".getBytes(StandardCharsets.US_ASCII);
+    private static final int HANDSHAKE_TIMEOUT_MS = 5000;
+    // Frames over the control channel are not bound by the plugin message limit
+    private static final int MAX_FRAME_SIZE = 1 << 20;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    private ControlConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    /**
+     * Runs the backend side of the handshake on an accepted socket.
+     *
+     * @throws IOException if the peer does not prove it knows the secret.
+     */
+    public static ControlConnection accept(Socket socket, String secret) throws IOException {
+        ControlConnection connection = new ControlConnection(socket);
+        try {
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+            byte[] nonce = newNonce();
+            connection.out.writeInt(MAGIC);
+            connection.out.writeByte(BridgeProtocol.VERSION);
+            connection.out.write(nonce);
+            connection.out.flush();
+
+            byte[] proof = new byte[PROOF_LENGTH];
+            connection.in.readFully(proof);
+            byte[] proxyNonce = new byte[NONCE_LENGTH];
+            connection.in.readFully(proxyNonce);
+            if (!MessageDigest.isEqual(proof, sign(secret, PROXY_ROLE, nonce))) {
+                throw new IOException("Authentication failed");
+            }
+            connection.out.write(sign(secret, BACKEND_ROLE, proxyNonce));
+            connection.out.flush();
+            socket.setSoTimeout(0);
+            return connection;
+        } catch (IOException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the proxy side of the handshake on a connected socket.
+     *
+     * @throws IOException if the backend rejects us or does not prove it
+     *                     knows the secret.
+     */
+    public static ControlConnection connect(Socket socket, String secret) throws IOException {
+        ControlConnection connection = new ControlConnection(socket);
+        try {
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+            if (connection.in.readInt() != MAGIC) {
+                throw new IOException("Not an mc-data-bridge control port");
+            }
+            connection.in.readByte(); // Backend protocol version; frames are self-describing
+            byte[] backendNonce = new byte[NONCE_LENGTH];
+            connection.in.readFully(backendNonce);
+            byte[] nonce = newNonce();
+            connection.out.write(sign(secret, PROXY_ROLE, backendNonce));
+            connection.out.write(nonce);
+            connection.out.flush();
+
+            byte[] proof = new byte[PROOF_LENGTH];
+            try {
+                connection.in.readFully(proof);
+            } catch (EOFException e) {
+                throw new IOException("Authentication failed", e); // The backend rejected our proof
+            }
+            if (!MessageDigest.isEqual(proof, sign(secret, BACKEND_ROLE, nonce))) {
+                throw new IOException("Backend failed authentication");
+            }
+            socket.setSoTimeout(0);
+            return connection;
+        } catch (IOException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    public void send(BridgeCommand command) throws IOException {
+        send(List.of(command));
+    }
+
+    public void send(List<BridgeCommand> commands) throws IOException {
+        byte[] frame = BridgeProtocol.encode(commands);
+        synchronized (out) {
+            out.writeInt(frame.length);
+            out.write(frame);
+            out.flush();
+        }
+    }
+
+    /**
+     * Blocks until the next frame arrives.
+     */
+    public BridgeFrame read() throws IOException {
+        int length = in.readInt();
+        if (length <= 0 || length > MAX_FRAME_SIZE) {
+            throw new IOException("Bad frame length " + length);
+        }
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        try {
+            return BridgeProtocol.decode(frame);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed frame: " + e.getMessage(), e);
+        }
+    }
+
+    public String getRemoteAddress() {
+        return String.valueOf(socket.getRemoteSocketAddress());
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static byte[] newNonce() {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        new SecureRandom().nextBytes(nonce);
+        return nonce;
+    }
+
+    /**
+     * The proof that the given role knows the secret, for the other side's
+     * nonce.
+     */
+    static byte[] sign(String secret, byte[] role, byte[] nonce) throws IOException {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            mac.update(role);
+            return mac.doFinal(nonce);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("HMAC-SHA256 unavailable", e);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.digitalserverhost.plugins.control;
+
+import com.digitalserverhost.plugins.protocol.BridgeCommand;
+import com.digitalserverhost.plugins.protocol.BridgeFrame;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Backend end of the control channel: accepts authenticated proxy
+ * connections and hands their commands to a handler. Commands reach the
+ * backend even when no player is online on it.
+ */
+public class ControlServer {
+
+    private final String bindAddress;
+    private final int port;
+    private final String secret;
+    private final Consumer<BridgeCommand> handler;
+    private final Logger logger;
+    private final Set<ControlConnection> sessions = ConcurrentHashMap.newKeySet();
+    private volatile ServerSocket serverSocket;
+    private volatile BridgeCommand greeting;
+
+    public ControlServer(String bindAddress, int port, String secret, Consumer<BridgeCommand> handler,
+            Logger logger) {
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.secret = secret;
+        this.handler = handler;
+        this.logger = logger;
+    }
+
+    public void start() throws IOException {
+        serverSocket = new ServerSocket(port, 16, InetAddress.getByName(bindAddress));
+        Thread acceptor = new Thread(this::acceptLoop, "mc-data-bridge-control");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        logger.info("Control channel listening on " + bindAddress + ":" + getPort());
+    }
+
+    /**
+     * Sets a command sent to every proxy as soon as it connects.
+     */
+    public void setGreeting(BridgeCommand greeting) {
+        this.greeting = greeting;
+    }
+
+    public int getPort() {
+        ServerSocket socket = serverSocket;
+        return socket != null ? socket.getLocalPort() : port;
+    }
+
+    /**
+     * Whether at least one proxy is connected, i.e. whether
+     * {@link #broadcast(BridgeCommand)} reaches anyone.
+     */
+    public boolean hasSessions() {
+        return !sessions.isEmpty();
+    }
+
+    /**
+     * Sends a command to every connected proxy.
+     *
+     * @return true if at least one proxy received it.
+     */
+    public boolean broadcast(BridgeCommand command) {
+        boolean delivered = false;
+        for (ControlConnection session : sessions) {
+            try {
+                session.send(command);
+                delivered = true;
+            } catch (IOException e) {
+                sessions.remove(session);
+                session.close();
+            }
+        }
+        return delivered;
+    }
+
+    public void close() {
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException ignored) {
+        }
+        for (ControlConnection session : sessions) {
+            session.close();
+        }
+        sessions.clear();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    logger.warning("Control channel accept failed: " + e.getMessage());
+                }
+                continue;
+            }
+            Thread reader = new Thread(() -> serve(socket), "mc-data-bridge-control-session");
+            reader.setDaemon(true);
+            reader.start();
+        }
+    }
+
+    private void serve(Socket socket) {
+        ControlConnection session;
+        try {
+            session = ControlConnection.accept(socket, secret);
+        } catch (IOException e) {
+            logger.warning("Rejected control connection from " + socket.getRemoteSocketAddress() + ": "
+                    + e.getMessage());
+            return;
+        }
+
+        sessions.add(session);
+        logger.info("Proxy connected to the control channel from " + session.getRemoteAddress());
+        try {
+            if (greeting != null) {
+                session.send(greeting);
+            }
+            while (true) {
+                BridgeFrame frame = session.read();
+                for (BridgeCommand command : frame.getCommands()) {
+                    handler.accept(command);
+                }
+            }
+        } catch (IOException e) {
+            // Proxy went away; it reconnects on its own
+        } finally {
+            sessions.remove(session);
+            session.close();
+            logger.info("Proxy disconnected from the control channel (" + session.getRemoteAddress() + ").");
+        }
+    }
+}
@@ -1,8 +1,27 @@
 package com.digitalserverhost.plugins.listeners;
 
 import com.digitalserverhost.plugins.MCDataBridge;
+import com.digitalserverhost.plugins.control.ControlServer;
 import com.digitalserverhost.plugins.managers.DatabaseManager;
+import com.digitalserverhost.plugins.managers.HandoffManager;
+import com.digitalserverhost.plugins.managers.PlayerNameIndex;
+import com.digitalserverhost.plugins.managers.ServerLockRelease;
+import com.digitalserverhost.plugins.metrics.BridgeMetrics;
+import com.digitalserverhost.plugins.metrics.MainThreadBudget;
+import com.digitalserverhost.plugins.metrics.MainThreadBudget.Section;
+import com.digitalserverhost.plugins.metrics.SwitchTimings;
+import com.digitalserverhost.plugins.metrics.jfr.DataApplyEvent;
+import com.digitalserverhost.plugins.metrics.jfr.DataLoadEvent;
+import com.digitalserverhost.plugins.metrics.jfr.LockAcquireEvent;
+import com.digitalserverhost.plugins.metrics.jfr.SnapshotCaptureEvent;
+import com.digitalserverhost.plugins.protocol.BridgeCommand;
+import com.digitalserverhost.plugins.protocol.BridgeFrame;
+import com.digitalserverhost.plugins.protocol.BridgeProtocol;
+import com.digitalserverhost.plugins.protocol.SaveTimings;
+import com.digitalserverhost.plugins.protocol.TraceId;
 import com.digitalserverhost.plugins.utils.PlayerData;
+import com.digitalserverhost.plugins.utils.SectionSizingWriter;
+import com.destroystokyo.paper.event.server.ServerTickEndEvent;
 import com.google.gson.Gson;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
@@ -13,20 +32,24 @@ import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerKickEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.inventory.ItemStack;
 import org.bukkit.potion.PotionEffect;
 import org.bukkit.plugin.messaging.PluginMessageListener;
-import com.google.common.io.ByteStreams;
-import com.google.common.io.ByteArrayDataInput;
 import org.bukkit.scheduler.BukkitTask;
 import net.kyori.adventure.text.Component;
 
+import java.io.StringWriter;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class PlayerListener implements Listener, PluginMessageListener {
 
@@ -36,48 +59,175 @@ public class PlayerListener implements Listener, PluginMessageListener {
     private final Map<UUID, PlayerData> loadingCache = new ConcurrentHashMap<>();
     private final Map<UUID, Boolean> savingPlayers = new ConcurrentHashMap<>();
     private final Map<UUID, BukkitTask> activeLockTasks = new ConcurrentHashMap<>();
+    private final Map<UUID, Prefetch> prefetches = new ConcurrentHashMap<>();
+    // data_version of each locked player's row, used to version handed-off snapshots
+    private final Map<UUID, Long> loadedVersions = new ConcurrentHashMap<>();
+    private final HandoffManager handoffManager = new HandoffManager();
+    private final BridgeMetrics metrics;
+
+    // Longest a login waits for an in-flight prefetch (its own lock wait is 10s)
+    private static final long PREFETCH_WAIT_MS = 12000;
+    // Traces of switches that never arrive are dropped after this
+    private static final long TRACE_TTL_TICKS = 60 * 20;
 
     // This will track players handled by the 'SaveAndRelease' message
     // to prevent 'PlayerQuitEvent' from firing a redundant save.
-    private final Map<UUID, Boolean> switchingPlayers = new ConcurrentHashMap<>();
+    // The proxy's SaveAndRelease for each switching player
+    private final Map<UUID, SwitchRequest> switchingPlayers = new ConcurrentHashMap<>();
+    // Switches arriving at this server, completed when the player's data is applied
+    private final Map<UUID, SwitchTimings.Trace> switchTraces = new ConcurrentHashMap<>();
+    private volatile boolean proxyUsesFrames;
+
+    private record PrefetchResult(boolean locked, PlayerData data) {
+    }
+
+    private record SwitchRequest(int requestId, long traceId) {
+    }
+
+    private static class Prefetch {
+        private final CompletableFuture<PrefetchResult> future = new CompletableFuture<>();
+    }
 
     public PlayerListener(DatabaseManager databaseManager, MCDataBridge plugin) {
+        this(databaseManager, plugin, new BridgeMetrics());
+    }
+
+    public PlayerListener(DatabaseManager databaseManager, MCDataBridge plugin, BridgeMetrics metrics) {
         this.databaseManager = databaseManager;
         this.plugin = plugin;
         this.gson = MCDataBridge.getGson();
+        this.metrics = metrics;
     }
 
     @Override
     public void onPluginMessageReceived(String channel, Player player, byte[] message) {
-        if (!channel.equals("mc-data-bridge:main")) {
+        if (!channel.equals(BridgeProtocol.CHANNEL)) {
             return;
         }
 
         if (message == null)
             return; // Add null check to satisfy linter
 
-        ByteArrayDataInput in = ByteStreams.newDataInput(message);
-        String subchannel = in.readUTF();
+        BridgeFrame frame;
+        try {
+            frame = BridgeProtocol.decode(message);
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Discarding malformed proxy message: " + e.getMessage());
+            return;
+        }
+        // Proxies older than the frame format cannot relay handoffs
+        proxyUsesFrames = !frame.isLegacy();
+
+        for (BridgeCommand command : frame.getCommands()) {
+            handleProxyCommand(command);
+        }
+    }
 
-        if (subchannel.equals("SaveAndRelease")) {
-            String uuidStr = in.readUTF();
-            UUID uuid = UUID.fromString(uuidStr);
-            Player playerToSave = Bukkit.getPlayer(uuid);
+    /**
+     * Handles a command received over the control channel. Must be called on
+     * the main thread.
+     */
+    public void handleControlCommand(BridgeCommand command) {
+        // Only proxies that speak frames have a control channel
+        proxyUsesFrames = true;
+        handleProxyCommand(command);
+    }
 
-            if (playerToSave != null) {
-                if (plugin.isDebugMode()) {
-                    plugin.getLogger().info(
-                            "Received 'SaveAndRelease' request for " + playerToSave.getName() + ". Triggering save.");
-                }
+    private void handleProxyCommand(BridgeCommand command) {
+        UUID uuid = command.getUuid();
+        switch (command.getType()) {
+            case BridgeCommand.SAVE_AND_RELEASE -> {
+                Player playerToSave = Bukkit.getPlayer(uuid);
+                if (playerToSave != null) {
+                    if (plugin.isDebugMode()) {
+                        plugin.getLogger().info(TraceId.tag(command.getTraceId())
+                                + "Received 'SaveAndRelease' request for " + playerToSave.getName()
+                                + ". Triggering save.");
+                    }
 
-                // Flag the player as switching *before* calling the save.
-                switchingPlayers.put(uuid, true);
+                    // Flag the player as switching *before* calling the save.
+                    switchingPlayers.put(uuid, new SwitchRequest(command.getRequestId(), command.getTraceId()));
 
-                savePlayerDataAndReleaseLock(playerToSave);
+                    savePlayerDataAndReleaseLock(playerToSave);
+                }
+            }
+            case BridgeCommand.DRAIN -> {
+                plugin.getLogger().info("Proxy requested a drain. Saving and releasing all online players.");
+                for (Player online : Bukkit.getOnlinePlayers()) {
+                    switchingPlayers.put(online.getUniqueId(),
+                            new SwitchRequest(command.getRequestId(), TraceId.NONE));
+                    savePlayerDataAndReleaseLock(online);
+                }
+            }
+            case BridgeCommand.RELEASE_SERVER -> releaseServerLocks(command.getServerId(), command.getVersion());
+            case BridgeCommand.PREFETCH -> {
+                startTrace(uuid, command);
+                prefetch(uuid);
+            }
+            case BridgeCommand.HANDOFF -> {
+                if (plugin.isHandoffEnabled()) {
+                    try {
+                        handoffManager.accept(command);
+                    } catch (Exception e) {
+                        plugin.getLogger().warning("Discarding malformed handoff chunk: " + e.getMessage());
+                    }
+                }
+            }
+            default -> {
             }
         }
     }
 
+    /**
+     * Starts timing a switch the proxy announced, to be completed when the
+     * player's data has been applied here.
+     */
+    private void startTrace(UUID uuid, BridgeCommand prefetch) {
+        if (prefetch.getTraceId() == TraceId.NONE || Bukkit.getPlayer(uuid) != null) {
+            return;
+        }
+        SwitchTimings.Trace trace = metrics.switches.start(prefetch.getTraceId(), prefetch.getSaveWaitUs(),
+                prefetch.getTimings());
+        switchTraces.put(uuid, trace);
+        plugin.getServer().getScheduler().runTaskLaterAsynchronously(plugin,
+                () -> switchTraces.remove(uuid, trace), TRACE_TTL_TICKS);
+    }
+
+    /**
+     * @return the trace of the switch the player is part of on this server,
+     *         as source or destination, or {@link TraceId#NONE}.
+     */
+    private long traceOf(UUID uuid) {
+        SwitchTimings.Trace trace = switchTraces.get(uuid);
+        if (trace != null) {
+            return trace.getTraceId();
+        }
+        SwitchRequest request = switchingPlayers.get(uuid);
+        return request != null ? request.traceId() : TraceId.NONE;
+    }
+
+    /**
+     * Prefix for log lines about the player: their switch's trace, if any.
+     */
+    private String tag(UUID uuid) {
+        return TraceId.tag(traceOf(uuid));
+    }
+
+    /**
+     * Releases the locks of a server the proxy saw crash, on its behalf.
+     */
+    private void releaseServerLocks(String deadServerId, long downForMs) {
+        if (deadServerId == null || deadServerId.equals(plugin.getServerId())) {
+            return; // We are evidently alive
+        }
+        ServerLockRelease release = new ServerLockRelease(databaseManager, plugin.getLogger(),
+                plugin.getLockHeartbeatSeconds(), plugin.getBulkReleaseBatchSize(), plugin.getBulkReleaseThrottleMs(),
+                (task, delayMs) -> plugin.getServer().getScheduler().runTaskLaterAsynchronously(plugin, task,
+                        Math.max(1, (delayMs + 49) / 50)));
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin,
+                () -> release.release(deadServerId, downForMs));
+    }
+
     @EventHandler(priority = EventPriority.HIGHEST)
     public void onAsyncPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
         UUID uuid = event.getUniqueId();
@@ -92,72 +242,70 @@ public class PlayerListener implements Listener, PluginMessageListener {
             return;
         }
 
+        if (!plugin.awaitSchemaReady()) {
+            metrics.kicks.increment();
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER,
+                    Component.text("[DataBridge] This server is still preparing its database. Please try again.",
+                            net.kyori.adventure.text.format.NamedTextColor.RED));
+            plugin.getLogger().warning("Player " + name + " was disallowed: database schema is not ready yet.");
+            return;
+        }
+
+        PlayerNameIndex nameIndex = plugin.getNameIndex();
+        if (nameIndex != null) {
+            try {
+                nameIndex.record(uuid, name);
+            } catch (SQLException e) {
+                // Only admin commands depend on it, so never refuse a login over it
+                plugin.getLogger().warning("Could not record the name of " + name + ": " + e.getMessage());
+            }
+        }
+
         try {
-            int attempts = 0;
-            final int MAX_ATTEMPTS = 20; // 10 seconds
-            final long WAIT_TIME_MS = 500;
+            PlayerData data;
+            PrefetchResult prefetched = awaitPrefetch(prefetches.remove(uuid));
 
-            while (attempts < MAX_ATTEMPTS) {
-                if (databaseManager.acquireLock(uuid, serverId)) {
-                    break; // Lock acquired
+            if (prefetched != null && prefetched.locked()) {
+                data = prefetched.data();
+                if (plugin.isDebugMode()) {
+                    plugin.getLogger().info(tag(uuid) + "Using prefetched data for player " + name + ".");
+                }
+            } else {
+                Long version = acquireLockWithRetry(uuid, name, serverId);
+                if (version == null) {
+                    metrics.kicks.increment();
+                    event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER,
+                            Component.text(
+                                    "[DataBridge] Your data is still being saved by another server. Please try again.",
+                                    net.kyori.adventure.text.format.NamedTextColor.RED));
+                    plugin.getLogger().warning(
+                            tag(uuid) + "Player " + name + " was disallowed due to a persistent data lock.");
+                    return;
                 }
 
                 if (plugin.isDebugMode()) {
-                    plugin.getLogger()
-                            .info("Player " + name + "'s data is locked. Waiting... (Attempt " + (attempts + 1) + ")");
+                    plugin.getLogger().info(tag(uuid) + "Successfully acquired data lock for player " + name + ".");
                 }
-                Thread.sleep(WAIT_TIME_MS);
-                attempts++;
-            }
-
-            if (!isLockOwner(uuid, serverId)) {
-                event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER,
-                        Component.text(
-                                "[DataBridge] Your data is still being saved by another server. Please try again.",
-                                net.kyori.adventure.text.format.NamedTextColor.RED));
-                plugin.getLogger().warning("Player " + name + " was disallowed due to a persistent data lock.");
-                return;
-            }
 
-            if (plugin.isDebugMode()) {
-                plugin.getLogger().info("Successfully acquired data lock for player " + name + ".");
+                // --- DATA IS LOCKED, PROCEED WITH LOADING ---
+                data = loadLockedData(uuid, name, version);
             }
 
-            // --- DATA IS LOCKED, PROCEED WITH LOADING ---
-            try (Connection connection = databaseManager.getConnection()) {
-                String query = "SELECT data FROM " + databaseManager.getTableName() + " WHERE uuid = ?";
-                PreparedStatement statement = connection.prepareStatement(query);
-                statement.setString(1, uuid.toString());
-                ResultSet resultSet = statement.executeQuery();
-
-                if (resultSet.next()) {
-                    byte[] dataBytes = resultSet.getBytes("data");
-                    String json = (dataBytes != null) ? new String(dataBytes, java.nio.charset.StandardCharsets.UTF_8)
-                            : null;
-
-                    if (json != null && !json.trim().isEmpty() && !json.equals("{}")) {
-                        PlayerData data = gson.fromJson(json, PlayerData.class);
-                        loadingCache.put(uuid, data);
-                        if (plugin.isDebugMode()) {
-                            plugin.getLogger().info("Player data for " + name + " loaded into cache.");
-                        }
-                    } else {
-                        plugin.getLogger()
-                                .info("No existing player data found for " + name + ". A new profile will be created.");
-                    }
-                } else {
-                    plugin.getLogger().info("No row found for 'new' player " + name + ".");
-                }
+            if (data != null) {
+                loadingCache.put(uuid, data);
             }
         } catch (PlayerData.ItemDeserializationException e) {
-            plugin.getLogger().severe("A critical error occurred while deserializing inventory for player " + name
-                    + ". " + e.getMessage());
+            metrics.kicks.increment();
+            plugin.getLogger().severe(tag(uuid) + "A critical error occurred while deserializing inventory for player "
+                    + name + ". " + e.getMessage());
             event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, Component.text(
                     "[DataBridge] A critical error occurred while deserializing your inventory. Please contact an administrator.",
                     net.kyori.adventure.text.format.NamedTextColor.RED));
             databaseManager.releaseLock(uuid, serverId); // Release the lock we acquired
         } catch (Exception e) {
-            plugin.getLogger().severe("Critical error during pre-login for player " + name + ": " + e.getMessage());
+            metrics.kicks.increment();
+            plugin.getLogger().severe(
+                    tag(uuid) + "Critical error during pre-login for player " + name + ": " + e.getMessage());
             event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER,
                     Component.text("[DataBridge] Could not process your player data. Please relog.",
                             net.kyori.adventure.text.format.NamedTextColor.RED));
@@ -165,19 +313,226 @@ public class PlayerListener implements Listener, PluginMessageListener {
         }
     }
 
-    private boolean isLockOwner(UUID uuid, String serverId) {
+    /**
+     * Polls for the player's data lock for up to 10 seconds.
+     *
+     * @return the row's data_version if this server holds the lock afterwards,
+     *         or null if it does not.
+     */
+    private Long acquireLockWithRetry(UUID uuid, String name, String serverId)
+            throws SQLException, InterruptedException {
+        int attempts = 0;
+        final int MAX_ATTEMPTS = 20; // 10 seconds
+        final long WAIT_TIME_MS = 500;
+        long start = System.nanoTime();
+        LockAcquireEvent event = new LockAcquireEvent();
+        event.begin();
+
+        while (attempts < MAX_ATTEMPTS) {
+            if (databaseManager.acquireLock(uuid, serverId, attempts + 1)) {
+                attempts++;
+                break; // Lock acquired
+            }
+            metrics.lockWaits.increment();
+
+            if (plugin.isDebugMode()) {
+                plugin.getLogger().info(tag(uuid) + "Player " + name + "'s data is locked. Waiting... (Attempt "
+                        + (attempts + 1) + ")");
+            }
+            Thread.sleep(WAIT_TIME_MS);
+            attempts++;
+        }
+        Long version = getLockedVersion(uuid, serverId);
+        long lockUs = BridgeMetrics.since(start);
+        metrics.lockAcquire.record(lockUs);
+        SwitchTimings.Trace trace = switchTraces.get(uuid);
+        if (trace != null) {
+            trace.setLockUs(lockUs);
+        }
+        if (event.shouldCommit()) {
+            event.setPlayer(uuid, serverId);
+            event.setTrace(traceOf(uuid));
+            event.attempts = attempts;
+            event.acquired = version != null;
+            event.commit();
+        }
+        return version;
+    }
+
+    /**
+     * Produces the data for a player whose lock this server holds: the snapshot
+     * handed off through the proxy if it matches the committed version,
+     * otherwise a read from the database.
+     */
+    private PlayerData loadLockedData(UUID uuid, String name, long version) throws Exception {
+        loadedVersions.put(uuid, version);
+
+        long start = System.nanoTime();
+        DataLoadEvent event = new DataLoadEvent();
+        event.begin();
+        PlayerData data;
+        String json = handoffManager.take(uuid, version);
+        if (json != null) {
+            if (plugin.isDebugMode()) {
+                plugin.getLogger().info(tag(uuid) + "Using handed-off snapshot (version " + version + ") for " + name
+                        + ". Skipped database read.");
+            }
+            long decodeStart = System.nanoTime();
+            data = gson.fromJson(json, PlayerData.class);
+            metrics.jsonDecode.record(BridgeMetrics.since(decodeStart));
+            event.source = "handoff";
+            event.bytes = BridgeMetrics.utf8Length(json);
+        } else {
+            data = loadPlayerData(uuid, name, event);
+            event.source = "database";
+        }
+        SwitchTimings.Trace trace = switchTraces.get(uuid);
+        if (trace != null) {
+            trace.setLoadUs(BridgeMetrics.since(start));
+        }
+        if (event.shouldCommit()) {
+            event.setPlayer(uuid, plugin.getServerId());
+            event.setTrace(traceOf(uuid));
+            event.commit();
+        }
+        return data;
+    }
+
+    /**
+     * Reads and parses the player's stored data. The caller must hold the lock.
+     * If the proxy's hint did not arrive, the trace the source stored with its
+     * save still identifies the switch.
+     *
+     * @param event receives the size of the stored data.
+     * @return the data, or null if the player has no saved profile yet.
+     */
+    private PlayerData loadPlayerData(UUID uuid, String name, DataLoadEvent event) throws SQLException {
         try (Connection connection = databaseManager.getConnection()) {
-            String query = "SELECT locking_server FROM " + databaseManager.getTableName() + " WHERE uuid = ?";
+            String query = "SELECT data, trace_id FROM " + databaseManager.getTableName() + " WHERE uuid = ?";
+            long start = System.nanoTime();
+            PreparedStatement statement = connection.prepareStatement(query);
+            statement.setString(1, uuid.toString());
+            ResultSet resultSet = statement.executeQuery();
+
+            if (resultSet.next()) {
+                byte[] dataBytes = resultSet.getBytes("data");
+                metrics.dataSelect.record(BridgeMetrics.since(start));
+                long traceId = resultSet.getLong("trace_id");
+                if (traceId != TraceId.NONE) {
+                    switchTraces.computeIfAbsent(uuid, key -> metrics.switches.start(traceId, -1, null));
+                }
+                event.bytes = dataBytes != null ? dataBytes.length : 0;
+                String json = (dataBytes != null) ? new String(dataBytes, java.nio.charset.StandardCharsets.UTF_8)
+                        : null;
+
+                if (json != null && !json.trim().isEmpty() && !json.equals("{}")) {
+                    metrics.payloadLoaded.record(dataBytes.length);
+                    long decodeStart = System.nanoTime();
+                    PlayerData data = gson.fromJson(json, PlayerData.class);
+                    metrics.jsonDecode.record(BridgeMetrics.since(decodeStart));
+                    if (plugin.isDebugMode()) {
+                        plugin.getLogger().info(tag(uuid) + "Player data for " + name + " loaded into cache.");
+                    }
+                    return data;
+                }
+                plugin.getLogger()
+                        .info("No existing player data found for " + name + ". A new profile will be created.");
+            } else {
+                plugin.getLogger().info("No row found for 'new' player " + name + ".");
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Starts loading a player's data before they arrive, on a hint from the
+     * proxy that they are switching to this server. The lock is acquired as
+     * soon as the source server releases it, so that the DB load overlaps with
+     * the proxy's connection handshake. Unclaimed prefetches release their lock
+     * after 'prefetch.ttl-ms'.
+     */
+    private void prefetch(UUID uuid) {
+        String serverId = plugin.getServerId();
+        if (!plugin.isPrefetchEnabled() || plugin.isServerBlacklisted(serverId) || Bukkit.getPlayer(uuid) != null) {
+            return;
+        }
+
+        Prefetch prefetch = new Prefetch();
+        if (prefetches.putIfAbsent(uuid, prefetch) != null) {
+            return; // Already prefetching
+        }
+
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                Long version = plugin.awaitSchemaReady() ? acquireLockWithRetry(uuid, uuid.toString(), serverId)
+                        : null;
+                if (version == null) {
+                    prefetch.future.complete(new PrefetchResult(false, null));
+                    return;
+                }
+                prefetch.future.complete(new PrefetchResult(true, loadLockedData(uuid, uuid.toString(), version)));
+            } catch (Exception e) {
+                plugin.getLogger().warning(tag(uuid) + "Prefetch failed for " + uuid + ": " + e.getMessage());
+                databaseManager.releaseLock(uuid, serverId);
+                prefetch.future.completeExceptionally(e);
+            }
+        });
+
+        long ttlTicks = Math.max(1, plugin.getPrefetchTtlMs() / 50);
+        plugin.getServer().getScheduler().runTaskLaterAsynchronously(plugin, () -> {
+            // Only the side that removes the entry owns the lock it acquired
+            if (prefetches.remove(uuid, prefetch)) {
+                prefetch.future.thenAccept(result -> {
+                    if (result.locked() && Bukkit.getPlayer(uuid) == null) {
+                        loadedVersions.remove(uuid);
+                        databaseManager.releaseLock(uuid, serverId);
+                        if (plugin.isDebugMode()) {
+                            plugin.getLogger().info("Prefetch for " + uuid + " expired unused. Released lock.");
+                        }
+                    }
+                });
+            }
+        }, ttlTicks);
+
+        if (plugin.isDebugMode()) {
+            plugin.getLogger().info(tag(uuid) + "Prefetching data for incoming player " + uuid + ".");
+        }
+    }
+
+    private PrefetchResult awaitPrefetch(Prefetch prefetch) throws Exception {
+        if (prefetch == null) {
+            return null;
+        }
+        try {
+            return prefetch.future.get(PREFETCH_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return null; // The normal path below will detect if the prefetch did get the lock
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return the row's data_version if this server holds the lock, otherwise
+     *         null.
+     */
+    private Long getLockedVersion(UUID uuid, String serverId) {
+        try (Connection connection = databaseManager.getConnection()) {
+            String query = "SELECT locking_server, data_version FROM " + databaseManager.getTableName()
+                    + " WHERE uuid = ?";
             PreparedStatement checkStmt = connection.prepareStatement(query);
             checkStmt.setString(1, uuid.toString());
             ResultSet rs = checkStmt.executeQuery();
-            if (rs.next()) {
-                return serverId.equals(rs.getString("locking_server"));
+            if (rs.next() && serverId.equals(rs.getString("locking_server"))) {
+                return rs.getLong("data_version");
             }
         } catch (SQLException e) {
             plugin.getLogger().severe("Failed to check lock owner for " + uuid + ": " + e.getMessage());
         }
-        return false;
+        return null;
     }
 
     @EventHandler(priority = EventPriority.HIGHEST)
@@ -196,13 +551,33 @@ public class PlayerListener implements Listener, PluginMessageListener {
         // Clean up the switching flag in case of a failed/rejoined switch.
         switchingPlayers.remove(uuid);
 
+        // Tell the proxy which server-id this backend locks with, so it can
+        // release our locks if we crash. Delayed until the channel is registered.
+        plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
+            if (player.isOnline()) {
+                try {
+                    player.sendPluginMessage(plugin, BridgeProtocol.CHANNEL,
+                            BridgeProtocol.encode(BridgeCommand.hello(serverId)));
+                } catch (Exception e) {
+                    if (plugin.isDebugMode()) {
+                        plugin.getLogger().info("Could not announce server-id to the proxy: " + e.getMessage());
+                    }
+                }
+            }
+        }, 20L);
+
         savingPlayers.remove(player.getUniqueId());
         PlayerData data = loadingCache.remove(player.getUniqueId());
+        long applyStart = System.nanoTime();
         if (data != null) {
             applyPlayerData(player, data);
         } else {
-            plugin.getLogger()
-                    .info("Player " + player.getName() + " joining with fresh profile. Lock will be released on quit.");
+            plugin.getLogger().info(tag(uuid) + "Player " + player.getName()
+                    + " joining with fresh profile. Lock will be released on quit.");
+        }
+        SwitchTimings.Trace trace = switchTraces.remove(uuid);
+        if (trace != null) {
+            plugin.getLogger().info(trace.complete(player.getName(), BridgeMetrics.since(applyStart)));
         }
 
         // Start heartbeat task to periodically update the lock
@@ -239,6 +614,7 @@ public class PlayerListener implements Listener, PluginMessageListener {
 
     @EventHandler(priority = EventPriority.MONITOR)
     public void onPlayerQuit(PlayerQuitEvent event) {
+        switchTraces.remove(event.getPlayer().getUniqueId());
         // If 'switchingPlayers' contains the UUID, it means 'SaveAndRelease'
         // already handled the save. We remove the flag and stop.
         if (switchingPlayers.remove(event.getPlayer().getUniqueId()) != null) {
@@ -256,6 +632,14 @@ public class PlayerListener implements Listener, PluginMessageListener {
         savePlayerDataAndReleaseLock(event.getPlayer());
     }
 
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onServerTickEnd(ServerTickEndEvent event) {
+        String warning = metrics.mainThread.endTick();
+        if (warning != null) {
+            plugin.getLogger().warning(warning);
+        }
+    }
+
     public void savePlayerDataAndReleaseLock(Player player) {
         final UUID uuid = player.getUniqueId();
         final String name = player.getName();
@@ -271,48 +655,153 @@ public class PlayerListener implements Listener, PluginMessageListener {
             return;
         }
 
+        final Long loadedVersion = loadedVersions.remove(uuid);
+        // The proxy is holding the switch until we acknowledge this save
+        final SwitchRequest switchRequest = switchingPlayers.get(uuid);
+        final boolean switching = switchRequest != null;
+        final long traceId = switching ? switchRequest.traceId() : TraceId.NONE;
+        final String tag = TraceId.tag(traceId);
+        final boolean handoff = plugin.isHandoffEnabled() && loadedVersion != null && switching && proxyUsesFrames;
+
         final PlayerData finalData;
+        final long captureUs;
+        SnapshotCaptureEvent captureEvent = new SnapshotCaptureEvent();
+        captureEvent.begin();
         try {
             // This captures the player's live data at the moment of saving.
-            finalData = new PlayerData(player, plugin);
+            long start = System.nanoTime();
+            finalData = new PlayerData(player, plugin, metrics.mainThread.forPlayer(name));
+            captureUs = BridgeMetrics.since(start);
+            metrics.snapshotCapture.record(captureUs);
+            captureEvent.success = true;
         } catch (Exception e) {
-            plugin.getLogger().severe("Failed to create final data snapshot for " + name
+            metrics.failedSaves.increment();
+            plugin.getLogger().severe(tag + "Failed to create final data snapshot for " + name
                     + ". Data will not be saved. Error: " + e.getMessage());
             databaseManager.releaseLock(uuid, serverId);
             savingPlayers.remove(uuid);
+            if (switching) {
+                sendSaved(player, uuid, switchRequest, -1, null);
+            }
             return;
+        } finally {
+            if (captureEvent.shouldCommit()) {
+                captureEvent.setPlayer(uuid, serverId);
+                captureEvent.setTrace(traceId);
+                captureEvent.commit();
+            }
         }
 
         if (plugin.isDebugMode()) {
-            plugin.getLogger().info("Got data snapshot for " + name + ". Scheduling save and lock release.");
+            plugin.getLogger().info(tag + "Got data snapshot for " + name + ". Scheduling save and lock release.");
         }
 
         plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            long savedVersion = -1;
+            SaveTimings timings = null;
             try {
-                String json = gson.toJson(finalData);
-                boolean success = databaseManager.saveAndReleaseLock(json, uuid, serverId);
+                long start = System.nanoTime();
+                StringWriter buffer = new StringWriter(8192);
+                SectionSizingWriter sizingWriter = new SectionSizingWriter(buffer);
+                gson.toJson(finalData, PlayerData.class, sizingWriter);
+                String json = buffer.toString();
+                long serializeUs = BridgeMetrics.since(start);
+                metrics.serialize.record(serializeUs);
+                start = System.nanoTime();
+                boolean success = databaseManager.saveAndReleaseLock(json, uuid, serverId, traceId);
+                long saveUs = BridgeMetrics.since(start);
+                metrics.save.record(saveUs);
 
                 if (success) {
+                    timings = new SaveTimings(captureUs, serializeUs, saveUs);
+                    metrics.payloadSaved.record(sizingWriter.getTotal());
+                    metrics.recordPayloadSections(sizingWriter.getSizes());
+                    if (loadedVersion != null) {
+                        savedVersion = loadedVersion + 1;
+                    }
+                    if (handoff) {
+                        // Ahead of the Saved acknowledgement, so it reaches the destination first
+                        sendHandoff(player, uuid, savedVersion, json);
+                    }
                     if (plugin.isDebugMode()) {
-                        plugin.getLogger().info("Successfully saved data and released lock for " + name + ".");
+                        plugin.getLogger().info(tag + "Successfully saved data and released lock for " + name + ".");
+                    }
+                    ControlServer controlServer = plugin.getControlServer();
+                    if (!switching && controlServer != null) {
+                        controlServer.broadcast(BridgeCommand.lockReleased(uuid, savedVersion));
                     }
                 } else {
+                    metrics.lostLockSaves.increment();
                     if (plugin.isDebugMode()) {
-                        plugin.getLogger().warning("Could not save data for " + name
+                        plugin.getLogger().warning(tag + "Could not save data for " + name
                                 + ": lock was lost or not held by this server (" + serverId
                                 + "). This is normal if another process (like a proxy message) already saved the data.");
                     }
                 }
             } catch (Exception e) {
-                plugin.getLogger().severe("A critical error occurred during async save for " + name
+                metrics.failedSaves.increment();
+                plugin.getLogger().severe(tag + "A critical error occurred during async save for " + name
                         + ". Releasing lock to prevent player being stuck. ERROR: " + e.getMessage());
                 databaseManager.releaseLock(uuid, serverId); // Still release lock on error
             } finally {
                 savingPlayers.remove(uuid);
+                if (switching) {
+                    sendSaved(player, uuid, switchRequest, savedVersion, timings);
+                }
             }
         });
     }
 
+    /**
+     * Tells the proxy that the lock has been released so it can connect the
+     * player to the destination.
+     *
+     * @param version the committed data_version, or -1 if unknown or the save
+     *                did not happen.
+     * @param timings how long the save took, or null if it did not happen.
+     */
+    private void sendSaved(Player player, UUID uuid, SwitchRequest request, long version, SaveTimings timings) {
+        try {
+            sendToProxy(player, BridgeCommand.saved(uuid, request.requestId(), version, request.traceId(), timings));
+        } catch (Exception e) {
+            plugin.getLogger().warning("Failed to acknowledge save for " + uuid + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sends the committed snapshot towards the destination through the proxy.
+     * Only called once the save has committed this version, so a snapshot
+     * with the version the destination reads is exactly the saved data.
+     */
+    private void sendHandoff(Player player, UUID uuid, long version, String json) {
+        try {
+            for (BridgeCommand chunk : HandoffManager.split(uuid, version, json)) {
+                sendToProxy(player, chunk);
+            }
+        } catch (Exception e) {
+            plugin.getLogger().warning("Failed to hand off data for " + uuid + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sends a command over the control channel when a proxy is connected to
+     * it, otherwise as a plugin message through the player. Always a frame: it
+     * is how the proxy learns this server understands frames.
+     */
+    private void sendToProxy(Player player, BridgeCommand command) {
+        ControlServer controlServer = plugin.getControlServer();
+        if (controlServer != null && controlServer.broadcast(command)) {
+            return;
+        }
+        player.sendPluginMessage(plugin, BridgeProtocol.CHANNEL, BridgeProtocol.encode(command));
+    }
+
+    private static long lap(MainThreadBudget budget, String player, Section section, long start) {
+        long now = System.nanoTime();
+        budget.record(player, section, now - start);
+        return now;
+    }
+
     private void cancelHeartbeat(UUID uuid) {
         BukkitTask task = activeLockTasks.remove(uuid);
         if (task != null) {
@@ -323,11 +812,22 @@ public class PlayerListener implements Listener, PluginMessageListener {
         }
     }
 
-    private void applyPlayerData(Player player, PlayerData data) {
+    /**
+     * Applies loaded data to a joining player. Must be called on the main
+     * thread. Package-private for the benchmarks.
+     */
+    void applyPlayerData(Player player, PlayerData data) {
+        long start = System.nanoTime();
+        DataApplyEvent event = new DataApplyEvent();
+        event.begin();
         try {
             if (player == null || !player.isOnline())
                 return;
 
+            MainThreadBudget budget = metrics.mainThread;
+            String name = player.getName();
+            long lap = start;
+
             if (plugin.isSyncEnabled("food-level")) {
                 player.setFoodLevel(data.getFoodLevel());
                 player.setSaturation(data.getSaturation());
@@ -338,15 +838,28 @@ public class PlayerListener implements Listener, PluginMessageListener {
                 player.setExp(data.getExp());
                 player.setLevel(data.getLevel());
             }
-            if (plugin.isSyncEnabled("inventory"))
-                player.getInventory().setContents(data.getInventoryContents());
-            if (plugin.isSyncEnabled("armor"))
-                player.getInventory().setArmorContents(data.getArmorContents());
+            long otherNanos = System.nanoTime() - lap;
+
+            // Items are decoded lazily by the getters; time that apart from applying them
+            lap = System.nanoTime();
+            ItemStack[] inventory = plugin.isSyncEnabled("inventory") ? data.getInventoryContents() : null;
+            ItemStack[] armor = plugin.isSyncEnabled("armor") ? data.getArmorContents() : null;
+            long decodeNanos = System.nanoTime() - lap;
+            if (inventory != null)
+                player.getInventory().setContents(inventory);
+            if (armor != null)
+                player.getInventory().setArmorContents(armor);
+            lap = lap(budget, name, Section.INVENTORY, lap);
+
             if (plugin.isSyncEnabledNewFeature("ender-chest")) {
-                if (data.getEnderChestContents() != null && data.getEnderChestContents().length > 0) {
-                    player.getEnderChest().setContents(data.getEnderChestContents());
+                ItemStack[] enderChest = data.getEnderChestContents();
+                decodeNanos += System.nanoTime() - lap;
+                if (enderChest.length > 0) {
+                    player.getEnderChest().setContents(enderChest);
                 }
             }
+            lap = lap(budget, name, Section.ENDER_CHEST, lap);
+            metrics.itemDecode.record(decodeNanos / 1000);
 
             if (plugin.isSyncEnabled("potion-effects")) {
                 for (PotionEffect effect : player.getActivePotionEffects()) {
@@ -359,11 +872,15 @@ public class PlayerListener implements Listener, PluginMessageListener {
                     }
                 }
             }
+            lap = lap(budget, name, Section.EFFECTS, lap);
 
             if (plugin.isSyncEnabled("health")) {
                 double maxHealth = player.getAttribute(org.bukkit.attribute.Attribute.GENERIC_MAX_HEALTH).getValue();
                 player.setHealth(Math.min(data.getHealth(), maxHealth));
             }
+            otherNanos += System.nanoTime() - lap;
+            budget.record(name, Section.OTHER, otherNanos);
+            lap = System.nanoTime();
 
             if (plugin.isSyncEnabledNewFeature("advancements")) {
                 // Apply Recipes
@@ -405,14 +922,25 @@ public class PlayerListener implements Listener, PluginMessageListener {
                 }
             }
 
-            plugin.getLogger().info("Successfully applied data to player " + player.getName());
+            lap(budget, name, Section.ADVANCEMENTS, lap);
+            metrics.dataApply.record(BridgeMetrics.since(start));
+            event.success = true;
+            plugin.getLogger().info(tag(player.getUniqueId()) + "Successfully applied data to player " + player.getName());
         } catch (Exception e) {
-            plugin.getLogger().severe("A critical error occurred while applying data to player "
+            plugin.getLogger().severe((player != null ? tag(player.getUniqueId()) : "")
+                    + "A critical error occurred while applying data to player "
                     + (player != null ? player.getName() : "null") + ". " + e.getMessage());
             if (player != null) {
+                metrics.kicks.increment();
                 player.kick(Component.text("[DataBridge] An error occurred applying your data.",
                         net.kyori.adventure.text.format.NamedTextColor.RED));
             }
+        } finally {
+            if (event.shouldCommit()) {
+                event.setPlayer(player != null ? player.getUniqueId() : null, plugin.getServerId());
+                event.setTrace(player != null ? traceOf(player.getUniqueId()) : TraceId.NONE);
+                event.commit();
+            }
         }
     }
 }
@@ -1,22 +1,44 @@
 package com.digitalserverhost.plugins.managers;
 
+import com.digitalserverhost.plugins.metrics.MetricsRegistry;
+import com.digitalserverhost.plugins.metrics.StatementStats;
+import com.digitalserverhost.plugins.metrics.jfr.DataSaveEvent;
+import com.digitalserverhost.plugins.metrics.jfr.LockReleaseEvent;
+import com.digitalserverhost.plugins.protocol.TraceId;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import org.bukkit.configuration.file.FileConfiguration;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
+import java.util.function.IntConsumer;
+import java.util.logging.Logger;
 
 public class DatabaseManager {
 
     private final HikariDataSource dataSource;
     private final long lockTimeout;
     private final String tableName;
+    private final String namesTableName;
+    private final StatementStats statementStats;
 
     public DatabaseManager(FileConfiguration config, String tableName) {
+        this(config, tableName, defaultStatementStats());
+    }
+
+    public DatabaseManager(FileConfiguration config, String tableName, StatementStats statementStats) {
+        this.statementStats = statementStats;
         this.tableName = "`" + tableName.replace("`", "") + "`"; // Escape table name
+        this.namesTableName = "`" + tableName.replace("`", "") + "_names`";
         HikariConfig hikariConfig = new HikariConfig();
 
         String jdbcUrl = "jdbc:mysql://" + config.getString("database.host") + ":" + config.getInt("database.port")
@@ -54,9 +76,20 @@ public class DatabaseManager {
      * Allows injection of a mock DataSource.
      */
     public DatabaseManager(HikariDataSource dataSource, String tableName, long lockTimeout) {
+        this(dataSource, tableName, lockTimeout, defaultStatementStats());
+    }
+
+    public DatabaseManager(HikariDataSource dataSource, String tableName, long lockTimeout,
+            StatementStats statementStats) {
         this.dataSource = dataSource;
         this.tableName = "`" + tableName.replace("`", "") + "`";
+        this.namesTableName = "`" + tableName.replace("`", "") + "_names`";
         this.lockTimeout = lockTimeout;
+        this.statementStats = statementStats;
+    }
+
+    private static StatementStats defaultStatementStats() {
+        return new StatementStats(new MetricsRegistry(), Logger.getLogger("mc-data-bridge"));
     }
 
     public Connection getConnection() throws SQLException {
@@ -70,30 +103,40 @@ public class DatabaseManager {
     }
 
     public boolean acquireLock(UUID uuid, String serverId) throws SQLException {
+        return acquireLock(uuid, serverId, 0);
+    }
+
+    /**
+     * @param attempt the caller's retry count, reported if a statement is
+     *                slow.
+     */
+    public boolean acquireLock(UUID uuid, String serverId, int attempt) throws SQLException {
         long currentTime = System.currentTimeMillis();
         long expirationTime = currentTime - lockTimeout;
 
         try (Connection connection = getConnection()) {
-            PreparedStatement updateStmt = connection.prepareStatement(
-                    "UPDATE " + tableName
-                            + " SET is_locked = 1, locking_server = ?, lock_timestamp = ? WHERE uuid = ? AND (is_locked = 0 OR is_locked IS NULL OR lock_timestamp < ?)");
+            String updateSql = "UPDATE " + tableName
+                    + " SET is_locked = 1, locking_server = ?, lock_timestamp = ? WHERE uuid = ? AND (is_locked = 0 OR is_locked IS NULL OR lock_timestamp < ?)";
+            PreparedStatement updateStmt = connection.prepareStatement(updateSql);
             updateStmt.setString(1, serverId);
             updateStmt.setLong(2, currentTime);
             updateStmt.setString(3, uuid.toString());
             updateStmt.setLong(4, expirationTime);
 
-            if (updateStmt.executeUpdate() > 0) {
+            if (executeUpdate(updateStmt, statementStats.register("lock_acquire", updateSql), 0, uuid, serverId,
+                    attempt) > 0) {
                 return true; // Lock acquired on existing row
             }
 
             try {
-                PreparedStatement insertStmt = connection.prepareStatement(
-                        "INSERT INTO " + tableName
-                                + " (uuid, data, is_locked, locking_server, lock_timestamp) VALUES (?, NULL, 1, ?, ?)");
+                String insertSql = "INSERT INTO " + tableName
+                        + " (uuid, data, is_locked, locking_server, lock_timestamp) VALUES (?, NULL, 1, ?, ?)";
+                PreparedStatement insertStmt = connection.prepareStatement(insertSql);
                 insertStmt.setString(1, uuid.toString());
                 insertStmt.setString(2, serverId);
                 insertStmt.setLong(3, currentTime);
-                insertStmt.executeUpdate();
+                executeUpdate(insertStmt, statementStats.register("lock_insert", insertSql), 0, uuid, serverId,
+                        attempt);
                 return true; // Lock acquired via new row
             } catch (SQLException e) {
                 // This is expected if a race condition occurred and another server inserted the
@@ -104,15 +147,46 @@ public class DatabaseManager {
         }
     }
 
+    /**
+     * Saves the data and its size, bumps its data_version and releases the lock
+     * in one statement, so any server that acquires the lock afterwards sees the
+     * save.
+     */
     public boolean saveAndReleaseLock(String json, UUID uuid, String serverId) throws SQLException {
+        return saveAndReleaseLock(json, uuid, serverId, TraceId.NONE);
+    }
+
+    /**
+     * @param traceId the switch this save is part of, stored with the row, or
+     *                {@link TraceId#NONE}.
+     */
+    public boolean saveAndReleaseLock(String json, UUID uuid, String serverId, long traceId) throws SQLException {
         String sql = "UPDATE " + tableName
-                + " SET data = ?, is_locked = 0, locking_server = NULL, lock_timestamp = 0 WHERE uuid = ? AND locking_server = ?";
+                + " SET data = ?, data_size = ?, trace_id = ?, data_version = data_version + 1, is_locked = 0, locking_server = NULL, lock_timestamp = 0 WHERE uuid = ? AND locking_server = ?";
+        DataSaveEvent event = new DataSaveEvent();
+        event.begin();
         try (Connection connection = getConnection();
                 PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setBytes(1, json.getBytes(java.nio.charset.StandardCharsets.UTF_8));
-            statement.setString(2, uuid.toString());
-            statement.setString(3, serverId);
-            return statement.executeUpdate() > 0;
+            byte[] data = json.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+            statement.setBytes(1, data);
+            statement.setInt(2, data.length);
+            if (traceId != TraceId.NONE) {
+                statement.setLong(3, traceId);
+            } else {
+                statement.setNull(3, Types.BIGINT);
+            }
+            statement.setString(4, uuid.toString());
+            statement.setString(5, serverId);
+            boolean saved = executeUpdate(statement, statementStats.register("save_release", sql), data.length, uuid,
+                    serverId, 0) > 0;
+            if (event.shouldCommit()) {
+                event.setPlayer(uuid, serverId);
+                event.setTrace(traceId);
+                event.bytes = data.length;
+                event.saved = saved;
+                event.commit();
+            }
+            return saved;
         }
     }
 
@@ -126,11 +200,19 @@ public class DatabaseManager {
 
         String sql = "UPDATE " + tableName
                 + " SET is_locked = 0, locking_server = NULL, lock_timestamp = 0 WHERE uuid = ? AND locking_server = ?";
+        LockReleaseEvent event = new LockReleaseEvent();
+        event.begin();
         try (Connection connection = getConnection();
                 PreparedStatement releaseStatement = connection.prepareStatement(sql)) {
             releaseStatement.setString(1, uuid.toString());
             releaseStatement.setString(2, serverId);
-            releaseStatement.executeUpdate();
+            int rows = executeUpdate(releaseStatement, statementStats.register("lock_release", sql), 0, uuid,
+                    serverId, 0);
+            if (event.shouldCommit()) {
+                event.setPlayer(uuid, serverId);
+                event.released = rows > 0;
+                event.commit();
+            }
         } catch (Exception e) {
             System.err.println("[mc-data-bridge] Failed to release lock for " + uuid + " on server " + serverId + ": "
                     + e.getMessage());
@@ -145,10 +227,18 @@ public class DatabaseManager {
     public boolean releaseLock(UUID uuid) {
         String sql = "UPDATE " + tableName
                 + " SET is_locked = 0, locking_server = NULL, lock_timestamp = 0 WHERE uuid = ?";
+        LockReleaseEvent event = new LockReleaseEvent();
+        event.begin();
         try (Connection connection = getConnection();
                 PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setString(1, uuid.toString());
-            int rows = statement.executeUpdate();
+            int rows = executeUpdate(statement, statementStats.register("lock_force_release", sql), 0, uuid, null, 0);
+            if (event.shouldCommit()) {
+                event.setPlayer(uuid, null);
+                event.forced = true;
+                event.released = rows > 0;
+                event.commit();
+            }
             return rows > 0; // Return true if a row was actually updated (lock released or at least row
                              // touched)
         } catch (SQLException e) {
@@ -157,6 +247,184 @@ public class DatabaseManager {
         }
     }
 
+    /**
+     * Releases every lock a crashed server holds, except locks refreshed at or
+     * after the given time: a server still heartbeating them is alive. Works
+     * in batches, like {@link #releaseLocksByServer}.
+     *
+     * @return the number of locks released.
+     */
+    public int releaseServerLocks(String serverId, long notRefreshedSince, int batchSize, long throttleMs)
+            throws SQLException, InterruptedException {
+        return releaseInBatches("server_release", "locking_server = ? AND lock_timestamp < ?",
+                statement -> {
+                    statement.setString(1, serverId);
+                    statement.setLong(2, notRefreshedSince);
+                    return 3;
+                }, batchSize, throttleMs, released -> {
+                });
+    }
+
+    /**
+     * Releases every lock held by a server, a batch of rows at a time so no
+     * statement holds row locks on much of the table.
+     *
+     * @param progress receives the running total after each batch that
+     *                 released something.
+     * @return the number of locks released.
+     */
+    public int releaseLocksByServer(String serverId, int batchSize, long throttleMs, IntConsumer progress)
+            throws SQLException, InterruptedException {
+        return releaseInBatches("bulk_release_server", "locking_server = ?",
+                statement -> {
+                    statement.setString(1, serverId);
+                    return 2;
+                }, batchSize, throttleMs, progress);
+    }
+
+    /**
+     * Releases every lock last taken or refreshed before the given time, in
+     * batches. Works through one holder at a time, so each batch is a range
+     * of the lock holder index rather than a scan of the table.
+     *
+     * @see #releaseLocksByServer
+     */
+    public int releaseLocksNotRefreshedSince(long notRefreshedSince, int batchSize, long throttleMs,
+            IntConsumer progress) throws SQLException, InterruptedException {
+        int total = 0;
+        for (String holder : findLockHolders()) {
+            int releasedBefore = total;
+            total += releaseInBatches("bulk_release_age", "locking_server = ? AND lock_timestamp < ? AND is_locked = 1",
+                    statement -> {
+                        statement.setString(1, holder);
+                        statement.setLong(2, notRefreshedSince);
+                        return 3;
+                    }, batchSize, throttleMs, released -> progress.accept(releasedBefore + released));
+        }
+        return total;
+    }
+
+    /**
+     * Releases the locks of the given players, whichever server holds them,
+     * one batch of players per statement.
+     *
+     * @see #releaseLocksByServer
+     */
+    public int releaseLocks(List<UUID> uuids, int batchSize, long throttleMs, IntConsumer progress)
+            throws SQLException, InterruptedException {
+        requirePositive(batchSize);
+        String prefix = "UPDATE " + tableName
+                + " SET is_locked = 0, locking_server = NULL, lock_timestamp = 0 WHERE uuid IN (";
+        String suffix = ") AND is_locked = 1";
+        // One entry for every batch size, reported with a placeholder IN list
+        StatementStats.Statement timed = statementStats.register("bulk_release_players", prefix + "?, ..." + suffix);
+        int total = 0;
+        for (int from = 0; from < uuids.size(); from += batchSize) {
+            List<UUID> batch = uuids.subList(from, Math.min(uuids.size(), from + batchSize));
+            String sql = prefix + String.join(", ", Collections.nCopies(batch.size(), "?")) + suffix;
+            try (Connection connection = getConnection();
+                    PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (int i = 0; i < batch.size(); i++) {
+                    statement.setString(i + 1, batch.get(i).toString());
+                }
+                int released = executeUpdate(statement, timed, 0, null, null, 0);
+                if (released > 0) {
+                    total += released;
+                    progress.accept(total);
+                }
+            }
+            if (throttleMs > 0 && from + batchSize < uuids.size()) {
+                Thread.sleep(throttleMs);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return every server currently holding at least one lock, read from the
+     *         lock holder index rather than the rows.
+     */
+    public List<String> findLockHolders() throws SQLException {
+        String sql = "SELECT DISTINCT locking_server FROM " + tableName + " WHERE locking_server IS NOT NULL";
+        StatementStats.Statement timed = statementStats.register("lock_holders", sql);
+        List<String> holders = new ArrayList<>();
+        try (Connection connection = getConnection();
+                PreparedStatement statement = connection.prepareStatement(sql)) {
+            long start = System.nanoTime();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    holders.add(resultSet.getString(1));
+                }
+            } finally {
+                timed.record(start, holders.size(), 0, null, null, 0);
+            }
+        }
+        return holders;
+    }
+
+    /**
+     * Releases a server's locks that have not been refreshed since the given
+     * time, in batches. A lock the holder refreshes or another server takes
+     * over meanwhile no longer matches and is left alone.
+     *
+     * @return the number of locks released.
+     */
+    public int releaseExpiredLocks(String serverId, long expiredBefore, int batchSize, long throttleMs)
+            throws SQLException, InterruptedException {
+        return releaseInBatches("reap_expired", "locking_server = ? AND lock_timestamp < ?",
+                statement -> {
+                    statement.setString(1, serverId);
+                    statement.setLong(2, expiredBefore);
+                    return 3;
+                }, batchSize, throttleMs, released -> {
+                });
+    }
+
+    @FunctionalInterface
+    private interface ParameterBinder {
+        /**
+         * @return the index of the next parameter.
+         */
+        int bind(PreparedStatement statement) throws SQLException;
+    }
+
+    /**
+     * Repeats a lock release limited to batchSize rows until a batch comes up
+     * short. The condition must stop matching rows once they are released.
+     */
+    private int releaseInBatches(String operation, String condition, ParameterBinder binder, int batchSize,
+            long throttleMs, IntConsumer progress) throws SQLException, InterruptedException {
+        String sql = "UPDATE " + tableName + " SET is_locked = 0, locking_server = NULL, lock_timestamp = 0 WHERE "
+                + condition + " LIMIT ?";
+        requirePositive(batchSize);
+        StatementStats.Statement timed = statementStats.register(operation, sql);
+        int total = 0;
+        while (true) {
+            int released;
+            try (Connection connection = getConnection();
+                    PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setInt(binder.bind(statement), batchSize);
+                released = executeUpdate(statement, timed, 0, null, null, 0);
+            }
+            if (released > 0) {
+                total += released;
+                progress.accept(total);
+            }
+            if (released < batchSize) {
+                return total;
+            }
+            if (throttleMs > 0) {
+                Thread.sleep(throttleMs);
+            }
+        }
+    }
+
+    private static void requirePositive(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1, got " + batchSize);
+        }
+    }
+
     public void updateLock(UUID uuid, String serverId) {
         long currentTime = System.currentTimeMillis();
         String sql = "UPDATE " + tableName + " SET lock_timestamp = ? WHERE uuid = ? AND locking_server = ?";
@@ -165,13 +433,198 @@ public class DatabaseManager {
             statement.setLong(1, currentTime);
             statement.setString(2, uuid.toString());
             statement.setString(3, serverId);
-            statement.executeUpdate();
+            executeUpdate(statement, statementStats.register("lock_heartbeat", sql), 0, uuid, serverId, 0);
         } catch (SQLException e) {
             System.err.println("[mc-data-bridge] Failed to update lock for " + uuid + ": " + e.getMessage());
         }
     }
 
+    /**
+     * The largest saved profiles, by the size recorded at save time. Served
+     * from the data_size index, so no blob is read.
+     */
+    public List<PayloadSize> findLargestPayloads(int limit) throws SQLException {
+        String sql = "SELECT uuid, data_size, locking_server FROM " + tableName
+                + " WHERE data_size IS NOT NULL ORDER BY data_size DESC LIMIT ?";
+        StatementStats.Statement timed = statementStats.register("largest_payloads", sql);
+        List<PayloadSize> sizes = new ArrayList<>();
+        try (Connection connection = getConnection();
+                PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, limit);
+            long start = System.nanoTime();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    sizes.add(new PayloadSize(UUID.fromString(resultSet.getString("uuid")),
+                            resultSet.getLong("data_size"), resultSet.getString("locking_server")));
+                }
+            } finally {
+                timed.record(start, sizes.size(), 0, null, null, 0);
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * @param lockingServer the server holding the player's lock, or null.
+     */
+    public record PayloadSize(UUID uuid, long bytes, String lockingServer) {
+    }
+
+    /**
+     * @param serverId the holder to count, or null for every server.
+     * @return the number of held locks, including expired ones not yet taken
+     *         over.
+     */
+    public int countLocks(String serverId) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM " + tableName + " WHERE " + holderCondition(serverId);
+        StatementStats.Statement timed = statementStats.register("count_locks", sql);
+        try (Connection connection = getConnection();
+                PreparedStatement statement = connection.prepareStatement(sql)) {
+            if (serverId != null) {
+                statement.setString(1, serverId);
+            }
+            long start = System.nanoTime();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+            } finally {
+                timed.record(start, 1, 0, null, serverId, 0);
+            }
+        }
+    }
+
+    /**
+     * One page of held locks, by holder and then oldest heartbeat first, read
+     * in index order.
+     *
+     * @param serverId the holder to list, or null for every server.
+     */
+    public List<HeldLock> findLocks(String serverId, int limit, int offset) throws SQLException {
+        String sql = "SELECT uuid, locking_server, lock_timestamp FROM " + tableName + " WHERE "
+                + holderCondition(serverId) + " ORDER BY locking_server, lock_timestamp LIMIT ? OFFSET ?";
+        StatementStats.Statement timed = statementStats.register("find_locks", sql);
+        List<HeldLock> locks = new ArrayList<>();
+        try (Connection connection = getConnection();
+                PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            if (serverId != null) {
+                statement.setString(index++, serverId);
+            }
+            statement.setInt(index++, limit);
+            statement.setInt(index, offset);
+            long start = System.nanoTime();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    locks.add(new HeldLock(UUID.fromString(resultSet.getString("uuid")),
+                            resultSet.getString("locking_server"), resultSet.getLong("lock_timestamp")));
+                }
+            } finally {
+                timed.record(start, locks.size(), 0, null, serverId, 0);
+            }
+        }
+        return locks;
+    }
+
+    // Both forms are a range of the (locking_server, lock_timestamp) index
+    private static String holderCondition(String serverId) {
+        return (serverId != null ? "locking_server = ?" : "locking_server IS NOT NULL") + " AND is_locked = 1";
+    }
+
+    /**
+     * @param lockTimestamp when the lock was taken or last refreshed by the
+     *                      holder's heartbeat.
+     */
+    public record HeldLock(UUID uuid, String lockingServer, long lockTimestamp) {
+    }
+
+    /**
+     * Records the name a player logged in with. A name taken over by another
+     * player after a rename now points at them.
+     */
+    public void recordPlayerName(UUID uuid, String name) throws SQLException {
+        String sql = "INSERT INTO " + namesTableName + " (name_lower, name, uuid, last_seen) VALUES (?, ?, ?, ?)"
+                + " ON DUPLICATE KEY UPDATE name = VALUES(name), uuid = VALUES(uuid), last_seen = VALUES(last_seen)";
+        StatementStats.Statement timed = statementStats.register("record_name", sql);
+        try (Connection connection = getConnection();
+                PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, name.toLowerCase(Locale.ROOT));
+            statement.setString(2, name);
+            statement.setString(3, uuid.toString());
+            statement.setLong(4, System.currentTimeMillis());
+            executeUpdate(statement, timed, 0, uuid, null, 0);
+        }
+    }
+
+    /**
+     * @return the UUID of the player who last logged in with this name,
+     *         ignoring case, or null if nobody has.
+     */
+    public UUID findUuidByName(String name) throws SQLException {
+        String sql = "SELECT uuid FROM " + namesTableName + " WHERE name_lower = ?";
+        String uuid = queryString(statementStats.register("find_uuid_by_name", sql), sql,
+                name.toLowerCase(Locale.ROOT));
+        return uuid != null ? UUID.fromString(uuid) : null;
+    }
+
+    /**
+     * @return the name the player last logged in with, or null if they never
+     *         have since the index was added.
+     */
+    public String findNameByUuid(UUID uuid) throws SQLException {
+        String sql = "SELECT name FROM " + namesTableName + " WHERE uuid = ? ORDER BY last_seen DESC LIMIT 1";
+        return queryString(statementStats.register("find_name_by_uuid", sql), sql, uuid.toString());
+    }
+
+    private String queryString(StatementStats.Statement timed, String sql, String parameter) throws SQLException {
+        try (Connection connection = getConnection();
+                PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, parameter);
+            long start = System.nanoTime();
+            int rows = 0;
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    rows = 1;
+                    return resultSet.getString(1);
+                }
+                return null;
+            } finally {
+                timed.record(start, rows, 0, null, null, 0);
+            }
+        }
+    }
+
+    /**
+     * Runs an update and records its latency and row count against the
+     * statement.
+     */
+    private int executeUpdate(PreparedStatement statement, StatementStats.Statement timed, long bytes, UUID uuid,
+            String serverId, int attempt) throws SQLException {
+        long start = System.nanoTime();
+        int rows = -1;
+        try {
+            rows = statement.executeUpdate();
+            return rows;
+        } finally {
+            timed.record(start, rows, bytes, uuid, serverId, attempt);
+        }
+    }
+
+    public long getLockTimeout() {
+        return lockTimeout;
+    }
+
+    public StatementStats getStatementStats() {
+        return statementStats;
+    }
+
     public String getTableName() {
         return tableName;
     }
+
+    /**
+     * @return the connection pool's statistics, or null before the pool has
+     *         started.
+     */
+    public HikariPoolMXBean getPoolMXBean() {
+        return dataSource != null ? dataSource.getHikariPoolMXBean() : null;
+    }
 }
@@ -0,0 +1,157 @@
+package com.digitalserverhost.plugins.managers;
+
+import com.digitalserverhost.plugins.protocol.BridgeCommand;
+import com.digitalserverhost.plugins.protocol.BridgeProtocol;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encodes and reassembles player snapshots handed from the source server to
+ * the destination through the proxy. Snapshots are gzipped and split into
+ * chunks that fit the 32 KiB limit for plugin messages sent to a backend.
+ * A snapshot is only used if its version matches the 'data_version' the
+ * destination sees once it holds the lock, i.e. once the durable save has
+ * committed.
+ */
+public class HandoffManager {
+
+    // Leaves headroom below the 32767 byte serverbound plugin message limit
+    static final int CHUNK_SIZE = 30000;
+    // Roughly 30 MB of compressed data; anything larger is not a real snapshot
+    private static final int MAX_CHUNKS = 1024;
+    // Handoffs that are not claimed within this window fall back to a DB read
+    private static final long TTL_MS = 30000;
+
+    private final Map<UUID, Assembly> assemblies = new ConcurrentHashMap<>();
+    private final Map<UUID, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    private record Snapshot(long version, String json, long receivedAt) {
+    }
+
+    private static class Assembly {
+        private final long version;
+        private final byte[][] chunks;
+        private final long startedAt = System.currentTimeMillis();
+        private int received;
+
+        private Assembly(long version, int total) {
+            this.version = version;
+            this.chunks = new byte[total][];
+        }
+    }
+
+    /**
+     * Builds the handoff plugin messages for a snapshot, one frame per chunk.
+     */
+    public static List<byte[]> encode(UUID uuid, long version, String json) throws IOException {
+        List<byte[]> messages = new ArrayList<>();
+        for (BridgeCommand chunk : split(uuid, version, json)) {
+            messages.add(BridgeProtocol.encode(chunk));
+        }
+        return messages;
+    }
+
+    /**
+     * Compresses a snapshot and splits it into handoff commands.
+     */
+    public static List<BridgeCommand> split(UUID uuid, long version, String json) throws IOException {
+        byte[] compressed = compress(json.getBytes(StandardCharsets.UTF_8));
+        int total = Math.max(1, (compressed.length + CHUNK_SIZE - 1) / CHUNK_SIZE);
+
+        List<BridgeCommand> chunks = new ArrayList<>(total);
+        for (int index = 0; index < total; index++) {
+            int offset = index * CHUNK_SIZE;
+            int length = Math.min(CHUNK_SIZE, compressed.length - offset);
+            byte[] chunk = Arrays.copyOfRange(compressed, offset, offset + length);
+            chunks.add(BridgeCommand.handoff(uuid, version, index, total, chunk));
+        }
+        return chunks;
+    }
+
+    /**
+     * Accepts one chunk.
+     */
+    public void accept(BridgeCommand command) throws IOException {
+        UUID uuid = command.getUuid();
+        long version = command.getVersion();
+        int index = command.getIndex();
+        int total = command.getTotal();
+        byte[] chunk = command.getData();
+
+        expire();
+        if (total <= 0 || total > MAX_CHUNKS || index < 0 || index >= total || chunk.length > CHUNK_SIZE) {
+            return;
+        }
+
+        // A newer snapshot replaces a partial older one
+        Assembly assembly = assemblies.compute(uuid, (key, existing) -> existing != null
+                && existing.version == version && existing.chunks.length == total ? existing
+                        : new Assembly(version, total));
+
+        byte[] complete = null;
+        synchronized (assembly) {
+            if (assembly.chunks[index] == null) {
+                assembly.chunks[index] = chunk;
+                assembly.received++;
+            }
+            if (assembly.received == total) {
+                ByteArrayOutputStream joined = new ByteArrayOutputStream();
+                for (byte[] part : assembly.chunks) {
+                    joined.writeBytes(part);
+                }
+                complete = joined.toByteArray();
+            }
+        }
+
+        if (complete != null && assemblies.remove(uuid, assembly)) {
+            String json = new String(decompress(complete), StandardCharsets.UTF_8);
+            snapshots.put(uuid, new Snapshot(version, json, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Claims a complete snapshot for the player.
+     *
+     * @return the snapshot JSON if one with exactly this version was received,
+     *         otherwise null.
+     */
+    public String take(UUID uuid, long version) {
+        Snapshot snapshot = snapshots.remove(uuid);
+        if (snapshot == null || snapshot.version() != version
+                || System.currentTimeMillis() - snapshot.receivedAt() > TTL_MS) {
+            return null;
+        }
+        return snapshot.json();
+    }
+
+    private void expire() {
+        long cutoff = System.currentTimeMillis() - TTL_MS;
+        assemblies.values().removeIf(assembly -> assembly.startedAt < cutoff);
+        snapshots.values().removeIf(snapshot -> snapshot.receivedAt() < cutoff);
+    }
+
+    private static byte[] compress(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] data) throws IOException {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return gzip.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.digitalserverhost.plugins.managers;
+
+import com.digitalserverhost.plugins.metrics.BridgeMetrics;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Periodically releases locks whose holder stopped refreshing them for
+ * longer than the lock timeout, so the table shows which locks are really
+ * held instead of leaving expired ones for the next acquireLock to take
+ * over. Sweeps one holder at a time along the lock holder index, in batches
+ * with a pause between them. Every server may run it: a lock is only ever
+ * released once, by whichever sweep reaches it first.
+ */
+public class LockReaper implements Runnable {
+
+    private final DatabaseManager databaseManager;
+    private final BridgeMetrics metrics;
+    private final Logger logger;
+    private final int batchSize;
+    private final long throttleMs;
+
+    public LockReaper(DatabaseManager databaseManager, BridgeMetrics metrics, Logger logger, int batchSize,
+            long throttleMs) {
+        this.databaseManager = databaseManager;
+        this.metrics = metrics;
+        this.logger = logger;
+        this.batchSize = Math.max(1, batchSize);
+        this.throttleMs = Math.max(0, throttleMs);
+    }
+
+    @Override
+    public void run() {
+        // Same expiry as acquireLock, so nothing is released that could not be taken over
+        long expiredBefore = System.currentTimeMillis() - databaseManager.getLockTimeout();
+        try {
+            List<String> holders = databaseManager.findLockHolders();
+            for (String holder : holders) {
+                int reaped = databaseManager.releaseExpiredLocks(holder, expiredBefore, batchSize, throttleMs);
+                if (reaped > 0) {
+                    metrics.recordReapedLocks(holder, reaped);
+                    logger.info("Released " + reaped + " expired locks held by " + holder + ".");
+                }
+            }
+        } catch (SQLException e) {
+            logger.warning("Could not release expired locks: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.digitalserverhost.plugins.managers;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/**
+ * Resolves player names for admin commands from the names recorded at login,
+ * through an in-memory LRU in front of the name index table. Never calls out
+ * to Mojang, so it answers for players who never joined this backend and
+ * never blocks on the network. Misses are not cached: the player may log in
+ * on another server at any moment. Hits expire after a minute, since a name
+ * can move to another account through a login elsewhere, and commands that
+ * change a player's state look the name up with {@link #resolveFresh}.
+ */
+public class PlayerNameIndex {
+
+    private static final long DEFAULT_TTL_MS = 60_000;
+
+    private final DatabaseManager databaseManager;
+    private final long ttlMs;
+    private final LongSupplier clock;
+    // Keyed by lower-case name
+    private final Map<String, Cached<UUID>> uuidsByName;
+    private final Map<UUID, Cached<String>> namesByUuid;
+
+    private record Cached<V>(V value, long cachedAt) {
+    }
+
+    public PlayerNameIndex(DatabaseManager databaseManager, int capacity) {
+        this(databaseManager, capacity, DEFAULT_TTL_MS, System::currentTimeMillis);
+    }
+
+    PlayerNameIndex(DatabaseManager databaseManager, int capacity, long ttlMs, LongSupplier clock) {
+        this.databaseManager = databaseManager;
+        this.ttlMs = ttlMs;
+        this.clock = clock;
+        this.uuidsByName = lru(capacity);
+        this.namesByUuid = lru(capacity);
+    }
+
+    /**
+     * Records a login. Called from pre-login, off the main thread.
+     */
+    public void record(UUID uuid, String name) throws SQLException {
+        databaseManager.recordPlayerName(uuid, name);
+        remember(uuid, name);
+    }
+
+    /**
+     * @param nameOrUuid a player name, in any case, or a UUID.
+     * @return the player's UUID, or null if no player with that name has
+     *         logged in. Must not be called on the main thread.
+     */
+    public UUID resolve(String nameOrUuid) throws SQLException {
+        UUID uuid = parseUuid(nameOrUuid);
+        if (uuid != null) {
+            return uuid;
+        }
+        UUID cached = fresh(uuidsByName.get(nameOrUuid.toLowerCase(Locale.ROOT)));
+        return cached != null ? cached : lookUp(nameOrUuid);
+    }
+
+    /**
+     * Like {@link #resolve}, but always asks the table, for commands that
+     * release or unlock: a name cached here may belong to another account by
+     * now.
+     */
+    public UUID resolveFresh(String nameOrUuid) throws SQLException {
+        UUID uuid = parseUuid(nameOrUuid);
+        return uuid != null ? uuid : lookUp(nameOrUuid);
+    }
+
+    /**
+     * @return the name the player last logged in with, or null if unknown.
+     *         Must not be called on the main thread.
+     */
+    public String nameOf(UUID uuid) throws SQLException {
+        String name = fresh(namesByUuid.get(uuid));
+        if (name == null) {
+            name = databaseManager.findNameByUuid(uuid);
+            if (name != null) {
+                remember(uuid, name);
+            }
+        }
+        return name;
+    }
+
+    private UUID lookUp(String name) throws SQLException {
+        String key = name.toLowerCase(Locale.ROOT);
+        UUID uuid = databaseManager.findUuidByName(name);
+        if (uuid != null) {
+            claim(key, uuid);
+        } else {
+            uuidsByName.remove(key);
+        }
+        return uuid;
+    }
+
+    private void remember(UUID uuid, String name) {
+        Cached<String> previous = namesByUuid.put(uuid, new Cached<>(name, clock.getAsLong()));
+        if (previous != null && !previous.value().equalsIgnoreCase(name)) {
+            // Renamed: the old name may be taken by someone else now
+            uuidsByName.remove(previous.value().toLowerCase(Locale.ROOT));
+        }
+        claim(name.toLowerCase(Locale.ROOT), uuid);
+    }
+
+    /**
+     * Points a name at its current owner, forgetting that the previous owner
+     * went by it.
+     */
+    private void claim(String key, UUID uuid) {
+        Cached<UUID> previous = uuidsByName.put(key, new Cached<>(uuid, clock.getAsLong()));
+        if (previous != null && !previous.value().equals(uuid)) {
+            Cached<String> previousName = namesByUuid.get(previous.value());
+            if (previousName != null && previousName.value().equalsIgnoreCase(key)) {
+                namesByUuid.remove(previous.value(), previousName);
+            }
+        }
+    }
+
+    private <V> V fresh(Cached<V> cached) {
+        return cached != null && clock.getAsLong() - cached.cachedAt() < ttlMs ? cached.value() : null;
+    }
+
+    private static UUID parseUuid(String nameOrUuid) {
+        try {
+            return UUID.fromString(nameOrUuid);
+        } catch (IllegalArgumentException e) {
+            return null; // Not a UUID, so a name
+        }
+    }
+
+    private static <K, V> Map<K, V> lru(int capacity) {
+        int maxEntries = Math.max(1, capacity);
+        return Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+}
@@ -0,0 +1,256 @@
+package com.digitalserverhost.plugins.managers;
+
+import com.digitalserverhost.plugins.managers.migrations.Migration;
+import com.digitalserverhost.plugins.managers.migrations.MigrationContext;
+import com.digitalserverhost.plugins.managers.migrations.V1BaseSchema;
+import com.digitalserverhost.plugins.managers.migrations.V2DataColumnBlob;
+import com.digitalserverhost.plugins.managers.migrations.V3DataVersion;
+import com.digitalserverhost.plugins.managers.migrations.V4DataSize;
+import com.digitalserverhost.plugins.managers.migrations.V5DataSizeIndex;
+import com.digitalserverhost.plugins.managers.migrations.V6TraceId;
+import com.digitalserverhost.plugins.managers.migrations.V7NameIndex;
+import com.digitalserverhost.plugins.managers.migrations.V8LockHolderIndex;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Applies the ordered list of schema migrations, tracked in a
+ * '&lt;table&gt;_schema' version table. When the schema is current, startup is a
+ * single SELECT against that table.
+ */
+public class SchemaManager {
+
+    // Seconds to wait for another server that is running the same migrations
+    private static final int SCHEMA_LOCK_TIMEOUT_SECONDS = 300;
+
+    private final DatabaseManager databaseManager;
+    private final String tableName;
+    private final String versionTableName;
+    private final FileConfiguration config;
+    private final Logger logger;
+    private final List<Migration> migrations;
+    private final CountDownLatch readyLatch = new CountDownLatch(1);
+    private volatile boolean ready;
+
+    public SchemaManager(DatabaseManager databaseManager, String tableName, FileConfiguration config, Logger logger) {
+        this(databaseManager, tableName, config, logger, defaultMigrations());
+    }
+
+    /**
+     * Constructor for testing purposes.
+     * Allows injection of a custom migration list.
+     */
+    public SchemaManager(DatabaseManager databaseManager, String tableName, FileConfiguration config, Logger logger,
+            List<Migration> migrations) {
+        this.databaseManager = databaseManager;
+        this.tableName = tableName.replace("`", "");
+        this.versionTableName = "`" + this.tableName + "_schema`";
+        this.config = config;
+        this.logger = logger;
+        this.migrations = new ArrayList<>(migrations);
+        this.migrations.sort(Comparator.comparingInt(Migration::getVersion));
+    }
+
+    public static List<Migration> defaultMigrations() {
+        List<Migration> list = new ArrayList<>();
+        list.add(new V1BaseSchema());
+        list.add(new V2DataColumnBlob());
+        list.add(new V3DataVersion());
+        list.add(new V4DataSize());
+        list.add(new V5DataSizeIndex());
+        list.add(new V6TraceId());
+        list.add(new V7NameIndex());
+        list.add(new V8LockHolderIndex());
+        return list;
+    }
+
+    /**
+     * Applies all pending blocking migrations and marks the schema ready.
+     * Must be called from an async thread.
+     *
+     * @return false if the schema could not be brought up to date.
+     */
+    public boolean migrate() {
+        return migrate(() -> {
+        });
+    }
+
+    /**
+     * Like {@link #migrate()}, running another startup step once the schema
+     * is up to date but before players waiting for it are let in.
+     */
+    public boolean migrate(Runnable beforeReady) {
+        try {
+            Set<Integer> applied = readAppliedVersions();
+            if (applied == null || hasPending(applied, false)) {
+                runPending(false, SCHEMA_LOCK_TIMEOUT_SECONDS);
+            }
+            beforeReady.run();
+            markReady();
+            return true;
+        } catch (Exception e) {
+            logger.severe("CRITICAL: Error creating or updating " + tableName + " table: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Applies pending background migrations. Only one server runs them at a
+     * time; others skip them and try again on their next boot.
+     */
+    public void runBackgroundMigrations() {
+        try {
+            Set<Integer> applied = readAppliedVersions();
+            if (applied != null && !hasPending(applied, true)) {
+                return;
+            }
+            runPending(true, 0);
+        } catch (Exception e) {
+            logger.severe("Background schema migration failed: " + e.getMessage());
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Blocks until the schema is ready or the timeout passes.
+     */
+    public boolean awaitReady(long timeoutMs) {
+        if (ready) {
+            return true;
+        }
+        try {
+            return readyLatch.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void markReady() {
+        ready = true;
+        readyLatch.countDown();
+    }
+
+    private boolean hasPending(Set<Integer> applied, boolean background) {
+        for (Migration migration : migrations) {
+            if (migration.isBackground() == background && !applied.contains(migration.getVersion())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the applied versions, or null if the version table does not exist
+     *         yet.
+     */
+    private Set<Integer> readAppliedVersions() {
+        try (Connection connection = databaseManager.getConnection()) {
+            return readAppliedVersions(connection);
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    private Set<Integer> readAppliedVersions(Connection connection) throws SQLException {
+        Set<Integer> applied = new HashSet<>();
+        try (Statement statement = connection.createStatement();
+                ResultSet rs = statement.executeQuery("SELECT version FROM " + versionTableName)) {
+            while (rs.next()) {
+                applied.add(rs.getInt("version"));
+            }
+        }
+        return applied;
+    }
+
+    private void runPending(boolean background, int lockTimeoutSeconds) throws SQLException {
+        String lockName = "mcdb_schema_" + tableName + (background ? "_bg" : "");
+
+        // A dedicated connection: MySQL named locks belong to the session
+        try (Connection connection = databaseManager.getConnection()) {
+            if (!acquireNamedLock(connection, lockName, lockTimeoutSeconds)) {
+                if (background) {
+                    logger.info("Another server is running background schema migrations. Skipping.");
+                    return;
+                }
+                throw new SQLException("Timed out waiting for another server to finish schema migrations.");
+            }
+
+            try {
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + versionTableName + " (" +
+                            "version INT NOT NULL, " +
+                            "description VARCHAR(255), " +
+                            "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                            "PRIMARY KEY (version)) ENGINE=InnoDB;");
+                }
+
+                // Re-read under the lock; another server may have just finished
+                Set<Integer> applied = readAppliedVersions(connection);
+                MigrationContext context = new MigrationContext(connection, databaseManager, tableName, config,
+                        logger);
+
+                for (Migration migration : migrations) {
+                    if (migration.isBackground() != background || applied.contains(migration.getVersion())) {
+                        continue;
+                    }
+                    logger.info("Applying schema migration " + migration.getVersion() + ": "
+                            + migration.getDescription());
+                    if (migration.migrate(context)) {
+                        recordVersion(connection, migration);
+                    } else {
+                        logger.info("Schema migration " + migration.getVersion() + " deferred.");
+                    }
+                }
+            } finally {
+                releaseNamedLock(connection, lockName);
+            }
+        }
+        logger.info("Successfully verified or created the '" + tableName + "' table.");
+    }
+
+    private void recordVersion(Connection connection, Migration migration) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT IGNORE INTO " + versionTableName + " (version, description) VALUES (?, ?)")) {
+            statement.setInt(1, migration.getVersion());
+            statement.setString(2, migration.getDescription());
+            statement.executeUpdate();
+        }
+    }
+
+    private boolean acquireNamedLock(Connection connection, String lockName, int timeoutSeconds)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            statement.setString(1, lockName);
+            statement.setInt(2, timeoutSeconds);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private void releaseNamedLock(Connection connection, String lockName) {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            statement.setString(1, lockName);
+            statement.executeQuery().close();
+        } catch (SQLException e) {
+            logger.warning("Failed to release schema lock " + lockName + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.digitalserverhost.plugins.managers;
+
+import java.sql.SQLException;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Releases the locks of a server the proxy reports as down, on its behalf.
+ * <p>
+ * Failed pings only show the proxy cannot reach the server, so a lock is
+ * released once it was last refreshed before the server stopped answering
+ * and has also missed two heartbeats: a server that is hung but alive, or
+ * only cut off from the proxy, keeps every lock it still refreshes. The
+ * proxy reports a crash well within two heartbeats, so the release runs once
+ * right away and once more when the last lock refreshed before the crash has
+ * missed its heartbeats.
+ */
+public class ServerLockRelease {
+
+    /**
+     * Runs a task on another thread after a delay.
+     */
+    @FunctionalInterface
+    public interface Scheduler {
+        void schedule(Runnable task, long delayMs);
+    }
+
+    private final DatabaseManager databaseManager;
+    private final Logger logger;
+    private final long missedHeartbeatsMs;
+    private final int batchSize;
+    private final long throttleMs;
+    private final Scheduler scheduler;
+    private final LongSupplier clock;
+
+    public ServerLockRelease(DatabaseManager databaseManager, Logger logger, int heartbeatSeconds, int batchSize,
+            long throttleMs, Scheduler scheduler) {
+        this(databaseManager, logger, heartbeatSeconds, batchSize, throttleMs, scheduler, System::currentTimeMillis);
+    }
+
+    ServerLockRelease(DatabaseManager databaseManager, Logger logger, int heartbeatSeconds, int batchSize,
+            long throttleMs, Scheduler scheduler, LongSupplier clock) {
+        this.databaseManager = databaseManager;
+        this.logger = logger;
+        this.missedHeartbeatsMs = 2 * heartbeatSeconds * 1000L;
+        this.batchSize = Math.max(1, batchSize);
+        this.throttleMs = Math.max(0, throttleMs);
+        this.scheduler = scheduler;
+        this.clock = clock;
+    }
+
+    /**
+     * Releases what can be released now and schedules the rest. Blocks on
+     * the database, so call it off the main thread.
+     *
+     * @param downForMs how long ago the server stopped answering the proxy.
+     */
+    public void release(String serverId, long downForMs) {
+        long now = clock.getAsLong();
+        long downSince = now - Math.max(0, downForMs);
+        long fence = Math.min(downSince, now - missedHeartbeatsMs);
+        releaseRefreshedBefore(serverId, fence);
+
+        long remainingMs = downSince + missedHeartbeatsMs - now;
+        if (remainingMs > 0) {
+            // By then every lock refreshed before the server went down has missed its heartbeats
+            scheduler.schedule(() -> releaseRefreshedBefore(serverId, downSince), remainingMs);
+        }
+    }
+
+    private void releaseRefreshedBefore(String serverId, long notRefreshedSince) {
+        try {
+            int released = databaseManager.releaseServerLocks(serverId, notRefreshedSince, batchSize, throttleMs);
+            if (released > 0) {
+                logger.warning("Released " + released + " locks held by unreachable server '" + serverId
+                        + "' at the proxy's request.");
+            }
+        } catch (SQLException e) {
+            logger.severe("Failed to release locks of server '" + serverId + "': " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.digitalserverhost.plugins.managers.migrations;
+
+import java.sql.SQLException;
+
+/**
+ * A single, ordered step of the player data schema.
+ * Every migration must be idempotent: it may be re-run if a server crashed
+ * before its version was recorded.
+ */
+public interface Migration {
+
+    int getVersion();
+
+    String getDescription();
+
+    /**
+     * Background migrations run after the schema has been marked ready, so
+     * players can log in while they work. They must be safe to run against a
+     * live table.
+     */
+    default boolean isBackground() {
+        return false;
+    }
+
+    /**
+     * @return true if the migration was applied and its version should be
+     *         recorded, false if it was deferred (e.g. disabled in config) and
+     *         should be checked again on the next boot.
+     */
+    boolean migrate(MigrationContext context) throws SQLException;
+}
@@ -0,0 +1,56 @@
+package com.digitalserverhost.plugins.managers.migrations;
+
+import com.digitalserverhost.plugins.managers.DatabaseManager;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.sql.Connection;
+import java.util.logging.Logger;
+
+public class MigrationContext {
+
+    private final Connection connection;
+    private final DatabaseManager databaseManager;
+    private final String tableName;
+    private final FileConfiguration config;
+    private final Logger logger;
+
+    public MigrationContext(Connection connection, DatabaseManager databaseManager, String tableName,
+            FileConfiguration config, Logger logger) {
+        this.connection = connection;
+        this.databaseManager = databaseManager;
+        this.tableName = tableName;
+        this.config = config;
+        this.logger = logger;
+    }
+
+    /**
+     * The dedicated connection holding the schema lock. Migrations run their
+     * statements on it; it stays in autocommit mode.
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public DatabaseManager getDatabaseManager() {
+        return databaseManager;
+    }
+
+    /**
+     * The raw (unescaped) player data table name.
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getEscapedTableName() {
+        return "`" + tableName.replace("`", "") + "`";
+    }
+
+    public FileConfiguration getConfig() {
+        return config;
+    }
+
+    public Logger getLogger() {
+        return logger;
+    }
+}
@@ -0,0 +1,217 @@
+package com.digitalserverhost.plugins.managers.migrations;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Logger;
+
+/**
+ * Rewrites a column of the player data table without a long ALTER TABLE.
+ *
+ * <ol>
+ * <li>Adds a shadow column ('&lt;column&gt;_new') with the target definition.</li>
+ * <li>Installs BEFORE INSERT/UPDATE triggers so every write, from any server,
+ * also fills the shadow column. Servers need no knowledge of the migration and
+ * keep reading the old column, which stays complete until the switch.</li>
+ * <li>Copies existing rows in primary-key order, in throttled chunks.</li>
+ * <li>Under a short table write lock, drops the triggers and renames the
+ * columns so the shadow becomes the live column. The old column is kept as
+ * '&lt;column&gt;_old' for the admin to drop.</li>
+ * </ol>
+ *
+ * The copy is expressed as SQL ('%s' is replaced by the old column), so the
+ * same engine can re-encode data, e.g. {@code COMPRESS(%s)}, as long as the
+ * readers understand the new format. Re-running after a crash resumes the copy.
+ */
+public class OnlineColumnMigrator {
+
+    private final MigrationContext context;
+    private final String column;
+    private final String shadowColumn;
+    private final String retiredColumn;
+    private final String definition;
+    private final String copyExpression;
+
+    /**
+     * Progress of {@link #forEachChunk}, after each chunk but the last.
+     */
+    @FunctionalInterface
+    interface ChunkProgress {
+        void onChunk(int chunks, long rows, String upperBound);
+    }
+
+    public OnlineColumnMigrator(MigrationContext context, String column, String definition, String copyExpression) {
+        this.context = context;
+        this.column = column;
+        this.shadowColumn = column + "_new";
+        this.retiredColumn = column + "_old";
+        this.definition = definition;
+        this.copyExpression = copyExpression;
+    }
+
+    /**
+     * Whether the database supports the metadata-only RENAME COLUMN this engine
+     * relies on (MySQL 8.0+, MariaDB 10.5+).
+     */
+    public static boolean isSupported(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        String version = metaData.getDatabaseProductVersion();
+        int major = metaData.getDatabaseMajorVersion();
+        int minor = metaData.getDatabaseMinorVersion();
+        if (version != null && version.contains("MariaDB")) {
+            return major > 10 || (major == 10 && minor >= 5);
+        }
+        return major >= 8;
+    }
+
+    /**
+     * @return true once the shadow column has been switched in, false if the
+     *         migration could not start (it will be retried on the next boot).
+     */
+    public boolean run() throws SQLException {
+        Connection connection = context.getConnection();
+        Logger logger = context.getLogger();
+        String table = context.getEscapedTableName();
+
+        if (columnExists(connection, retiredColumn)) {
+            logger.warning("Cannot migrate '" + column + "' online: column '" + retiredColumn
+                    + "' from a previous migration still exists. Drop it first.");
+            return false;
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            if (!columnExists(connection, shadowColumn)) {
+                statement.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + shadowColumn + " " + definition);
+            }
+
+            try {
+                createTriggers(statement, table);
+            } catch (SQLException e) {
+                logger.warning("Could not create migration triggers (does the database user have the TRIGGER"
+                        + " privilege?): " + e.getMessage());
+                logger.warning("Online migration of '" + column + "' postponed.");
+                return false;
+            }
+
+            long rows = copyInChunks(table);
+            logger.info("Copied " + rows + " rows into '" + shadowColumn + "'. Switching columns...");
+
+            statement.execute("LOCK TABLES " + table + " WRITE");
+            try {
+                dropTriggers(statement);
+                statement.executeUpdate("ALTER TABLE " + table + " RENAME COLUMN " + column + " TO " + retiredColumn
+                        + ", RENAME COLUMN " + shadowColumn + " TO " + column);
+            } finally {
+                statement.execute("UNLOCK TABLES");
+            }
+        }
+
+        logger.info("Online migration of '" + column + "' complete. The previous data is kept in '" + retiredColumn
+                + "'; run 'ALTER TABLE " + table + " DROP COLUMN " + retiredColumn + "' to reclaim space.");
+        return true;
+    }
+
+    private void createTriggers(Statement statement, String table) throws SQLException {
+        dropTriggers(statement);
+        String assignment = "SET NEW." + shadowColumn + " = " + String.format(copyExpression, "NEW." + column);
+        statement.executeUpdate("CREATE TRIGGER " + triggerName("ins") + " BEFORE INSERT ON " + table
+                + " FOR EACH ROW " + assignment);
+        statement.executeUpdate("CREATE TRIGGER " + triggerName("upd") + " BEFORE UPDATE ON " + table
+                + " FOR EACH ROW " + assignment);
+    }
+
+    private void dropTriggers(Statement statement) throws SQLException {
+        statement.executeUpdate("DROP TRIGGER IF EXISTS " + triggerName("ins"));
+        statement.executeUpdate("DROP TRIGGER IF EXISTS " + triggerName("upd"));
+    }
+
+    private String triggerName(String suffix) {
+        String name = "mcdb_" + context.getTableName() + "_" + shadowColumn + "_" + suffix;
+        return "`" + (name.length() > 64 ? name.substring(name.length() - 64) : name).replace("`", "") + "`";
+    }
+
+    private long copyInChunks(String table) throws SQLException {
+        // Assigning last_updated to itself keeps the copy from bumping it
+        String copySet = "UPDATE " + table + " SET " + shadowColumn + " = " + String.format(copyExpression, column)
+                + ", last_updated = last_updated WHERE " + shadowColumn + " IS NULL AND " + column
+                + " IS NOT NULL AND uuid > ?";
+        return forEachChunk(context, copySet, (chunks, copied, upperBound) -> {
+            if (chunks % 50 == 0) {
+                context.getLogger().info("Online migration of '" + column + "': " + copied
+                        + " rows copied so far (up to uuid " + upperBound + ").");
+            }
+        });
+    }
+
+    /**
+     * Runs an UPDATE over the player data table in primary-key order, a chunk
+     * of 'online-migration.chunk-size' rows per statement with a pause of
+     * 'online-migration.throttle-ms' between chunks, so no statement locks
+     * much of the table. The update must end with {@code uuid > ?}; each
+     * chunk adds its upper bound, and the last chunk runs without one so rows
+     * inserted meanwhile are covered too.
+     *
+     * @return the number of rows updated.
+     */
+    static long forEachChunk(MigrationContext context, String update, ChunkProgress progress) throws SQLException {
+        Connection connection = context.getConnection();
+        int chunkSize = Math.max(1, context.getConfig().getInt("online-migration.chunk-size", 1000));
+        long throttleMs = Math.max(0, context.getConfig().getLong("online-migration.throttle-ms", 50));
+        String boundarySql = "SELECT uuid FROM " + context.getEscapedTableName()
+                + " WHERE uuid > ? ORDER BY uuid LIMIT 1 OFFSET ?";
+
+        long updated = 0;
+        int chunks = 0;
+        String lowerBound = "";
+
+        try (PreparedStatement boundary = connection.prepareStatement(boundarySql);
+                PreparedStatement chunk = connection.prepareStatement(update + " AND uuid <= ?");
+                PreparedStatement tail = connection.prepareStatement(update)) {
+            while (true) {
+                String upperBound = null;
+                boundary.setString(1, lowerBound);
+                boundary.setInt(2, chunkSize - 1);
+                try (ResultSet rs = boundary.executeQuery()) {
+                    if (rs.next()) {
+                        upperBound = rs.getString(1);
+                    }
+                }
+
+                if (upperBound == null) {
+                    tail.setString(1, lowerBound);
+                    updated += tail.executeUpdate();
+                    return updated;
+                }
+
+                chunk.setString(1, lowerBound);
+                chunk.setString(2, upperBound);
+                updated += chunk.executeUpdate();
+                lowerBound = upperBound;
+
+                progress.onChunk(++chunks, updated, upperBound);
+                throttle(throttleMs);
+            }
+        }
+    }
+
+    private static void throttle(long throttleMs) throws SQLException {
+        if (throttleMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(throttleMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Online migration interrupted", e);
+        }
+    }
+
+    private boolean columnExists(Connection connection, String name) throws SQLException {
+        try (ResultSet columns = connection.getMetaData().getColumns(null, null, context.getTableName(), name)) {
+            return columns.next();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.digitalserverhost.plugins.managers.migrations;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Creates the player data table, migrating the legacy unprefixed table and
+ * adding columns that older releases did not have.
+ */
+public class V1BaseSchema implements Migration {
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Create player data table";
+    }
+
+    @Override
+    public boolean migrate(MigrationContext context) throws SQLException {
+        String tableName = context.getTableName();
+        String escapedTableName = context.getEscapedTableName();
+        Connection connection = context.getConnection();
+
+        try (Statement statement = connection.createStatement()) {
+            // Check for migration from default 'player_data' to prefixed table
+            if (!tableName.equals("player_data")) {
+                boolean oldExists;
+                boolean newExists;
+                try (ResultSet oldTable = connection.getMetaData().getTables(null, null, "player_data", null)) {
+                    oldExists = oldTable.next();
+                }
+                try (ResultSet newTable = connection.getMetaData().getTables(null, null, tableName, null)) {
+                    newExists = newTable.next();
+                }
+
+                if (oldExists && !newExists) {
+                    context.getLogger().warning("Detected old 'player_data' table and new prefix setting.");
+                    context.getLogger().warning("Migrating 'player_data' to '" + tableName + "'...");
+                    statement.executeUpdate("RENAME TABLE `player_data` TO " + escapedTableName);
+                    context.getLogger().info("Migration successful!");
+                }
+            }
+
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + escapedTableName + " (" +
+                    "uuid VARCHAR(36) NOT NULL, " +
+                    "data LONGBLOB NULL, " +
+                    "is_locked BOOLEAN DEFAULT 0, " +
+                    "locking_server VARCHAR(255) DEFAULT NULL, " +
+                    "lock_timestamp BIGINT DEFAULT 0, " +
+                    "last_updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, " +
+                    "PRIMARY KEY (uuid)) ENGINE=InnoDB;");
+
+            // Tables created by releases before the locking system lack these columns
+            addColumnIfMissing(connection, statement, tableName, "is_locked", "BOOLEAN DEFAULT 0");
+            addColumnIfMissing(connection, statement, tableName, "locking_server", "VARCHAR(255) DEFAULT NULL");
+            addColumnIfMissing(connection, statement, tableName, "lock_timestamp", "BIGINT DEFAULT 0");
+            addColumnIfMissing(connection, statement, tableName, "last_updated",
+                    "TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP");
+        }
+        return true;
+    }
+
+    private void addColumnIfMissing(Connection connection, Statement statement, String tableName, String column,
+            String definition) throws SQLException {
+        try (ResultSet columns = connection.getMetaData().getColumns(null, null, tableName, column)) {
+            if (columns.next()) {
+                return;
+            }
+        }
+        statement.executeUpdate("ALTER TABLE `" + tableName.replace("`", "") + "` ADD COLUMN " + column + " "
+                + definition);
+    }
+}
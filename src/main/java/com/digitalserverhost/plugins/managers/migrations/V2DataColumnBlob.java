@@ -0,0 +1,82 @@
+package com.digitalserverhost.plugins.managers.migrations;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Logger;
+
+/**
+ * Converts a legacy LONGTEXT/TEXT 'data' column to a nullable LONGBLOB.
+ * Runs in the background because the conversion can take a long time on
+ * large tables; both column types are read and written the same way, so
+ * players are unaffected while it runs. With 'schema-migration-mode: online'
+ * the rows are copied in chunks by {@link OnlineColumnMigrator} instead of a
+ * table-copying ALTER TABLE.
+ */
+public class V2DataColumnBlob implements Migration {
+
+    @Override
+    public int getVersion() {
+        return 2;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Convert data column to nullable LONGBLOB";
+    }
+
+    @Override
+    public boolean isBackground() {
+        return true;
+    }
+
+    @Override
+    public boolean migrate(MigrationContext context) throws SQLException {
+        Connection connection = context.getConnection();
+        Logger logger = context.getLogger();
+        String escapedTableName = context.getEscapedTableName();
+
+        String typeName;
+        boolean nullable;
+        try (ResultSet columns = connection.getMetaData().getColumns(null, null, context.getTableName(), "data")) {
+            if (!columns.next()) {
+                return true;
+            }
+            typeName = columns.getString("TYPE_NAME");
+            nullable = !"NO".equalsIgnoreCase(columns.getString("IS_NULLABLE"));
+        }
+
+        boolean textColumn = "LONGTEXT".equalsIgnoreCase(typeName) || "TEXT".equalsIgnoreCase(typeName);
+        if (!textColumn && nullable) {
+            return true;
+        }
+
+        if (textColumn && !context.getConfig().getBoolean("auto-update-schema", false)) {
+            logger.warning("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+            logger.warning("!!! YOUR DATABASE IS USING '" + typeName + "' FOR 'data' COLUMN. !!!");
+            logger.warning("!!! IT IS RECOMMENDED TO SWITCH TO 'LONGBLOB' !!!");
+            logger.warning("!!! ENABLE 'auto-update-schema: true' IN CONFIG TO FIX AUTOMATICALLY !!!");
+            logger.warning("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+            if (nullable) {
+                return false; // Deferred until the admin opts in
+            }
+        }
+
+        boolean online = "online".equalsIgnoreCase(context.getConfig().getString("schema-migration-mode", "online"));
+        if (online && OnlineColumnMigrator.isSupported(connection)) {
+            logger.info("Migrating 'data' column from " + typeName + " to nullable LONGBLOB online...");
+            return new OnlineColumnMigrator(context, "data", "LONGBLOB NULL", "%s").run();
+        }
+        if (online) {
+            logger.warning("Online migration needs MySQL 8.0+ or MariaDB 10.5+. Falling back to ALTER TABLE.");
+        }
+
+        logger.info("Migrating 'data' column from " + typeName + " to nullable LONGBLOB...");
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("ALTER TABLE " + escapedTableName + " MODIFY COLUMN data LONGBLOB NULL");
+        }
+        logger.info("Migration complete! 'data' is now LONGBLOB.");
+        return true;
+    }
+}
@@ -0,0 +1,38 @@
+package com.digitalserverhost.plugins.managers.migrations;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Adds 'data_version', bumped on every save. A destination server compares it
+ * with the version of a snapshot handed off through the proxy to prove the
+ * snapshot matches what was committed.
+ */
+public class V3DataVersion implements Migration {
+
+    @Override
+    public int getVersion() {
+        return 3;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Add data_version column";
+    }
+
+    @Override
+    public boolean migrate(MigrationContext context) throws SQLException {
+        try (ResultSet columns = context.getConnection().getMetaData().getColumns(null, null,
+                context.getTableName(), "data_version")) {
+            if (columns.next()) {
+                return true;
+            }
+        }
+        try (Statement statement = context.getConnection().createStatement()) {
+            statement.executeUpdate("ALTER TABLE " + context.getEscapedTableName()
+                    + " ADD COLUMN data_version BIGINT NOT NULL DEFAULT 0");
+        }
+        return true;
+    }
+}
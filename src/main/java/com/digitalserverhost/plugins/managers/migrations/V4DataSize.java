@@ -0,0 +1,39 @@
+package com.digitalserverhost.plugins.managers.migrations;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Adds 'data_size', the length of 'data' in bytes, written with every save.
+ * Adding a nullable column is a metadata-only change on current MySQL and
+ * MariaDB, so this runs before players are let in; existing rows are filled
+ * in and indexed by {@link V5DataSizeIndex}.
+ */
+public class V4DataSize implements Migration {
+
+    @Override
+    public int getVersion() {
+        return 4;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Add data_size column";
+    }
+
+    @Override
+    public boolean migrate(MigrationContext context) throws SQLException {
+        try (ResultSet columns = context.getConnection().getMetaData().getColumns(null, null,
+                context.getTableName(), "data_size")) {
+            if (columns.next()) {
+                return true;
+            }
+        }
+        try (Statement statement = context.getConnection().createStatement()) {
+            statement.executeUpdate("ALTER TABLE " + context.getEscapedTableName()
+                    + " ADD COLUMN data_size INT UNSIGNED NULL");
+        }
+        return true;
+    }
+}
@@ -0,0 +1,60 @@
+package com.digitalserverhost.plugins.managers.migrations;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Fills 'data_size' for rows saved before {@link V4DataSize}, in the same
+ * throttled primary-key chunks as {@link OnlineColumnMigrator}, then indexes it so the largest
+ * profiles can be listed without reading every blob.
+ */
+public class V5DataSizeIndex implements Migration {
+
+    private static final String INDEX_NAME = "idx_data_size";
+
+    @Override
+    public int getVersion() {
+        return 5;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Backfill and index data_size";
+    }
+
+    @Override
+    public boolean isBackground() {
+        return true;
+    }
+
+    @Override
+    public boolean migrate(MigrationContext context) throws SQLException {
+        String table = context.getEscapedTableName();
+        // Assigning last_updated to itself keeps the backfill from bumping it
+        String fill = "UPDATE " + table + " SET data_size = LENGTH(data), last_updated = last_updated"
+                + " WHERE data_size IS NULL AND data IS NOT NULL AND uuid > ?";
+        long filled = OnlineColumnMigrator.forEachChunk(context, fill, (chunks, rows, upperBound) -> {
+        });
+        context.getLogger().info("Filled data_size for " + filled + " rows.");
+
+        if (!indexExists(context)) {
+            try (Statement statement = context.getConnection().createStatement()) {
+                statement.executeUpdate("ALTER TABLE " + table + " ADD INDEX " + INDEX_NAME + " (data_size)");
+            }
+        }
+        return true;
+    }
+
+    private boolean indexExists(MigrationContext context) throws SQLException {
+        try (ResultSet indexes = context.getConnection().getMetaData().getIndexInfo(null, null,
+                context.getTableName(), false, false)) {
+            while (indexes.next()) {
+                if (INDEX_NAME.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,38 @@
+package com.digitalserverhost.plugins.managers.migrations;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Adds 'trace_id', the proxy's trace of the switch that wrote the row, so the
+ * destination can attribute what it loads to that switch even when the
+ * proxy's prefetch hint did not reach it. NULL for saves outside a switch.
+ */
+public class V6TraceId implements Migration {
+
+    @Override
+    public int getVersion() {
+        return 6;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Add trace_id column";
+    }
+
+    @Override
+    public boolean migrate(MigrationContext context) throws SQLException {
+        try (ResultSet columns = context.getConnection().getMetaData().getColumns(null, null,
+                context.getTableName(), "trace_id")) {
+            if (columns.next()) {
+                return true;
+            }
+        }
+        try (Statement statement = context.getConnection().createStatement()) {
+            statement.executeUpdate("ALTER TABLE " + context.getEscapedTableName()
+                    + " ADD COLUMN trace_id BIGINT NULL");
+        }
+        return true;
+    }
+}
@@ -0,0 +1,36 @@
+package com.digitalserverhost.plugins.managers.migrations;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Creates '&lt;table&gt;_names', the name each player last logged in with, so
+ * admin commands can resolve names without asking Mojang or guessing an
+ * offline-mode UUID.
+ */
+public class V7NameIndex implements Migration {
+
+    @Override
+    public int getVersion() {
+        return 7;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Create player name index table";
+    }
+
+    @Override
+    public boolean migrate(MigrationContext context) throws SQLException {
+        try (Statement statement = context.getConnection().createStatement()) {
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS `" + context.getTableName() + "_names` (" +
+                    "name_lower VARCHAR(16) NOT NULL, " +
+                    "name VARCHAR(16) NOT NULL, " +
+                    "uuid VARCHAR(36) NOT NULL, " +
+                    "last_seen BIGINT NOT NULL, " +
+                    "PRIMARY KEY (name_lower), " +
+                    "INDEX idx_uuid (uuid)) ENGINE=InnoDB;");
+        }
+        return true;
+    }
+}
@@ -0,0 +1,51 @@
+package com.digitalserverhost.plugins.managers.migrations;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Indexes locks by holder and heartbeat, so releasing a server's locks at
+ * startup or after a crash, listing held locks and sweeping expired ones
+ * read only the locked rows instead of scanning the table. Released rows
+ * have a NULL 'locking_server' and sit together at the start of the index.
+ * <p>
+ * Runs in the background: InnoDB builds a secondary index without blocking
+ * writes, and nothing depends on it for correctness.
+ */
+public class V8LockHolderIndex implements Migration {
+
+    private static final String INDEX_NAME = "idx_lock_holder";
+
+    @Override
+    public int getVersion() {
+        return 8;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Index locking_server and lock_timestamp";
+    }
+
+    @Override
+    public boolean isBackground() {
+        return true;
+    }
+
+    @Override
+    public boolean migrate(MigrationContext context) throws SQLException {
+        try (ResultSet indexes = context.getConnection().getMetaData().getIndexInfo(null, null,
+                context.getTableName(), false, false)) {
+            while (indexes.next()) {
+                if (INDEX_NAME.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        try (Statement statement = context.getConnection().createStatement()) {
+            statement.executeUpdate("ALTER TABLE " + context.getEscapedTableName() + " ADD INDEX " + INDEX_NAME
+                    + " (locking_server, lock_timestamp)");
+        }
+        return true;
+    }
+}
@@ -0,0 +1,133 @@
+package com.digitalserverhost.plugins.metrics;
+
+import com.digitalserverhost.plugins.utils.PayloadSection;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * The metrics of the backend plugin. Timings are in microseconds, sizes in
+ * bytes. Callers take {@code System.nanoTime()} before an operation and pass it
+ * to {@link #since(long)} afterwards.
+ */
+public class BridgeMetrics {
+
+    private final MetricsRegistry registry = new MetricsRegistry();
+
+    public final LatencyHistogram lockAcquire = registry.histogram("mcdb_lock_acquire_us",
+            "Time to acquire a player's lock, including waiting for another server to release it.");
+    public final LatencyHistogram dataSelect = registry.histogram("mcdb_data_select_us",
+            "Time to read a player's row from the database.");
+    public final LatencyHistogram jsonDecode = registry.histogram("mcdb_json_decode_us",
+            "Time to parse a player's JSON into PlayerData.");
+    public final LatencyHistogram itemDecode = registry.histogram("mcdb_item_decode_us",
+            "Time to rebuild a player's item stacks, per join.");
+    public final LatencyHistogram dataApply = registry.histogram("mcdb_data_apply_us",
+            "Main thread time to apply loaded data to a joining player.");
+    public final LatencyHistogram snapshotCapture = registry.histogram("mcdb_snapshot_capture_us",
+            "Main thread time to capture a player's data for saving.");
+    public final LatencyHistogram serialize = registry.histogram("mcdb_serialize_us",
+            "Time to serialize a snapshot to JSON.");
+    public final LatencyHistogram save = registry.histogram("mcdb_save_release_us",
+            "Time of the combined save and lock release statement.");
+    public final LatencyHistogram payloadLoaded = registry.histogram("mcdb_payload_loaded_bytes",
+            "Size of the player data read from the database.");
+    public final LatencyHistogram payloadSaved = registry.histogram("mcdb_payload_saved_bytes",
+            "Size of the player data written to the database.");
+
+    private final LatencyHistogram[] payloadSections = new LatencyHistogram[PayloadSection.values().length];
+
+    public final LongAdder lockWaits = registry.counter("mcdb_lock_waits_total",
+            "Lock attempts that found the lock held by another server.");
+    public final LongAdder kicks = registry.counter("mcdb_kicks_total",
+            "Players refused or kicked because their data could not be locked, loaded or applied.");
+    public final LongAdder failedSaves = registry.counter("mcdb_failed_saves_total",
+            "Saves that failed with an error. The lock was released without saving.");
+    public final LongAdder lostLockSaves = registry.counter("mcdb_lost_lock_saves_total",
+            "Saves skipped because this server no longer held the lock.");
+
+    public final LabeledCounter reapedLocks = registry.labeledCounter("mcdb_reaped_locks_total", "server",
+            "Expired locks released by this server's lock reaper, by the server that held them.");
+
+    public final MainThreadBudget mainThread = new MainThreadBudget(registry);
+    public final SwitchTimings switches = new SwitchTimings(registry);
+
+    public BridgeMetrics() {
+        for (PayloadSection section : PayloadSection.values()) {
+            payloadSections[section.ordinal()] = registry.histogram("mcdb_payload_" + section.getLabel() + "_bytes",
+                    "Encoded size of the " + section.getLabel() + " section of saved player data.");
+        }
+    }
+
+    /**
+     * @param sizes bytes per section, indexed by {@link PayloadSection#ordinal()}.
+     */
+    public void recordPayloadSections(long[] sizes) {
+        for (int i = 0; i < payloadSections.length; i++) {
+            payloadSections[i].record(sizes[i]);
+        }
+    }
+
+    /**
+     * Counts locks the reaper released from a server.
+     */
+    public void recordReapedLocks(String serverId, int count) {
+        reapedLocks.add(serverId, count);
+    }
+
+    public MetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Exposes the connection pool's state. The bean is looked up on every read
+     * because Hikari only creates it once the pool has started.
+     */
+    public void registerPool(Supplier<HikariPoolMXBean> pool) {
+        registry.gauge("mcdb_pool_active_connections", "Connections in use.",
+                () -> poolValue(pool, HikariPoolMXBean::getActiveConnections));
+        registry.gauge("mcdb_pool_idle_connections", "Idle connections in the pool.",
+                () -> poolValue(pool, HikariPoolMXBean::getIdleConnections));
+        registry.gauge("mcdb_pool_total_connections", "Connections in the pool.",
+                () -> poolValue(pool, HikariPoolMXBean::getTotalConnections));
+        registry.gauge("mcdb_pool_pending_threads", "Threads waiting for a connection.",
+                () -> poolValue(pool, HikariPoolMXBean::getThreadsAwaitingConnection));
+    }
+
+    private static long poolValue(Supplier<HikariPoolMXBean> pool,
+            ToIntFunction<HikariPoolMXBean> getter) {
+        HikariPoolMXBean bean = pool.get();
+        return bean == null ? -1 : getter.applyAsInt(bean);
+    }
+
+    /**
+     * @return microseconds elapsed since {@code startNanos}.
+     */
+    public static long since(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1000;
+    }
+
+    /**
+     * UTF-8 length of a string, without encoding it.
+     */
+    public static long utf8Length(CharSequence text) {
+        long length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
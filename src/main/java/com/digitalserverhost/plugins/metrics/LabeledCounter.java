@@ -0,0 +1,54 @@
+package com.digitalserverhost.plugins.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A counter with one label, exported as a single metric with a series per
+ * label value. Values are added as they are first seen, so the label should
+ * have few of them, such as server ids.
+ */
+public class LabeledCounter {
+
+    private final String label;
+    private final Map<String, LongAdder> series = new ConcurrentHashMap<>();
+
+    LabeledCounter(String label) {
+        this.label = label;
+    }
+
+    public void add(String value, long count) {
+        series.computeIfAbsent(value, key -> new LongAdder()).add(count);
+    }
+
+    public long get(String value) {
+        LongAdder counter = series.get(value);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * @return the total over every label value.
+     */
+    public long sum() {
+        long sum = 0;
+        for (LongAdder counter : series.values()) {
+            sum += counter.sum();
+        }
+        return sum;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return the current count per label value, sorted by value.
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        series.forEach((value, counter) -> snapshot.put(value, counter.sum()));
+        return snapshot;
+    }
+}
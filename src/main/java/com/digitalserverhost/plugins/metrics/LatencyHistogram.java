@@ -0,0 +1,92 @@
+package com.digitalserverhost.plugins.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram over fixed 1-2-5 buckets. Recording is a few atomic
+ * increments and allocates nothing; percentiles are reported as the upper
+ * bound of the bucket they fall in.
+ */
+public class LatencyHistogram {
+
+    private static final long[] BOUNDS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1_000, 2_000, 5_000, 10_000, 20_000,
+            50_000, 100_000, 200_000, 500_000, 1_000_000, 2_000_000, 5_000_000, 10_000_000, 20_000_000,
+            50_000_000, 100_000_000 };
+
+    private final AtomicLongArray counts = new AtomicLongArray(BOUNDS.length + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = getCount();
+        return n == 0 ? 0 : (double) getSum() / n;
+    }
+
+    /**
+     * @param percentile between 0 and 100.
+     * @return the upper bound of the bucket holding that percentile, capped at
+     *         the largest value seen; 0 if empty.
+     */
+    public long getPercentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[counts.length()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank && snapshot[i] > 0) {
+                return i < BOUNDS.length ? Math.min(BOUNDS[i], getMax()) : getMax();
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * One-line summary, e.g. "n=120 mean=35.2 p50=50 p95=100 p99=200 max=143".
+     */
+    public String summary() {
+        return String.format("n=%d mean=%.1f p50=%d p95=%d p99=%d max=%d", getCount(), getMean(), getPercentile(50),
+                getPercentile(95), getPercentile(99), getMax());
+    }
+
+    private static int bucketOf(long value) {
+        for (int i = 0; i < BOUNDS.length; i++) {
+            if (value <= BOUNDS[i]) {
+                return i;
+            }
+        }
+        return BOUNDS.length;
+    }
+}
@@ -0,0 +1,118 @@
+package com.digitalserverhost.plugins.metrics;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Main thread time spent capturing and applying player data, per player and
+ * section, rolled up per tick. When a tick's total exceeds the budget,
+ * {@link #endTick()} names the player and section that cost the most.
+ * <p>
+ * {@link #record} and {@link #endTick()} must only be called from the main
+ * thread.
+ */
+public class MainThreadBudget {
+
+    public enum Section {
+        INVENTORY, ENDER_CHEST, EFFECTS, ADVANCEMENTS, OTHER;
+
+        private final String label = name().toLowerCase(Locale.ROOT).replace('_', '-');
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * Receives the time of one section of a capture or apply.
+     */
+    @FunctionalInterface
+    public interface SectionTimer {
+        void record(Section section, long nanos);
+    }
+
+    private final Map<Section, LatencyHistogram> sections = new EnumMap<>(Section.class);
+    private final LatencyHistogram ticks;
+    private final LongAdder overBudget;
+    private volatile long budgetNanos;
+
+    // Work of the current tick: player name -> nanos per section ordinal
+    private final Map<String, long[]> currentTick = new HashMap<>();
+    private long currentTickNanos;
+
+    public MainThreadBudget(MetricsRegistry registry) {
+        for (Section section : Section.values()) {
+            String name = section.name().toLowerCase(Locale.ROOT);
+            sections.put(section, registry.histogram("mcdb_main_thread_" + name + "_us",
+                    "Main thread time of the " + section.getLabel() + " section of one capture or apply."));
+        }
+        ticks = registry.histogram("mcdb_main_thread_tick_us",
+                "Main thread time of all capture and apply work in a tick that had any.");
+        overBudget = registry.counter("mcdb_main_thread_over_budget_total",
+                "Ticks in which capture and apply work exceeded the configured budget.");
+    }
+
+    /**
+     * @param budgetNanos per-tick budget; 0 or less disables the warning.
+     */
+    public void setBudgetNanos(long budgetNanos) {
+        this.budgetNanos = budgetNanos;
+    }
+
+    /**
+     * @return a timer that attributes sections to the given player.
+     */
+    public SectionTimer forPlayer(String player) {
+        return (section, nanos) -> record(player, section, nanos);
+    }
+
+    public void record(String player, Section section, long nanos) {
+        sections.get(section).record(nanos / 1000);
+        currentTick.computeIfAbsent(player, key -> new long[Section.values().length])[section.ordinal()] += nanos;
+        currentTickNanos += nanos;
+    }
+
+    /**
+     * Closes the current tick.
+     *
+     * @return a warning if the tick went over budget, otherwise null.
+     */
+    public String endTick() {
+        if (currentTick.isEmpty()) {
+            return null;
+        }
+        long total = currentTickNanos;
+        ticks.record(total / 1000);
+
+        String warning = null;
+        long budget = budgetNanos;
+        if (budget > 0 && total > budget) {
+            overBudget.increment();
+            String heaviestPlayer = null;
+            Section heaviestSection = null;
+            long heaviestNanos = -1;
+            for (Map.Entry<String, long[]> entry : currentTick.entrySet()) {
+                long[] nanos = entry.getValue();
+                for (Section section : Section.values()) {
+                    if (nanos[section.ordinal()] > heaviestNanos) {
+                        heaviestNanos = nanos[section.ordinal()];
+                        heaviestPlayer = entry.getKey();
+                        heaviestSection = section;
+                    }
+                }
+            }
+            warning = String.format(Locale.ROOT,
+                    "Player data sync used %.2f ms of main thread time this tick (budget %.2f ms, %d player(s)). "
+                            + "Heaviest: %s's %s (%.2f ms).",
+                    total / 1e6, budget / 1e6, currentTick.size(), heaviestPlayer, heaviestSection.getLabel(),
+                    heaviestNanos / 1e6);
+        }
+
+        currentTick.clear();
+        currentTickNanos = 0;
+        return warning;
+    }
+}
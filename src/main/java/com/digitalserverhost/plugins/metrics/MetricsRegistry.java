@@ -0,0 +1,158 @@
+package com.digitalserverhost.plugins.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Named histograms, counters and gauges, reported in registration order.
+ * Metrics are registered once at startup and recorded through the returned
+ * objects, so the hot path never looks anything up by name.
+ */
+public class MetricsRegistry {
+
+    private final Map<String, Metric> metrics = new LinkedHashMap<>();
+
+    private record Metric(String help, LatencyHistogram histogram, LongAdder counter, LongSupplier gauge,
+            LabeledCounter labeled) {
+    }
+
+    public synchronized LatencyHistogram histogram(String name, String help) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        register(name, new Metric(help, histogram, null, null, null));
+        return histogram;
+    }
+
+    public synchronized LongAdder counter(String name, String help) {
+        LongAdder counter = new LongAdder();
+        register(name, new Metric(help, null, counter, null, null));
+        return counter;
+    }
+
+    /**
+     * A counter with a series per value of the given label.
+     */
+    public synchronized LabeledCounter labeledCounter(String name, String label, String help) {
+        LabeledCounter counter = new LabeledCounter(label);
+        register(name, new Metric(help, null, null, null, counter));
+        return counter;
+    }
+
+    /**
+     * @param gauge read on every report; must be cheap and thread-safe.
+     */
+    public synchronized void gauge(String name, String help, LongSupplier gauge) {
+        register(name, new Metric(help, null, null, gauge, null));
+    }
+
+    private void register(String name, Metric metric) {
+        if (metrics.putIfAbsent(name, metric) != null) {
+            throw new IllegalArgumentException("Metric already registered: " + name);
+        }
+    }
+
+    /**
+     * Human-readable report, one line per metric, or per label value of a
+     * labeled counter.
+     */
+    public synchronized List<String> report() {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Metric> entry : metrics.entrySet()) {
+            Metric metric = entry.getValue();
+            if (metric.labeled() != null) {
+                Map<String, Long> series = metric.labeled().snapshot();
+                if (series.isEmpty()) {
+                    lines.add(entry.getKey() + ": 0");
+                }
+                series.forEach((value, count) -> lines.add(entry.getKey()
+                        + labels(metric.labeled().getLabel(), value) + ": " + count));
+                continue;
+            }
+            String value;
+            if (metric.histogram() != null) {
+                value = metric.histogram().summary();
+            } else if (metric.counter() != null) {
+                value = String.valueOf(metric.counter().sum());
+            } else {
+                value = String.valueOf(metric.gauge().getAsLong());
+            }
+            lines.add(entry.getKey() + ": " + value);
+        }
+        return lines;
+    }
+
+    /**
+     * All metrics in Prometheus text format. Histograms are exported as
+     * summaries with p50/p95/p99.
+     */
+    public synchronized String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, Metric> entry : metrics.entrySet()) {
+            String name = entry.getKey();
+            Metric metric = entry.getValue();
+            out.append("# HELP ").append(name).append(' ').append(metric.help()).append('\n');
+            if (metric.histogram() != null) {
+                LatencyHistogram histogram = metric.histogram();
+                out.append("# TYPE ").append(name).append(" summary\n");
+                for (int quantile : new int[] { 50, 95, 99 }) {
+                    out.append(name).append("{quantile=\"0.").append(quantile).append("\"} ")
+                            .append(histogram.getPercentile(quantile)).append('\n');
+                }
+                out.append(name).append("_sum ").append(histogram.getSum()).append('\n');
+                out.append(name).append("_count ").append(histogram.getCount()).append('\n');
+            } else if (metric.counter() != null) {
+                out.append("# TYPE ").append(name).append(" counter\n");
+                out.append(name).append(' ').append(metric.counter().sum()).append('\n');
+            } else if (metric.labeled() != null) {
+                out.append("# TYPE ").append(name).append(" counter\n");
+                metric.labeled().snapshot().forEach((value, count) -> out.append(name)
+                        .append(labels(metric.labeled().getLabel(), value)).append(' ').append(count).append('\n'));
+            } else {
+                out.append("# TYPE ").append(name).append(" gauge\n");
+                out.append(name).append(' ').append(metric.gauge().getAsLong()).append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    private static String labels(String label, String value) {
+        return "{" + label + "=\"" + escapeLabel(value) + "\"}";
+    }
+
+    /**
+     * Escapes a label value for the Prometheus text format.
+     */
+    public static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Writes {@link #toPrometheus()} to a file, replacing it atomically so
+     * scrapers never see a partial file.
+     */
+    public void writeTo(Path file) throws IOException {
+        writeAtomically(file, toPrometheus());
+    }
+
+    /**
+     * Replaces a file with the given text through a temporary sibling, so
+     * readers see either the old or the new content.
+     */
+    public static void writeAtomically(Path file, String content) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temp, content, StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
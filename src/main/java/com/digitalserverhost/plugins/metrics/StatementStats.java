@@ -0,0 +1,121 @@
+package com.digitalserverhost.plugins.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Latency, row and byte counts per SQL statement, plus a log of statements
+ * slower than a threshold. Statements are registered once with their SQL
+ * template and timed through the returned {@link Statement}.
+ */
+public class StatementStats {
+
+    private final MetricsRegistry registry;
+    private final Logger logger;
+    private final Map<String, Statement> statements = new ConcurrentHashMap<>();
+    private volatile long slowThresholdNanos;
+
+    public StatementStats(MetricsRegistry registry, Logger logger) {
+        this.registry = registry;
+        this.logger = logger;
+    }
+
+    /**
+     * @param slowThresholdMs statements taking longer are logged; 0 or less
+     *                        disables the log.
+     */
+    public void setSlowThresholdMs(long slowThresholdMs) {
+        this.slowThresholdNanos = slowThresholdMs * 1_000_000;
+    }
+
+    /**
+     * Registers a statement, or returns the one already registered under this
+     * operation name.
+     */
+    public Statement register(String operation, String sql) {
+        return statements.computeIfAbsent(operation, key -> new Statement(key, sql));
+    }
+
+    /**
+     * One block per statement: its SQL template, latency in microseconds, and
+     * the rows and bytes it moved.
+     */
+    public List<String> report() {
+        List<String> lines = new ArrayList<>();
+        statements.values().stream().sorted((a, b) -> a.operation.compareTo(b.operation)).forEach(statement -> {
+            lines.add(statement.operation + ": " + statement.latency.summary() + " rows=" + statement.rows.sum()
+                    + " bytes=" + statement.bytes.sum() + " slow=" + statement.slow.sum());
+            lines.add("  " + statement.sql);
+        });
+        if (lines.isEmpty()) {
+            lines.add("No statements recorded yet.");
+        }
+        return lines;
+    }
+
+    public class Statement {
+        private final String operation;
+        private final String sql;
+        private final LatencyHistogram latency;
+        private final LongAdder rows;
+        private final LongAdder bytes;
+        private final LongAdder slow;
+
+        private Statement(String operation, String sql) {
+            this.operation = operation;
+            this.sql = sql;
+            String name = "mcdb_sql_" + operation.toLowerCase(Locale.ROOT);
+            this.latency = registry.histogram(name + "_us", "Latency of: " + sql);
+            this.rows = registry.counter(name + "_rows_total", "Rows affected or returned by: " + sql);
+            this.bytes = registry.counter(name + "_bytes_total", "Payload bytes sent or received by: " + sql);
+            this.slow = registry.counter(name + "_slow_total", "Executions over the slow statement threshold.");
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * Records one execution. The context arguments are only used when
+         * logging a slow statement.
+         *
+         * @param startNanos {@code System.nanoTime()} before the statement ran.
+         * @param rows       rows affected or returned, or -1 if it failed.
+         * @param bytes      payload bytes sent or received.
+         * @param player     the player the statement was for, or null.
+         * @param serverId   the server-id it ran on behalf of, or null.
+         * @param attempt    the lock attempt during which it ran, or 0.
+         */
+        public void record(long startNanos, long rows, long bytes, UUID player, String serverId, int attempt) {
+            long nanos = System.nanoTime() - startNanos;
+            latency.record(nanos / 1000);
+            if (rows > 0) {
+                this.rows.add(rows);
+            }
+            this.bytes.add(bytes);
+
+            long threshold = slowThresholdNanos;
+            if (threshold > 0 && nanos > threshold) {
+                slow.increment();
+                StringBuilder context = new StringBuilder();
+                if (player != null) {
+                    context.append(", player ").append(player);
+                }
+                if (serverId != null) {
+                    context.append(", server ").append(serverId);
+                }
+                if (attempt > 0) {
+                    context.append(", lock attempt ").append(attempt);
+                }
+                logger.warning(String.format(Locale.ROOT, "Slow statement %s took %.1f ms (rows %d, bytes %d%s): %s",
+                        operation, nanos / 1e6, rows, bytes, context, sql));
+            }
+        }
+    }
+}
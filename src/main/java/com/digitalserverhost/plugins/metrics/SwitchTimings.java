@@ -0,0 +1,132 @@
+package com.digitalserverhost.plugins.metrics;
+
+import com.digitalserverhost.plugins.protocol.SaveTimings;
+import com.digitalserverhost.plugins.protocol.TraceId;
+
+import java.util.Locale;
+
+/**
+ * End-to-end timing of the switches this server is the destination of, split
+ * into stages:
+ * <ul>
+ * <li>save wait: the proxy's SaveAndRelease until the source acknowledged it,
+ * of which the source spent capture, serialize and save</li>
+ * <li>lock and load: this server acquiring the lock and reading the data</li>
+ * <li>apply: applying the data once the player joined</li>
+ * </ul>
+ * The proxy forwards its wait and the source's timings with the prefetch hint,
+ * so no clocks are compared across servers. Since every backend exports these
+ * histograms, summing them across the network gives the network-wide picture.
+ */
+public class SwitchTimings {
+
+    private final LatencyHistogram total;
+    private final LatencyHistogram saveWait;
+    private final LatencyHistogram sourceCapture;
+    private final LatencyHistogram sourceSerialize;
+    private final LatencyHistogram sourceSave;
+    private final LatencyHistogram lock;
+    private final LatencyHistogram load;
+    private final LatencyHistogram apply;
+
+    public SwitchTimings(MetricsRegistry registry) {
+        total = registry.histogram("mcdb_switch_total_us",
+                "Whole switch, from the proxy's save request until the data was applied here.");
+        saveWait = registry.histogram("mcdb_switch_save_wait_us",
+                "Proxy's wait for the source server to save and release the player.");
+        sourceCapture = registry.histogram("mcdb_switch_source_capture_us",
+                "Source server's main thread snapshot of a switching player.");
+        sourceSerialize = registry.histogram("mcdb_switch_source_serialize_us",
+                "Source server's serialization of a switching player's snapshot.");
+        sourceSave = registry.histogram("mcdb_switch_source_save_us",
+                "Source server's save and lock release statement for a switching player.");
+        lock = registry.histogram("mcdb_switch_lock_us", "Lock acquire here for a switching player.");
+        load = registry.histogram("mcdb_switch_load_us", "Data load here for a switching player.");
+        apply = registry.histogram("mcdb_switch_apply_us", "Data apply here for a switching player.");
+    }
+
+    /**
+     * Starts timing a switch arriving at this server.
+     *
+     * @param saveWaitUs the proxy's wait for the source, or -1 if unknown.
+     * @param source     the source's save timings, or null if unknown.
+     */
+    public Trace start(long traceId, long saveWaitUs, SaveTimings source) {
+        return new Trace(traceId, saveWaitUs, source);
+    }
+
+    public class Trace {
+        private final long traceId;
+        private final long startNanos = System.nanoTime();
+        private final long saveWaitUs;
+        private final SaveTimings source;
+        private volatile long lockUs = -1;
+        private volatile long loadUs = -1;
+
+        private Trace(long traceId, long saveWaitUs, SaveTimings source) {
+            this.traceId = traceId;
+            this.saveWaitUs = saveWaitUs;
+            this.source = source;
+        }
+
+        public long getTraceId() {
+            return traceId;
+        }
+
+        public long getStartNanos() {
+            return startNanos;
+        }
+
+        public void setLockUs(long lockUs) {
+            this.lockUs = lockUs;
+        }
+
+        public void setLoadUs(long loadUs) {
+            this.loadUs = loadUs;
+        }
+
+        /**
+         * Records the switch once the player's data has been applied. Stages
+         * that did not happen here, e.g. a lock taken before the trace was
+         * known, are left out.
+         *
+         * @return a log line with the breakdown.
+         */
+        public String complete(String player, long applyUs) {
+            long localUs = BridgeMetrics.since(startNanos);
+            StringBuilder line = new StringBuilder(TraceId.tag(traceId)).append("Switch of ").append(player);
+            if (saveWaitUs >= 0) {
+                long totalUs = saveWaitUs + localUs;
+                total.record(totalUs);
+                saveWait.record(saveWaitUs);
+                line.append(" took ").append(ms(totalUs)).append(": save wait ").append(ms(saveWaitUs));
+                if (source != null) {
+                    sourceCapture.record(source.captureUs());
+                    sourceSerialize.record(source.serializeUs());
+                    sourceSave.record(source.saveUs());
+                    line.append(" (capture ").append(ms(source.captureUs())).append(", serialize ")
+                            .append(ms(source.serializeUs())).append(", save ").append(ms(source.saveUs()))
+                            .append(')');
+                }
+                line.append(", ");
+            } else {
+                line.append(" finished here in ").append(ms(localUs)).append(": ");
+            }
+            if (lockUs >= 0) {
+                lock.record(lockUs);
+                line.append("lock ").append(ms(lockUs)).append(", ");
+            }
+            if (loadUs >= 0) {
+                load.record(loadUs);
+                line.append("load ").append(ms(loadUs)).append(", ");
+            }
+            apply.record(applyUs);
+            line.append("apply ").append(ms(applyUs)).append('.');
+            return line.toString();
+        }
+    }
+
+    private static String ms(long micros) {
+        return String.format(Locale.ROOT, "%.1f ms", micros / 1000.0);
+    }
+}
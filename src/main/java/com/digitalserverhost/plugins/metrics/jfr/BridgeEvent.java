@@ -0,0 +1,40 @@
+package com.digitalserverhost.plugins.metrics.jfr;
+
+import com.digitalserverhost.plugins.protocol.TraceId;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+import java.util.UUID;
+
+/**
+ * Base of the plugin's Flight Recorder events. Each event is timed from
+ * {@link #begin()} to {@link #commit()} and carries the player and the
+ * server-id, plus the proxy's trace ID when it is part of a switch. Events
+ * are disabled unless a recording enables them, e.g. with
+ * {@code jcmd <pid> JFR.start settings=profile}; callers check
+ * {@link #shouldCommit()} before filling in fields.
+ */
+@Category({ "mc-data-bridge" })
+@StackTrace(false)
+public abstract class BridgeEvent extends Event {
+
+    @Label("Player UUID")
+    public String player;
+
+    @Label("Server ID")
+    public String serverId;
+
+    @Label("Trace ID")
+    public String trace;
+
+    public void setPlayer(UUID uuid, String serverId) {
+        this.player = uuid != null ? uuid.toString() : null;
+        this.serverId = serverId;
+    }
+
+    public void setTrace(long traceId) {
+        this.trace = traceId != TraceId.NONE ? TraceId.format(traceId) : null;
+    }
+}
@@ -0,0 +1,14 @@
+package com.digitalserverhost.plugins.metrics.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("mcdatabridge.DataApply")
+@Label("Data Apply")
+@Description("Applying loaded data to a joining player on the main thread")
+public class DataApplyEvent extends BridgeEvent {
+
+    @Label("Success")
+    public boolean success;
+}
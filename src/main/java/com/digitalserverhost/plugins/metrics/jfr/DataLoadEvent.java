@@ -0,0 +1,19 @@
+package com.digitalserverhost.plugins.metrics.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("mcdatabridge.DataLoad")
+@Label("Data Load")
+@Description("Reading and parsing a player's data, from the database or a handed-off snapshot")
+public class DataLoadEvent extends BridgeEvent {
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Source")
+    public String source;
+}
@@ -0,0 +1,20 @@
+package com.digitalserverhost.plugins.metrics.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("mcdatabridge.DataSave")
+@Label("Data Save")
+@Description("The combined save and lock release statement")
+public class DataSaveEvent extends BridgeEvent {
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Saved")
+    @Description("False if this server no longer held the lock")
+    public boolean saved;
+}
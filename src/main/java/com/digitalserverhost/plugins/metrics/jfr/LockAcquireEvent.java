@@ -0,0 +1,17 @@
+package com.digitalserverhost.plugins.metrics.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("mcdatabridge.LockAcquire")
+@Label("Lock Acquire")
+@Description("Waiting for and taking a player's data lock at login")
+public class LockAcquireEvent extends BridgeEvent {
+
+    @Label("Attempts")
+    public int attempts;
+
+    @Label("Acquired")
+    public boolean acquired;
+}
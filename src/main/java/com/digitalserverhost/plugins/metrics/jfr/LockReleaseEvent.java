@@ -0,0 +1,18 @@
+package com.digitalserverhost.plugins.metrics.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("mcdatabridge.LockRelease")
+@Label("Lock Release")
+@Description("Releasing a player's data lock without saving")
+public class LockReleaseEvent extends BridgeEvent {
+
+    @Label("Forced")
+    @Description("Released regardless of which server held it, e.g. by /databridge unlock")
+    public boolean forced;
+
+    @Label("Released")
+    public boolean released;
+}
@@ -0,0 +1,14 @@
+package com.digitalserverhost.plugins.metrics.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("mcdatabridge.SnapshotCapture")
+@Label("Snapshot Capture")
+@Description("Capturing a player's live data for saving on the main thread")
+public class SnapshotCaptureEvent extends BridgeEvent {
+
+    @Label("Success")
+    public boolean success;
+}
@@ -0,0 +1,194 @@
+package com.digitalserverhost.plugins.protocol;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * A single command carried in a {@link BridgeProtocol} frame. Which fields are
+ * meaningful depends on the type; unused fields are zero or null.
+ */
+public class BridgeCommand {
+
+    public static final byte SAVE_AND_RELEASE = 1;
+    public static final byte SAVED = 2;
+    public static final byte PREFETCH = 3;
+    public static final byte HANDOFF = 4;
+    public static final byte LOCK_RELEASED = 5;
+    public static final byte DRAIN = 6;
+    public static final byte HELLO = 7;
+    public static final byte RELEASE_SERVER = 8;
+
+    // Placeholder player for server-wide commands
+    private static final UUID NO_PLAYER = new UUID(0, 0);
+
+    private final byte type;
+    private final UUID uuid;
+    private final int requestId;
+    private final long version;
+    private final int index;
+    private final int total;
+    private final byte[] data;
+    private final long traceId;
+    private final SaveTimings timings;
+    private final long saveWaitUs;
+
+    BridgeCommand(byte type, UUID uuid, int requestId, long version, int index, int total, byte[] data) {
+        this(type, uuid, requestId, version, index, total, data, TraceId.NONE, null, 0);
+    }
+
+    private BridgeCommand(byte type, UUID uuid, int requestId, long version, int index, int total, byte[] data,
+            long traceId, SaveTimings timings, long saveWaitUs) {
+        this.type = type;
+        this.uuid = uuid;
+        this.requestId = requestId;
+        this.version = version;
+        this.index = index;
+        this.total = total;
+        this.data = data;
+        this.traceId = traceId;
+        this.timings = timings;
+        this.saveWaitUs = saveWaitUs;
+    }
+
+    /**
+     * Asks the backend to save the player and release their lock.
+     */
+    public static BridgeCommand saveAndRelease(UUID uuid, int requestId) {
+        return saveAndRelease(uuid, requestId, TraceId.NONE);
+    }
+
+    public static BridgeCommand saveAndRelease(UUID uuid, int requestId, long traceId) {
+        return new BridgeCommand(SAVE_AND_RELEASE, uuid, requestId, 0, 0, 0, null, traceId, null, 0);
+    }
+
+    /**
+     * Acknowledges a save; version is the committed data_version, or -1 if the
+     * save did not happen.
+     */
+    public static BridgeCommand saved(UUID uuid, int requestId, long version) {
+        return saved(uuid, requestId, version, TraceId.NONE, null);
+    }
+
+    /**
+     * @param timings how long the save took, or null if it did not happen.
+     */
+    public static BridgeCommand saved(UUID uuid, int requestId, long version, long traceId, SaveTimings timings) {
+        return new BridgeCommand(SAVED, uuid, requestId, version, 0, 0, null, traceId, timings, 0);
+    }
+
+    public static BridgeCommand prefetch(UUID uuid) {
+        return prefetch(uuid, TraceId.NONE, 0, null);
+    }
+
+    /**
+     * Tells the destination of a switch which trace it belongs to and how long
+     * the proxy waited for the source's save, so the destination can report
+     * the whole switch.
+     *
+     * @param saveWaitUs microseconds from SaveAndRelease to its acknowledgement.
+     * @param timings    the source's breakdown of that save, or null if unknown.
+     */
+    public static BridgeCommand prefetch(UUID uuid, long traceId, long saveWaitUs, SaveTimings timings) {
+        return new BridgeCommand(PREFETCH, uuid, 0, 0, 0, 0, null, traceId, timings, saveWaitUs);
+    }
+
+    /**
+     * One chunk of a compressed snapshot.
+     */
+    public static BridgeCommand handoff(UUID uuid, long version, int index, int total, byte[] chunk) {
+        return new BridgeCommand(HANDOFF, uuid, 0, version, index, total, chunk);
+    }
+
+    /**
+     * Tells the proxy that a player's lock was released outside a switch, e.g.
+     * on quit.
+     */
+    public static BridgeCommand lockReleased(UUID uuid, long version) {
+        return new BridgeCommand(LOCK_RELEASED, uuid, 0, version, 0, 0, null);
+    }
+
+    /**
+     * Asks the backend to save and release every online player, e.g. before a
+     * restart. Each save is acknowledged with {@link #SAVED} and this request
+     * ID.
+     */
+    public static BridgeCommand drain(int requestId) {
+        return new BridgeCommand(DRAIN, NO_PLAYER, requestId, 0, 0, 0, null);
+    }
+
+    /**
+     * Tells the proxy which server-id the sending backend uses for its locks.
+     */
+    public static BridgeCommand hello(String serverId) {
+        return new BridgeCommand(HELLO, NO_PLAYER, 0, 0, 0, 0, serverId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Asks a healthy backend to release the locks of a server that went down
+     * downForMs ago. Locks refreshed since then, or within the last two
+     * heartbeat intervals, are kept, so a server that is only unreachable from
+     * the proxy, or briefly hung, keeps its players' locks.
+     */
+    public static BridgeCommand releaseServer(String serverId, long downForMs) {
+        return new BridgeCommand(RELEASE_SERVER, NO_PLAYER, 0, downForMs, 0, 0,
+                serverId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public byte getType() {
+        return type;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public int getRequestId() {
+        return requestId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * The switch this command belongs to, or {@link TraceId#NONE}.
+     */
+    public long getTraceId() {
+        return traceId;
+    }
+
+    /**
+     * The source's save timings carried by {@link #SAVED} and {@link #PREFETCH},
+     * or null.
+     */
+    public SaveTimings getTimings() {
+        return timings;
+    }
+
+    /**
+     * Microseconds the proxy waited for the source's save, carried by
+     * {@link #PREFETCH}.
+     */
+    public long getSaveWaitUs() {
+        return saveWaitUs;
+    }
+
+    /**
+     * The server-id carried by {@link #HELLO} and {@link #RELEASE_SERVER}.
+     */
+    public String getServerId() {
+        return data != null ? new String(data, StandardCharsets.UTF_8) : null;
+    }
+}
@@ -0,0 +1,26 @@
+package com.digitalserverhost.plugins.protocol;
+
+import java.util.List;
+
+/**
+ * A decoded plugin message: the commands it carried and whether the sender
+ * used the legacy UTF format, so replies can be sent in a format it reads.
+ */
+public class BridgeFrame {
+
+    private final boolean legacy;
+    private final List<BridgeCommand> commands;
+
+    BridgeFrame(boolean legacy, List<BridgeCommand> commands) {
+        this.legacy = legacy;
+        this.commands = commands;
+    }
+
+    public boolean isLegacy() {
+        return legacy;
+    }
+
+    public List<BridgeCommand> getCommands() {
+        return commands;
+    }
+}
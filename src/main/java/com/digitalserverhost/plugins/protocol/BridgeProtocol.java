@@ -0,0 +1,258 @@
+package com.digitalserverhost.plugins.protocol;
+
+import com.google.common.io.ByteArrayDataInput;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Wire format of the 'mc-data-bridge:main' channel.
+ *
+ * <pre>
+ * frame   := version:byte count:unsigned short command*
+ * command := type:byte length:int body[length]
+ * </pre>
+ *
+ * UUIDs are written as two longs. Every command is length-prefixed, so a
+ * reader skips types it does not know and ignores trailing fields added by a
+ * newer sender; proxies and backends can be upgraded in any order.
+ *
+ * Proxies from before the frame format send 'SaveAndRelease' as two writeUTF
+ * strings, whose first byte is always 0. Frames start with a non-zero
+ * version, which is how {@link #decode(byte[])} tells them apart. Backends
+ * always answer with frames; a proxy treats a backend as frame-capable once
+ * it has received one from it and sends legacy messages until then.
+ */
+public final class BridgeProtocol {
+
+    public static final String CHANNEL = "mc-data-bridge:main";
+    public static final byte VERSION = 1;
+
+    // Largest payload a backend accepts from the proxy
+    public static final int MAX_MESSAGE_SIZE = 32767;
+
+    private BridgeProtocol() {
+    }
+
+    public static byte[] encode(BridgeCommand command) {
+        return encode(Collections.singletonList(command));
+    }
+
+    /**
+     * Encodes several commands into one frame, e.g. bulk save requests.
+     */
+    public static byte[] encode(List<BridgeCommand> commands) {
+        if (commands.size() > 0xFFFF) {
+            throw new IllegalArgumentException("Too many commands in one frame: " + commands.size());
+        }
+        ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        out.writeByte(VERSION);
+        out.writeShort(commands.size());
+        for (BridgeCommand command : commands) {
+            byte[] body = encodeBody(command);
+            out.writeByte(command.getType());
+            out.writeInt(body.length);
+            out.write(body);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes a command in the pre-frame UTF format, for backends that have
+     * not been upgraded yet.
+     *
+     * @return null if the command has no legacy form.
+     */
+    public static byte[] encodeLegacy(BridgeCommand command) {
+        if (command.getType() != BridgeCommand.SAVE_AND_RELEASE) {
+            return null;
+        }
+        ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        out.writeUTF("SaveAndRelease");
+        out.writeUTF(command.getUuid().toString());
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a frame or a legacy message. Unknown command types are skipped.
+     *
+     * @throws IllegalArgumentException if the message is malformed.
+     */
+    public static BridgeFrame decode(byte[] message) {
+        if (message == null || message.length == 0) {
+            throw new IllegalArgumentException("Empty message");
+        }
+        try {
+            return message[0] == 0 ? decodeLegacy(message) : decodeFrame(message);
+        } catch (IllegalStateException e) {
+            // Guava's data input reports truncated input this way
+            throw new IllegalArgumentException("Truncated message", e);
+        }
+    }
+
+    private static BridgeFrame decodeFrame(byte[] message) {
+        ByteArrayDataInput in = ByteStreams.newDataInput(message);
+        in.readByte(); // Version; newer frames only append fields and types
+        int count = in.readUnsignedShort();
+
+        List<BridgeCommand> commands = new ArrayList<>(count);
+        int offset = 3;
+        for (int i = 0; i < count; i++) {
+            byte type = in.readByte();
+            int length = in.readInt();
+            offset += 5;
+            if (length < 0 || length > message.length - offset) {
+                throw new IllegalArgumentException("Bad command length " + length);
+            }
+            ByteArrayInputStream body = new ByteArrayInputStream(message, offset, length);
+            BridgeCommand command = decodeBody(type, ByteStreams.newDataInput(body), body);
+            if (command != null) {
+                commands.add(command);
+            }
+            in.skipBytes(length);
+            offset += length;
+        }
+        return new BridgeFrame(false, commands);
+    }
+
+    private static BridgeFrame decodeLegacy(byte[] message) {
+        ByteArrayDataInput in = ByteStreams.newDataInput(message);
+        String subchannel = in.readUTF();
+        BridgeCommand command = subchannel.equals("SaveAndRelease")
+                ? BridgeCommand.saveAndRelease(UUID.fromString(in.readUTF()), 0)
+                : null;
+        return new BridgeFrame(true, command == null ? List.of() : List.of(command));
+    }
+
+    private static byte[] encodeBody(BridgeCommand command) {
+        ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        writeUuid(out, command.getUuid());
+        switch (command.getType()) {
+            case BridgeCommand.SAVE_AND_RELEASE -> {
+                out.writeInt(command.getRequestId());
+                out.writeLong(command.getTraceId());
+            }
+            case BridgeCommand.SAVED -> {
+                out.writeInt(command.getRequestId());
+                out.writeLong(command.getVersion());
+                writeTrace(out, command);
+            }
+            case BridgeCommand.PREFETCH -> {
+                out.writeLong(command.getSaveWaitUs());
+                writeTrace(out, command);
+            }
+            case BridgeCommand.LOCK_RELEASED -> out.writeLong(command.getVersion());
+            case BridgeCommand.DRAIN -> out.writeInt(command.getRequestId());
+            case BridgeCommand.HELLO -> out.writeUTF(command.getServerId());
+            case BridgeCommand.RELEASE_SERVER -> {
+                out.writeUTF(command.getServerId());
+                out.writeLong(command.getVersion());
+            }
+            case BridgeCommand.HANDOFF -> {
+                out.writeLong(command.getVersion());
+                out.writeInt(command.getIndex());
+                out.writeInt(command.getTotal());
+                out.writeInt(command.getData().length);
+                out.write(command.getData());
+            }
+            default -> throw new IllegalArgumentException("Unknown command type " + command.getType());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param body the stream under {@code in}, to tell whether optional
+     *             trailing fields are present.
+     */
+    private static BridgeCommand decodeBody(byte type, ByteArrayDataInput in, ByteArrayInputStream body) {
+        return switch (type) {
+            case BridgeCommand.SAVE_AND_RELEASE -> {
+                UUID uuid = readUuid(in);
+                int requestId = in.readInt();
+                yield BridgeCommand.saveAndRelease(uuid, requestId, body.available() >= 8 ? in.readLong() : 0);
+            }
+            case BridgeCommand.SAVED -> {
+                UUID uuid = readUuid(in);
+                int requestId = in.readInt();
+                long version = in.readLong();
+                long traceId = body.available() >= 8 ? in.readLong() : 0;
+                yield BridgeCommand.saved(uuid, requestId, version, traceId, readTimings(in, body));
+            }
+            case BridgeCommand.PREFETCH -> {
+                UUID uuid = readUuid(in);
+                if (body.available() < 16) {
+                    yield BridgeCommand.prefetch(uuid);
+                }
+                long saveWaitUs = in.readLong();
+                long traceId = in.readLong();
+                yield BridgeCommand.prefetch(uuid, traceId, saveWaitUs, readTimings(in, body));
+            }
+            case BridgeCommand.LOCK_RELEASED -> {
+                UUID uuid = readUuid(in);
+                yield BridgeCommand.lockReleased(uuid, in.readLong());
+            }
+            case BridgeCommand.DRAIN -> {
+                readUuid(in);
+                yield BridgeCommand.drain(in.readInt());
+            }
+            case BridgeCommand.HELLO -> {
+                readUuid(in);
+                yield BridgeCommand.hello(in.readUTF());
+            }
+            case BridgeCommand.RELEASE_SERVER -> {
+                readUuid(in);
+                String serverId = in.readUTF();
+                yield BridgeCommand.releaseServer(serverId, in.readLong());
+            }
+            case BridgeCommand.HANDOFF -> {
+                UUID uuid = readUuid(in);
+                long version = in.readLong();
+                int index = in.readInt();
+                int total = in.readInt();
+                int length = in.readInt();
+                if (length < 0 || length > MAX_MESSAGE_SIZE) {
+                    throw new IllegalArgumentException("Bad handoff chunk length " + length);
+                }
+                byte[] chunk = new byte[length];
+                in.readFully(chunk);
+                yield BridgeCommand.handoff(uuid, version, index, total, chunk);
+            }
+            default -> null;
+        };
+    }
+
+    /**
+     * Trace ID, then a flag and the save timings if there are any.
+     */
+    private static void writeTrace(ByteArrayDataOutput out, BridgeCommand command) {
+        out.writeLong(command.getTraceId());
+        SaveTimings timings = command.getTimings();
+        out.writeBoolean(timings != null);
+        if (timings != null) {
+            out.writeLong(timings.captureUs());
+            out.writeLong(timings.serializeUs());
+            out.writeLong(timings.saveUs());
+        }
+    }
+
+    private static SaveTimings readTimings(ByteArrayDataInput in, ByteArrayInputStream body) {
+        if (body.available() < 1 || !in.readBoolean()) {
+            return null;
+        }
+        return new SaveTimings(in.readLong(), in.readLong(), in.readLong());
+    }
+
+    private static void writeUuid(ByteArrayDataOutput out, UUID uuid) {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(ByteArrayDataInput in) {
+        return new UUID(in.readLong(), in.readLong());
+    }
+}
@@ -0,0 +1,9 @@
+package com.digitalserverhost.plugins.protocol;
+
+/**
+ * How long the source server took to save a switching player, in
+ * microseconds: the main thread snapshot, its serialization, and the save and
+ * lock release statement.
+ */
+public record SaveTimings(long captureUs, long serializeUs, long saveUs) {
+}
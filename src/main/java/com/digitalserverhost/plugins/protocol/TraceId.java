@@ -0,0 +1,38 @@
+package com.digitalserverhost.plugins.protocol;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Identifies one server switch across the proxy, the source and the
+ * destination. Generated by the proxy and carried by the commands of that
+ * switch; 0 means no trace.
+ */
+public final class TraceId {
+
+    public static final long NONE = 0;
+
+    private TraceId() {
+    }
+
+    public static long next() {
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == NONE);
+        return id;
+    }
+
+    /**
+     * @return the ID as 16 hex digits, as it appears in logs.
+     */
+    public static String format(long id) {
+        return String.format("%016x", id);
+    }
+
+    /**
+     * @return "[trace id] " for log lines, or an empty string for no trace.
+     */
+    public static String tag(long id) {
+        return id == NONE ? "" : "[trace " + format(id) + "] ";
+    }
+}
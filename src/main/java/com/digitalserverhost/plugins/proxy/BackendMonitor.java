@@ -0,0 +1,108 @@
+package com.digitalserverhost.plugins.proxy;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Tracks which backends are up, from the server-ids they announce and the
+ * proxy's pings, so the proxy can release a crashed backend's locks right
+ * away instead of waiting for them to expire.
+ */
+public class BackendMonitor {
+
+    // Consecutive failed pings before a backend is treated as down
+    static final int FAILURES_BEFORE_DOWN = 2;
+
+    private final Consumer<String> onDown;
+    private final Logger logger;
+    private final Map<String, Backend> backends = new ConcurrentHashMap<>();
+
+    private static class Backend {
+        private volatile String serverId;
+        private int failures;
+        private long firstFailure;
+        private long downSince;
+    }
+
+    /**
+     * @param onDown called with the proxy's name for a backend once it is
+     *               considered down.
+     */
+    public BackendMonitor(Consumer<String> onDown, Logger logger) {
+        this.onDown = onDown;
+        this.logger = logger;
+    }
+
+    /**
+     * Records the server-id a backend announced; only such backends are
+     * monitored.
+     */
+    public void onHello(String server, String serverId) {
+        backends.computeIfAbsent(server, key -> new Backend()).serverId = serverId;
+    }
+
+    public Set<String> getKnownServers() {
+        return backends.keySet();
+    }
+
+    public String getServerId(String server) {
+        Backend backend = backends.get(server);
+        return backend != null ? backend.serverId : null;
+    }
+
+    public boolean isUp(String server) {
+        Backend backend = backends.get(server);
+        if (backend == null) {
+            return false;
+        }
+        synchronized (backend) {
+            return backend.downSince == 0;
+        }
+    }
+
+    /**
+     * @return how long the backend has been down, or 0 if it is up.
+     */
+    public long getDownForMs(String server) {
+        Backend backend = backends.get(server);
+        if (backend == null) {
+            return 0;
+        }
+        synchronized (backend) {
+            return backend.downSince == 0 ? 0 : System.currentTimeMillis() - backend.downSince;
+        }
+    }
+
+    public void onPing(String server, boolean reachable) {
+        Backend backend = backends.get(server);
+        if (backend == null) {
+            return;
+        }
+        boolean wentDown = false;
+        synchronized (backend) {
+            if (reachable) {
+                if (backend.downSince != 0) {
+                    logger.info("Backend " + server + " is reachable again.");
+                }
+                backend.failures = 0;
+                backend.downSince = 0;
+            } else {
+                if (backend.failures++ == 0) {
+                    backend.firstFailure = System.currentTimeMillis();
+                }
+                if (backend.failures == FAILURES_BEFORE_DOWN) {
+                    // Date the outage from the first failed ping
+                    backend.downSince = backend.firstFailure;
+                    wentDown = true;
+                }
+            }
+        }
+        if (wentDown) {
+            logger.warning("Backend " + server + " (server-id " + backend.serverId + ") is not responding.");
+            onDown.accept(server);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.digitalserverhost.plugins.proxy;
+
+import com.digitalserverhost.plugins.protocol.BridgeCommand;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * The proxy's SaveAndRelease requests waiting for the source server's
+ * acknowledgement, shared by the Velocity and BungeeCord listeners.
+ * <p>
+ * Only backends that speak the framed protocol acknowledge saves. A backend
+ * counts as framed once it has sent a frame, which every current backend does
+ * shortly after each join, or while its control channel is connected. Switches
+ * away from any other backend are not held back, so a proxy upgraded before
+ * its backends switches players as fast as it did before acknowledgements.
+ */
+public class PendingSaves {
+
+    public record PendingSave(int requestId, long traceId, long sentAt, CompletableFuture<BridgeCommand> future) {
+    }
+
+    private final long timeoutMs;
+    private final Predicate<String> controlConnected;
+    private final AtomicInteger nextRequestId = new AtomicInteger();
+    // Backends that have sent us a frame, and so understand frames
+    private final Set<String> framedServers = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, PendingSave> pending = new ConcurrentHashMap<>();
+
+    /**
+     * @param timeoutMs        longest a switch is held back waiting for the
+     *                         source's acknowledgement.
+     * @param controlConnected whether a backend's control channel is up.
+     */
+    public PendingSaves(long timeoutMs, Predicate<String> controlConnected) {
+        this.timeoutMs = timeoutMs;
+        this.controlConnected = controlConnected;
+    }
+
+    public void onFrame(String server) {
+        framedServers.add(server);
+    }
+
+    /**
+     * @return true if the backend sends framed commands as plugin messages,
+     *         so commands to it can be framed too.
+     */
+    public boolean isFramed(String server) {
+        return framedServers.contains(server);
+    }
+
+    /**
+     * @return true if a save requested from this backend will be
+     *         acknowledged, and so is worth waiting for.
+     */
+    public boolean expectsAck(String server) {
+        return framedServers.contains(server) || controlConnected.test(server);
+    }
+
+    /**
+     * Starts waiting for a player's save, superseding any earlier request for
+     * them. The future completes with the Saved or LockReleased command, or
+     * with null on timeout, disconnect or a newer request.
+     */
+    public PendingSave begin(UUID uuid, long traceId) {
+        PendingSave save = new PendingSave(nextRequestId.incrementAndGet(), traceId, System.nanoTime(),
+                new CompletableFuture<>());
+        save.future().completeOnTimeout(null, timeoutMs, TimeUnit.MILLISECONDS);
+        PendingSave previous = pending.put(uuid, save);
+        if (previous != null) {
+            previous.future().complete(null);
+        }
+        return save;
+    }
+
+    /**
+     * Completes the player's pending save with a Saved answering it, or with
+     * a LockReleased: the lock is free either way, e.g. the source saved on
+     * quit.
+     */
+    public void onAck(BridgeCommand command) {
+        PendingSave save = pending.get(command.getUuid());
+        if (save == null) {
+            return;
+        }
+        if (command.getType() == BridgeCommand.LOCK_RELEASED
+                || (command.getType() == BridgeCommand.SAVED && save.requestId() == command.getRequestId())) {
+            save.future().complete(command);
+        }
+    }
+
+    /**
+     * @return false if the save was superseded or cancelled meanwhile.
+     */
+    public boolean finish(UUID uuid, PendingSave save) {
+        return pending.remove(uuid, save);
+    }
+
+    public void cancel(UUID uuid) {
+        PendingSave save = pending.remove(uuid);
+        if (save != null) {
+            save.future().complete(null);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.digitalserverhost.plugins.proxy;
+
+import com.digitalserverhost.plugins.metrics.LatencyHistogram;
+import com.digitalserverhost.plugins.metrics.MetricsRegistry;
+import com.digitalserverhost.plugins.protocol.TraceId;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per source/destination timing of server switches, as seen by the proxy:
+ * <ul>
+ * <li>save: SaveAndRelease sent until the source acknowledged it</li>
+ * <li>connect: ack received until the player finished joining the
+ * destination (its lock acquire and data load)</li>
+ * <li>total: the whole switch</li>
+ * </ul>
+ * Each route also keeps the trace ID of its slowest switch, to look up in the
+ * source's and destination's logs.
+ */
+public class SwitchMetrics {
+
+    private final Map<RouteKey, Route> routes = new ConcurrentHashMap<>();
+    private final Map<UUID, Switch> inFlight = new ConcurrentHashMap<>();
+
+    private record RouteKey(String source, String destination) {
+
+        @Override
+        public String toString() {
+            return source + " -> " + destination;
+        }
+    }
+
+    private static class Route {
+        private final LatencyHistogram save = new LatencyHistogram();
+        private final LatencyHistogram connect = new LatencyHistogram();
+        private final LatencyHistogram total = new LatencyHistogram();
+        private long unacknowledged;
+        private long slowestMs = -1;
+        private long slowestTrace = TraceId.NONE;
+    }
+
+    private static class Switch {
+        private final String source;
+        private final String destination;
+        private final long traceId;
+        private final long startedAt = System.nanoTime();
+        private volatile long ackedAt;
+
+        private Switch(String source, String destination, long traceId) {
+            this.source = source;
+            this.destination = destination;
+            this.traceId = traceId;
+        }
+    }
+
+    public void onRequestSent(UUID uuid, String source, String destination, long traceId) {
+        inFlight.put(uuid, new Switch(source, destination, traceId));
+    }
+
+    /**
+     * @return milliseconds since the request was sent, or -1 if unknown.
+     */
+    public long onAck(UUID uuid, boolean acknowledged) {
+        Switch current = inFlight.get(uuid);
+        if (current == null) {
+            return -1;
+        }
+        current.ackedAt = System.nanoTime();
+        long saveMs = (current.ackedAt - current.startedAt) / 1_000_000;
+        Route route = route(current);
+        if (acknowledged) {
+            route.save.record(saveMs);
+        } else {
+            synchronized (route) {
+                route.unacknowledged++;
+            }
+        }
+        return saveMs;
+    }
+
+    public void onConnected(UUID uuid, String server) {
+        Switch current = inFlight.remove(uuid);
+        if (current == null || !current.destination.equals(server) || current.ackedAt == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        long totalMs = (now - current.startedAt) / 1_000_000;
+        Route route = route(current);
+        route.connect.record((now - current.ackedAt) / 1_000_000);
+        route.total.record(totalMs);
+        synchronized (route) {
+            if (totalMs > route.slowestMs) {
+                route.slowestMs = totalMs;
+                route.slowestTrace = current.traceId;
+            }
+        }
+    }
+
+    public void onDisconnect(UUID uuid) {
+        inFlight.remove(uuid);
+    }
+
+    /**
+     * Human-readable report, one block per route, all times in milliseconds.
+     */
+    public List<String> report() {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<RouteKey, Route> entry : sortedRoutes().entrySet()) {
+            Route route = entry.getValue();
+            lines.add(entry.getKey() + (route.unacknowledged > 0 ? " (" + route.unacknowledged + " unacknowledged)" : ""));
+            lines.add("  save:    " + route.save.summary());
+            lines.add("  connect: " + route.connect.summary());
+            lines.add("  total:   " + route.total.summary());
+            synchronized (route) {
+                if (route.slowestTrace != TraceId.NONE) {
+                    lines.add("  slowest: " + route.slowestMs + " ms, trace " + TraceId.format(route.slowestTrace));
+                }
+            }
+        }
+        if (lines.isEmpty()) {
+            lines.add("No switches recorded yet.");
+        }
+        return lines;
+    }
+
+    /**
+     * Writes the metrics in Prometheus text format, replacing the file
+     * atomically so scrapers never see a partial file.
+     */
+    public void writeTo(Path file) throws IOException {
+        Map<RouteKey, Route> sorted = sortedRoutes();
+        StringBuilder out = new StringBuilder();
+
+        out.append("# HELP mcdb_switch_ms Server switch phases in milliseconds: save, connect and total.\n");
+        out.append("# TYPE mcdb_switch_ms summary\n");
+        sorted.forEach((key, route) -> {
+            appendSummary(out, key, "save", route.save);
+            appendSummary(out, key, "connect", route.connect);
+            appendSummary(out, key, "total", route.total);
+        });
+
+        out.append("# HELP mcdb_switch_unacknowledged_total Switches that went ahead without the source's save"
+                + " acknowledgement.\n");
+        out.append("# TYPE mcdb_switch_unacknowledged_total counter\n");
+        sorted.forEach((key, route) -> {
+            long unacknowledged;
+            synchronized (route) {
+                unacknowledged = route.unacknowledged;
+            }
+            out.append("mcdb_switch_unacknowledged_total{").append(labels(key)).append("} ").append(unacknowledged)
+                    .append('\n');
+        });
+
+        out.append("# HELP mcdb_switch_slowest_ms The slowest switch of each route, with its trace ID.\n");
+        out.append("# TYPE mcdb_switch_slowest_ms gauge\n");
+        sorted.forEach((key, route) -> {
+            synchronized (route) {
+                if (route.slowestTrace != TraceId.NONE) {
+                    out.append("mcdb_switch_slowest_ms{").append(labels(key)).append(",trace=\"")
+                            .append(TraceId.format(route.slowestTrace)).append("\"} ").append(route.slowestMs)
+                            .append('\n');
+                }
+            }
+        });
+
+        MetricsRegistry.writeAtomically(file, out.toString());
+    }
+
+    private static void appendSummary(StringBuilder out, RouteKey key, String phase, LatencyHistogram histogram) {
+        String labels = labels(key) + ",phase=\"" + phase + "\"";
+        for (int quantile : new int[] { 50, 95, 99 }) {
+            out.append("mcdb_switch_ms{").append(labels).append(",quantile=\"0.").append(quantile).append("\"} ")
+                    .append(histogram.getPercentile(quantile)).append('\n');
+        }
+        out.append("mcdb_switch_ms_sum{").append(labels).append("} ").append(histogram.getSum()).append('\n');
+        out.append("mcdb_switch_ms_count{").append(labels).append("} ").append(histogram.getCount()).append('\n');
+    }
+
+    private static String labels(RouteKey key) {
+        return "source=\"" + MetricsRegistry.escapeLabel(key.source()) + "\",destination=\""
+                + MetricsRegistry.escapeLabel(key.destination()) + "\"";
+    }
+
+    private Map<RouteKey, Route> sortedRoutes() {
+        Map<RouteKey, Route> sorted = new TreeMap<>(
+                Comparator.comparing(RouteKey::source).thenComparing(RouteKey::destination));
+        sorted.putAll(routes);
+        return sorted;
+    }
+
+    private Route route(Switch current) {
+        return routes.computeIfAbsent(new RouteKey(current.source, current.destination), key -> new Route());
+    }
+}
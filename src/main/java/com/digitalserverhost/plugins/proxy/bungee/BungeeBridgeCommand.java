@@ -0,0 +1,31 @@
+package com.digitalserverhost.plugins.proxy.bungee;
+
+import net.md_5.bungee.api.ChatColor;
+import net.md_5.bungee.api.CommandSender;
+import net.md_5.bungee.api.chat.TextComponent;
+import net.md_5.bungee.api.plugin.Command;
+
+/**
+ * /dbproxy stats - switch timings per source/destination pair.
+ */
+public class BungeeBridgeCommand extends Command {
+
+    private final BungeeListener listener;
+
+    public BungeeBridgeCommand(BungeeListener listener) {
+        super("dbproxy", "databridge.admin");
+        this.listener = listener;
+    }
+
+    @Override
+    public void execute(CommandSender sender, String[] args) {
+        if (args.length != 1 || !args[0].equalsIgnoreCase("stats")) {
+            sender.sendMessage(new TextComponent(ChatColor.RED + "Usage: /dbproxy stats"));
+            return;
+        }
+        sender.sendMessage(new TextComponent(ChatColor.GOLD + "Switch timings (ms):"));
+        for (String line : listener.getSwitchMetrics().report()) {
+            sender.sendMessage(new TextComponent(ChatColor.GRAY + line));
+        }
+    }
+}
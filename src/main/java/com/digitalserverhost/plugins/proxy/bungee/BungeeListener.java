@@ -1,30 +1,281 @@
 package com.digitalserverhost.plugins.proxy.bungee;
 
-import com.google.common.io.ByteArrayDataOutput;
-import com.google.common.io.ByteStreams;
+import com.digitalserverhost.plugins.control.ControlChannelConfig;
+import com.digitalserverhost.plugins.control.ControlClients;
+import com.digitalserverhost.plugins.protocol.BridgeCommand;
+import com.digitalserverhost.plugins.protocol.BridgeFrame;
+import com.digitalserverhost.plugins.protocol.BridgeProtocol;
+import com.digitalserverhost.plugins.protocol.TraceId;
+import com.digitalserverhost.plugins.proxy.BackendMonitor;
+import com.digitalserverhost.plugins.proxy.PendingSaves;
+import com.digitalserverhost.plugins.proxy.SwitchMetrics;
+import net.md_5.bungee.api.config.ServerInfo;
 import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.connection.Server;
+import net.md_5.bungee.api.event.PlayerDisconnectEvent;
+import net.md_5.bungee.api.event.PluginMessageEvent;
+import net.md_5.bungee.api.event.ServerConnectEvent;
+import net.md_5.bungee.api.event.ServerKickEvent;
 import net.md_5.bungee.api.event.ServerSwitchEvent;
 import net.md_5.bungee.api.plugin.Listener;
 import net.md_5.bungee.api.plugin.Plugin;
 import net.md_5.bungee.event.EventHandler;
 
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
 public class BungeeListener implements Listener {
 
+    // Longest time a switch is held back waiting for the source server's save
+    private static final long SAVE_ACK_TIMEOUT_MS = 5000;
+    private static final long PING_INTERVAL_SECONDS = 10;
+    private static final long METRICS_INTERVAL_SECONDS = 60;
+    // Connections made after the player already lost their server, which saves
+    // on quit; holding these back would only keep the player in limbo
+    private static final Set<ServerConnectEvent.Reason> NOT_HELD = EnumSet.of(
+            ServerConnectEvent.Reason.JOIN_PROXY, ServerConnectEvent.Reason.LOBBY_FALLBACK,
+            ServerConnectEvent.Reason.KICK_REDIRECT, ServerConnectEvent.Reason.SERVER_DOWN_REDIRECT);
+
     private final Plugin plugin;
+    // Destination of each player's most recent switch, for forwarding handoffs
+    private final Map<UUID, ServerInfo> pendingTargets = new ConcurrentHashMap<>();
+    // Players whose held-back connection is being resumed by us
+    private final Set<UUID> resuming = ConcurrentHashMap.newKeySet();
 
-    public BungeeListener(Plugin plugin) {
+    private final ControlClients controlClients;
+    private final PendingSaves pendingSaves;
+    private final BackendMonitor backendMonitor;
+    private final SwitchMetrics switchMetrics = new SwitchMetrics();
+
+    public BungeeListener(Plugin plugin, ControlChannelConfig controlConfig) {
         this.plugin = plugin;
+        this.controlClients = new ControlClients(controlConfig, this::handleBackendCommand, plugin.getLogger());
+        this.pendingSaves = new PendingSaves(SAVE_ACK_TIMEOUT_MS, controlClients::isConnected);
+        this.backendMonitor = new BackendMonitor(this::releaseLocksOf, plugin.getLogger());
+        plugin.getProxy().getScheduler().schedule(plugin, this::pingBackends, PING_INTERVAL_SECONDS,
+                PING_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        plugin.getProxy().getScheduler().schedule(plugin, this::writeMetrics, METRICS_INTERVAL_SECONDS,
+                METRICS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public SwitchMetrics getSwitchMetrics() {
+        return switchMetrics;
     }
 
+    /**
+     * ServerConnectEvent cannot be delayed, so the connection is cancelled,
+     * the source server is asked to save, and the same connection is issued
+     * again once the save is acknowledged. Switches away from backends that
+     * never acknowledge, joins, and redirects after a kick or a crash go ahead
+     * at once.
+     */
+    @EventHandler
+    public void onServerConnect(ServerConnectEvent event) {
+        ProxiedPlayer player = event.getPlayer();
+        UUID uuid = player.getUniqueId();
+        ServerConnectEvent.Reason reason = event.getReason();
+        if (resuming.remove(uuid) || event.isCancelled() || NOT_HELD.contains(reason)) {
+            return;
+        }
+        Server current = player.getServer();
+        ServerInfo target = event.getTarget();
+        if (current == null || current.getInfo().equals(target)) {
+            return;
+        }
+
+        String source = current.getInfo().getName();
+        long traceId = TraceId.next();
+        String tag = TraceId.tag(traceId);
+        plugin.getLogger().info(tag + "Player " + player.getName() + " is switching from " + source + ". Requesting data save.");
+        pendingTargets.put(uuid, target);
+
+        if (!pendingSaves.expectsAck(source)) {
+            // An older backend never acknowledges the save; let the connection
+            // proceed and the destination wait for the lock, as before acknowledgements
+            sendTo(current, BridgeCommand.saveAndRelease(uuid, 0, traceId));
+            sendTo(target, BridgeCommand.prefetch(uuid, traceId, 0, null));
+            return;
+        }
+
+        event.setCancelled(true);
+        PendingSaves.PendingSave saved = pendingSaves.begin(uuid, traceId);
+        sendTo(current, BridgeCommand.saveAndRelease(uuid, saved.requestId(), traceId));
+        switchMetrics.onRequestSent(uuid, source, target.getName(), traceId);
+
+        saved.future().thenAccept(ack -> {
+            if (!pendingSaves.finish(uuid, saved) || !player.isConnected()) {
+                return; // Superseded by a newer switch, or the player left
+            }
+            long saveWaitUs = (System.nanoTime() - saved.sentAt()) / 1000;
+            long version = ack != null ? ack.getVersion() : -1;
+            long elapsedMs = switchMetrics.onAck(uuid, version >= 0);
+            if (version >= 0) {
+                plugin.getLogger().info(tag + "Saved data for " + player.getName() + " (version " + version + ") in " + elapsedMs + " ms.");
+            } else {
+                plugin.getLogger().warning(tag + "No save acknowledgement for " + player.getName() + " after " + elapsedMs + " ms. Continuing the switch.");
+            }
+
+            // Let the destination start loading while the proxy connects the player,
+            // and tell it enough about the save to report the whole switch
+            sendTo(target, BridgeCommand.prefetch(uuid, traceId, saveWaitUs, ack != null ? ack.getTimings() : null));
+
+            resuming.add(uuid);
+            player.connect(target, reason);
+        });
+    }
+
+    /**
+     * Fires once the player has finished joining the destination, including
+     * its lock acquire and data load.
+     */
     @EventHandler
     public void onServerSwitch(ServerSwitchEvent event) {
         ProxiedPlayer player = event.getPlayer();
-        if (event.getFrom() != null) {
-            plugin.getLogger().info("Player " + player.getName() + " is switching from " + event.getFrom().getName() + ". Requesting data save.");
-            ByteArrayDataOutput out = ByteStreams.newDataOutput();
-            out.writeUTF("SaveAndRelease");
-            out.writeUTF(player.getUniqueId().toString());
-            event.getFrom().sendData("mc-data-bridge:main", out.toByteArray());
+        if (player.getServer() != null) {
+            switchMetrics.onConnected(player.getUniqueId(), player.getServer().getInfo().getName());
+        }
+    }
+
+    @EventHandler
+    public void onPluginMessage(PluginMessageEvent event) {
+        if (!event.getTag().equals(BridgeProtocol.CHANNEL)) {
+            return;
         }
+        // Never pass our channel through to the other side; in particular,
+        // clients must not be able to send SaveAndRelease or Handoff messages.
+        event.setCancelled(true);
+
+        if (!(event.getSender() instanceof Server source)) {
+            return;
+        }
+        BridgeFrame frame;
+        try {
+            frame = BridgeProtocol.decode(event.getData());
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Discarding malformed message from " + source.getInfo().getName() + ": " + e.getMessage());
+            return;
+        }
+        if (!frame.isLegacy()) {
+            pendingSaves.onFrame(source.getInfo().getName());
+        }
+
+        for (BridgeCommand command : frame.getCommands()) {
+            handleBackendCommand(source.getInfo().getName(), command);
+        }
+    }
+
+    /**
+     * Handles a command from a backend, received as a plugin message or over
+     * the control channel.
+     */
+    private void handleBackendCommand(String serverName, BridgeCommand command) {
+        UUID uuid = command.getUuid();
+        if (command.getType() == BridgeCommand.HELLO) {
+            backendMonitor.onHello(serverName, command.getServerId());
+        } else if (command.getType() == BridgeCommand.HANDOFF) {
+            ServerInfo target = pendingTargets.get(uuid);
+            if (target != null) {
+                sendTo(target, command);
+            }
+        } else if (command.getType() == BridgeCommand.SAVED || command.getType() == BridgeCommand.LOCK_RELEASED) {
+            pendingSaves.onAck(command);
+        }
+    }
+
+    @EventHandler
+    public void onDisconnect(PlayerDisconnectEvent event) {
+        UUID uuid = event.getPlayer().getUniqueId();
+        switchMetrics.onDisconnect(uuid);
+        pendingTargets.remove(uuid);
+        resuming.remove(uuid);
+        pendingSaves.cancel(uuid);
+    }
+
+    /**
+     * A kick is often the first sign of a crashed backend; check it right away
+     * rather than at the next scheduled ping.
+     */
+    @EventHandler
+    public void onServerKick(ServerKickEvent event) {
+        ServerInfo server = event.getKickedFrom();
+        if (server != null && backendMonitor.isUp(server.getName())) {
+            ping(server);
+            plugin.getProxy().getScheduler().schedule(plugin, () -> ping(server), 1, TimeUnit.SECONDS);
+        }
+    }
+
+    private void writeMetrics() {
+        try {
+            switchMetrics.writeTo(plugin.getDataFolder().toPath().resolve("switch-metrics.prom"));
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not write switch metrics: " + e.getMessage());
+        }
+    }
+
+    private void pingBackends() {
+        for (String name : backendMonitor.getKnownServers()) {
+            ServerInfo server = plugin.getProxy().getServerInfo(name);
+            if (server != null) {
+                ping(server);
+            }
+        }
+    }
+
+    private void ping(ServerInfo server) {
+        server.ping((result, error) -> backendMonitor.onPing(server.getName(), error == null));
+    }
+
+    /**
+     * Asks one healthy backend to release the locks a crashed one still holds,
+     * so its players can join elsewhere without waiting for lock-timeout.
+     */
+    private void releaseLocksOf(String deadServer) {
+        BridgeCommand release = BridgeCommand.releaseServer(backendMonitor.getServerId(deadServer),
+                backendMonitor.getDownForMs(deadServer));
+        for (String candidate : backendMonitor.getKnownServers()) {
+            if (candidate.equals(deadServer) || !backendMonitor.isUp(candidate)) {
+                continue;
+            }
+            ServerInfo server = plugin.getProxy().getServerInfo(candidate);
+            boolean sent = controlClients.send(candidate, release) || (server != null
+                    && server.sendData(BridgeProtocol.CHANNEL, BridgeProtocol.encode(release), false));
+            if (sent) {
+                plugin.getLogger().warning("Asked " + candidate + " to release the locks held by " + deadServer + ".");
+                return;
+            }
+        }
+        plugin.getLogger().warning("No reachable backend to release the locks held by " + deadServer + ". They expire after lock-timeout.");
+    }
+
+    public void close() {
+        controlClients.close();
+    }
+
+    /**
+     * Sends a command over the control channel if the backend has one,
+     * otherwise as a plugin message that is not queued for a later player.
+     * Commands without a legacy form are dropped for old backends.
+     */
+    private void sendTo(ServerInfo server, BridgeCommand command) {
+        if (controlClients.send(server.getName(), command)) {
+            return;
+        }
+        byte[] message = encodeFor(server, command);
+        if (message != null) {
+            server.sendData(BridgeProtocol.CHANNEL, message, false);
+        }
+    }
+
+    /**
+     * Encodes a command in the newest format the backend is known to read.
+     */
+    private byte[] encodeFor(ServerInfo server, BridgeCommand command) {
+        return pendingSaves.isFramed(server.getName()) ? BridgeProtocol.encode(command)
+                : BridgeProtocol.encodeLegacy(command);
     }
 }
@@ -1,13 +1,26 @@
 package com.digitalserverhost.plugins.proxy.bungee;
 
+import com.digitalserverhost.plugins.control.ControlChannelConfig;
 import net.md_5.bungee.api.plugin.Plugin;
 
 public class BungeeMCDataBridge extends Plugin {
 
+    private BungeeListener listener;
+
     @Override
     public void onEnable() {
         getLogger().info("mc-data-bridge has been enabled on BungeeCord!");
         getProxy().registerChannel("mc-data-bridge:main");
-        getProxy().getPluginManager().registerListener(this, new BungeeListener(this));
+        ControlChannelConfig controlConfig = ControlChannelConfig.load(getDataFolder().toPath(), getLogger());
+        listener = new BungeeListener(this, controlConfig);
+        getProxy().getPluginManager().registerListener(this, listener);
+        getProxy().getPluginManager().registerCommand(this, new BungeeBridgeCommand(listener));
+    }
+
+    @Override
+    public void onDisable() {
+        if (listener != null) {
+            listener.close();
+        }
     }
 }
@@ -0,0 +1,42 @@
+package com.digitalserverhost.plugins.proxy.velocity;
+
+import com.velocitypowered.api.command.SimpleCommand;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+
+import java.util.List;
+
+/**
+ * /dbproxy stats - switch timings per source/destination pair.
+ */
+public class VelocityBridgeCommand implements SimpleCommand {
+
+    private final VelocityListener listener;
+
+    public VelocityBridgeCommand(VelocityListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void execute(Invocation invocation) {
+        String[] args = invocation.arguments();
+        if (args.length != 1 || !args[0].equalsIgnoreCase("stats")) {
+            invocation.source().sendMessage(Component.text("Usage: /dbproxy stats", NamedTextColor.RED));
+            return;
+        }
+        invocation.source().sendMessage(Component.text("Switch timings (ms):", NamedTextColor.GOLD));
+        for (String line : listener.getSwitchMetrics().report()) {
+            invocation.source().sendMessage(Component.text(line, NamedTextColor.GRAY));
+        }
+    }
+
+    @Override
+    public boolean hasPermission(Invocation invocation) {
+        return invocation.source().hasPermission("databridge.admin");
+    }
+
+    @Override
+    public List<String> suggest(Invocation invocation) {
+        return invocation.arguments().length <= 1 ? List.of("stats") : List.of();
+    }
+}
@@ -1,28 +1,262 @@
 package com.digitalserverhost.plugins.proxy.velocity;
 
-import com.google.common.io.ByteArrayDataOutput;
-import com.google.common.io.ByteStreams;
+import com.digitalserverhost.plugins.control.ControlChannelConfig;
+import com.digitalserverhost.plugins.control.ControlClients;
+import com.digitalserverhost.plugins.protocol.BridgeCommand;
+import com.digitalserverhost.plugins.protocol.BridgeFrame;
+import com.digitalserverhost.plugins.protocol.BridgeProtocol;
+import com.digitalserverhost.plugins.protocol.TraceId;
+import com.digitalserverhost.plugins.proxy.BackendMonitor;
+import com.digitalserverhost.plugins.proxy.PendingSaves;
+import com.digitalserverhost.plugins.proxy.SwitchMetrics;
+import com.velocitypowered.api.event.EventTask;
 import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.DisconnectEvent;
+import com.velocitypowered.api.event.connection.PluginMessageEvent;
+import com.velocitypowered.api.event.player.KickedFromServerEvent;
+import com.velocitypowered.api.event.player.ServerPostConnectEvent;
 import com.velocitypowered.api.event.player.ServerPreConnectEvent;
+import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
 import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ServerConnection;
+import com.velocitypowered.api.proxy.messages.ChannelMessageSink;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 public class VelocityListener {
 
+    // Longest time a switch is held back waiting for the source server's save
+    private static final long SAVE_ACK_TIMEOUT_MS = 5000;
+    private static final long PING_INTERVAL_SECONDS = 10;
+    private static final long PING_TIMEOUT_MS = 3000;
+    private static final long METRICS_INTERVAL_SECONDS = 60;
+
     private final VelocityMCDataBridge plugin;
+    // Destination of each player's most recent switch, for forwarding handoffs
+    private final Map<UUID, RegisteredServer> pendingTargets = new ConcurrentHashMap<>();
+
+    private final ControlClients controlClients;
+    private final PendingSaves pendingSaves;
+    private final BackendMonitor backendMonitor;
+    private final SwitchMetrics switchMetrics = new SwitchMetrics();
 
-    public VelocityListener(VelocityMCDataBridge plugin) {
+    public VelocityListener(VelocityMCDataBridge plugin, ControlChannelConfig controlConfig) {
         this.plugin = plugin;
+        java.util.logging.Logger julLogger = java.util.logging.Logger.getLogger("mc-data-bridge");
+        this.controlClients = new ControlClients(controlConfig, this::handleBackendCommand, julLogger);
+        this.pendingSaves = new PendingSaves(SAVE_ACK_TIMEOUT_MS, controlClients::isConnected);
+        this.backendMonitor = new BackendMonitor(this::releaseLocksOf, julLogger);
+        plugin.getServer().getScheduler().buildTask(plugin, this::pingBackends)
+                .repeat(PING_INTERVAL_SECONDS, TimeUnit.SECONDS).schedule();
+        plugin.getServer().getScheduler().buildTask(plugin, this::writeMetrics)
+                .repeat(METRICS_INTERVAL_SECONDS, TimeUnit.SECONDS).schedule();
+    }
+
+    public SwitchMetrics getSwitchMetrics() {
+        return switchMetrics;
     }
 
     @Subscribe
-    public void onServerPreConnect(ServerPreConnectEvent event) {
+    public EventTask onServerPreConnect(ServerPreConnectEvent event) {
         Player player = event.getPlayer();
-        player.getCurrentServer().ifPresent(server -> {
-            plugin.getLogger().info("Player " + player.getUsername() + " is switching from " + server.getServerInfo().getName() + ". Requesting data save.");
-            ByteArrayDataOutput out = ByteStreams.newDataOutput();
-            out.writeUTF("SaveAndRelease");
-            out.writeUTF(player.getUniqueId().toString());
-            server.sendPluginMessage(plugin.getChannel(), out.toByteArray());
+        ServerConnection server = player.getCurrentServer().orElse(null);
+        if (server == null || !event.getResult().isAllowed()) {
+            return null;
+        }
+
+        UUID uuid = player.getUniqueId();
+        String source = server.getServerInfo().getName();
+        long traceId = TraceId.next();
+        String tag = TraceId.tag(traceId);
+        plugin.getLogger().info(tag + "Player " + player.getUsername() + " is switching from " + source + ". Requesting data save.");
+        RegisteredServer target = event.getResult().getServer().orElse(null);
+        if (target != null) {
+            pendingTargets.put(uuid, target);
+        }
+
+        if (!pendingSaves.expectsAck(source)) {
+            // An older backend never acknowledges the save; switch right away and
+            // let the destination wait for the lock, as before acknowledgements
+            send(server, source, BridgeCommand.saveAndRelease(uuid, 0, traceId));
+            if (target != null) {
+                send(target, target.getServerInfo().getName(), BridgeCommand.prefetch(uuid, traceId, 0, null));
+            }
+            return null;
+        }
+
+        PendingSaves.PendingSave saved = pendingSaves.begin(uuid, traceId);
+        send(server, source, BridgeCommand.saveAndRelease(uuid, saved.requestId(), traceId));
+        switchMetrics.onRequestSent(uuid, source, target != null ? target.getServerInfo().getName() : "unknown",
+                traceId);
+
+        // Hold the connection until the source has committed and released the
+        // lock, so the destination acquires it on its first attempt.
+        CompletableFuture<Void> continuation = saved.future().thenAccept(ack -> {
+            pendingSaves.finish(uuid, saved);
+            long saveWaitUs = (System.nanoTime() - saved.sentAt()) / 1000;
+            long version = ack != null ? ack.getVersion() : -1;
+            long elapsedMs = switchMetrics.onAck(uuid, version >= 0);
+            if (version >= 0) {
+                plugin.getLogger().info(tag + "Saved data for " + player.getUsername() + " (version " + version + ") in " + elapsedMs + " ms.");
+            } else {
+                plugin.getLogger().warning(tag + "No save acknowledgement for " + player.getUsername() + " after " + elapsedMs + " ms. Continuing the switch.");
+            }
+
+            // Let the destination start loading while the proxy connects the player,
+            // and tell it enough about the save to report the whole switch
+            if (target != null) {
+                send(target, target.getServerInfo().getName(), BridgeCommand.prefetch(uuid, traceId,
+                        saveWaitUs, ack != null ? ack.getTimings() : null));
+            }
         });
+        return EventTask.resumeWhenComplete(continuation);
+    }
+
+    @Subscribe
+    public void onPluginMessage(PluginMessageEvent event) {
+        if (!event.getIdentifier().equals(plugin.getChannel())) {
+            return;
+        }
+        // Never pass our channel through to the other side; in particular,
+        // clients must not be able to send SaveAndRelease or Handoff messages.
+        event.setResult(PluginMessageEvent.ForwardResult.handled());
+
+        if (!(event.getSource() instanceof ServerConnection source)) {
+            return;
+        }
+        BridgeFrame frame;
+        try {
+            frame = BridgeProtocol.decode(event.getData());
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Discarding malformed message from " + source.getServerInfo().getName() + ": " + e.getMessage());
+            return;
+        }
+        if (!frame.isLegacy()) {
+            pendingSaves.onFrame(source.getServerInfo().getName());
+        }
+
+        for (BridgeCommand command : frame.getCommands()) {
+            handleBackendCommand(source.getServerInfo().getName(), command);
+        }
+    }
+
+    /**
+     * Handles a command from a backend, received as a plugin message or over
+     * the control channel.
+     */
+    private void handleBackendCommand(String serverName, BridgeCommand command) {
+        UUID uuid = command.getUuid();
+        if (command.getType() == BridgeCommand.HELLO) {
+            backendMonitor.onHello(serverName, command.getServerId());
+        } else if (command.getType() == BridgeCommand.HANDOFF) {
+            RegisteredServer target = pendingTargets.get(uuid);
+            if (target != null) {
+                send(target, target.getServerInfo().getName(), command);
+            }
+        } else if (command.getType() == BridgeCommand.SAVED || command.getType() == BridgeCommand.LOCK_RELEASED) {
+            pendingSaves.onAck(command);
+        }
+    }
+
+    /**
+     * The player has finished joining the destination, including its lock
+     * acquire and data load.
+     */
+    @Subscribe
+    public void onServerPostConnect(ServerPostConnectEvent event) {
+        Player player = event.getPlayer();
+        player.getCurrentServer().ifPresent(
+                server -> switchMetrics.onConnected(player.getUniqueId(), server.getServerInfo().getName()));
+    }
+
+    @Subscribe
+    public void onDisconnect(DisconnectEvent event) {
+        UUID uuid = event.getPlayer().getUniqueId();
+        switchMetrics.onDisconnect(uuid);
+        pendingTargets.remove(uuid);
+        pendingSaves.cancel(uuid);
+    }
+
+    /**
+     * A kick is often the first sign of a crashed backend; check it right away
+     * rather than at the next scheduled ping.
+     */
+    @Subscribe
+    public void onKickedFromServer(KickedFromServerEvent event) {
+        String name = event.getServer().getServerInfo().getName();
+        if (backendMonitor.isUp(name)) {
+            ping(event.getServer());
+            plugin.getServer().getScheduler().buildTask(plugin, () -> ping(event.getServer()))
+                    .delay(1, TimeUnit.SECONDS).schedule();
+        }
+    }
+
+    private void writeMetrics() {
+        try {
+            switchMetrics.writeTo(plugin.getDataDirectory().resolve("switch-metrics.prom"));
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not write switch metrics: " + e.getMessage());
+        }
+    }
+
+    private void pingBackends() {
+        for (String name : backendMonitor.getKnownServers()) {
+            plugin.getServer().getServer(name).ifPresent(this::ping);
+        }
+    }
+
+    private void ping(RegisteredServer server) {
+        String name = server.getServerInfo().getName();
+        server.ping().orTimeout(PING_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .whenComplete((result, error) -> backendMonitor.onPing(name, error == null));
+    }
+
+    /**
+     * Asks one healthy backend to release the locks a crashed one still holds,
+     * so its players can join elsewhere without waiting for lock-timeout.
+     */
+    private void releaseLocksOf(String deadServer) {
+        BridgeCommand release = BridgeCommand.releaseServer(backendMonitor.getServerId(deadServer),
+                backendMonitor.getDownForMs(deadServer));
+        for (String candidate : backendMonitor.getKnownServers()) {
+            if (candidate.equals(deadServer) || !backendMonitor.isUp(candidate)) {
+                continue;
+            }
+            boolean sent = controlClients.send(candidate, release) || plugin.getServer().getServer(candidate)
+                    .map(server -> server.sendPluginMessage(plugin.getChannel(), BridgeProtocol.encode(release)))
+                    .orElse(false);
+            if (sent) {
+                plugin.getLogger().warning("Asked " + candidate + " to release the locks held by " + deadServer + ".");
+                return;
+            }
+        }
+        plugin.getLogger().warning("No reachable backend to release the locks held by " + deadServer + ". They expire after lock-timeout.");
+    }
+
+    @Subscribe
+    public void onProxyShutdown(ProxyShutdownEvent event) {
+        controlClients.close();
+    }
+
+    /**
+     * Sends a command over the control channel if the backend has one,
+     * otherwise as a plugin message in the newest format the backend is known
+     * to read. Commands without a legacy form are dropped for old backends.
+     */
+    private void send(ChannelMessageSink sink, String serverName, BridgeCommand command) {
+        if (controlClients.send(serverName, command)) {
+            return;
+        }
+        byte[] message = pendingSaves.isFramed(serverName) ? BridgeProtocol.encode(command)
+                : BridgeProtocol.encodeLegacy(command);
+        if (message != null) {
+            sink.sendPluginMessage(plugin.getChannel(), message);
+        }
     }
 }
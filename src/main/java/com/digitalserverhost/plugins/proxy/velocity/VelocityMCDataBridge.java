@@ -1,6 +1,8 @@
 package com.digitalserverhost.plugins.proxy.velocity;
 
+import com.digitalserverhost.plugins.control.ControlChannelConfig;
 import com.google.inject.Inject;
+import com.velocitypowered.api.plugin.annotation.DataDirectory;
 import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.proxy.ProxyServer;
 import org.slf4j.Logger;
@@ -8,24 +10,33 @@ import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
 import com.velocitypowered.api.proxy.messages.MinecraftChannelIdentifier;
 
+import java.nio.file.Path;
+
 @Plugin(id = "mc-data-bridge", name = "mc-data-bridge", version = "2.0.4", description = "A data bridge for Minecraft servers.", authors = {
         "DigitalServerHost" })
 public class VelocityMCDataBridge {
 
     private final ProxyServer server;
     private final Logger logger;
+    private final Path dataDirectory;
     private final MinecraftChannelIdentifier channel = MinecraftChannelIdentifier.create("mc-data-bridge", "main");
 
     @Inject
-    public VelocityMCDataBridge(ProxyServer server, Logger logger) {
+    public VelocityMCDataBridge(ProxyServer server, Logger logger, @DataDirectory Path dataDirectory) {
         this.server = server;
         this.logger = logger;
+        this.dataDirectory = dataDirectory;
     }
 
     @Subscribe
     public void onProxyInitialization(ProxyInitializeEvent event) {
         server.getChannelRegistrar().register(channel);
-        server.getEventManager().register(this, new VelocityListener(this));
+        ControlChannelConfig controlConfig = ControlChannelConfig.load(dataDirectory,
+                java.util.logging.Logger.getLogger("mc-data-bridge"));
+        VelocityListener listener = new VelocityListener(this, controlConfig);
+        server.getEventManager().register(this, listener);
+        server.getCommandManager().register(server.getCommandManager().metaBuilder("dbproxy").build(),
+                new VelocityBridgeCommand(listener));
         logger.info("mc-data-bridge has been enabled on Velocity!");
     }
 
@@ -37,6 +48,10 @@ public class VelocityMCDataBridge {
         return channel;
     }
 
+    public Path getDataDirectory() {
+        return dataDirectory;
+    }
+
     public Logger getLogger() {
         return logger;
     }
@@ -0,0 +1,39 @@
+package com.digitalserverhost.plugins.utils;
+
+import java.util.Locale;
+
+/**
+ * The parts of a saved {@link PlayerData} whose encoded size is tracked.
+ */
+public enum PayloadSection {
+    INVENTORY("inventoryContentsNBT"),
+    ARMOR("armorContentsNBT"),
+    ENDER_CHEST("enderChestContentsNBT"),
+    EFFECTS("potionEffects"),
+    ADVANCEMENTS("advancements"),
+    RECIPES("discoveredRecipes"),
+    OTHER(null);
+
+    private final String field;
+    private final String label = name().toLowerCase(Locale.ROOT);
+
+    PayloadSection(String field) {
+        this.field = field;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return the section a PlayerData JSON field belongs to.
+     */
+    public static PayloadSection ofField(String field) {
+        for (PayloadSection section : values()) {
+            if (field.equals(section.field)) {
+                return section;
+            }
+        }
+        return OTHER;
+    }
+}
@@ -1,6 +1,8 @@
 package com.digitalserverhost.plugins.utils;
 
 import com.digitalserverhost.plugins.MCDataBridge;
+import com.digitalserverhost.plugins.metrics.MainThreadBudget.Section;
+import com.digitalserverhost.plugins.metrics.MainThreadBudget.SectionTimer;
 import com.google.gson.Gson;
 import de.tr7zw.changeme.nbtapi.NBTContainer;
 import de.tr7zw.changeme.nbtapi.NBTItem;
@@ -56,6 +58,15 @@ public class PlayerData {
     }
 
     public PlayerData(Player player, MCDataBridge plugin) {
+        this(player, plugin, null);
+    }
+
+    /**
+     * Snapshots a live player's data, reporting the time of each section to
+     * the timer if one is given.
+     */
+    public PlayerData(Player player, MCDataBridge plugin, SectionTimer timer) {
+        long lap = System.nanoTime();
         if (plugin.isSyncEnabled("health"))
             this.health = player.getHealth();
         if (plugin.isSyncEnabled("food-level")) {
@@ -68,19 +79,32 @@ public class PlayerData {
             this.exp = player.getExp();
             this.level = player.getLevel();
         }
+        if (plugin.isSyncEnabledNewFeature("location")) {
+            this.world = player.getWorld().getName();
+            this.x = player.getLocation().getX();
+            this.y = player.getLocation().getY();
+            this.z = player.getLocation().getZ();
+            this.yaw = player.getLocation().getYaw();
+            this.pitch = player.getLocation().getPitch();
+        }
+        lap = lap(timer, Section.OTHER, lap);
+
         // These are more expensive, so skipping them saves performance too
         if (plugin.isSyncEnabled("inventory"))
             this.inventoryContentsNBT = serializeItemStackArray(player.getInventory().getContents());
         if (plugin.isSyncEnabled("armor"))
             this.armorContentsNBT = serializeItemStackArray(player.getInventory().getArmorContents());
+        lap = lap(timer, Section.INVENTORY, lap);
         if (plugin.isSyncEnabled("potion-effects"))
             this.potionEffects = convertPotionEffectArrayToSerializable(
                     player.getActivePotionEffects().toArray(new PotionEffect[0]));
+        lap = lap(timer, Section.EFFECTS, lap);
 
         // New Features
         if (plugin.isSyncEnabledNewFeature("ender-chest")) {
             this.enderChestContentsNBT = serializeItemStackArray(player.getEnderChest().getContents());
         }
+        lap = lap(timer, Section.ENDER_CHEST, lap);
 
         if (plugin.isSyncEnabledNewFeature("advancements")) {
             this.discoveredRecipes = new ArrayList<>();
@@ -99,15 +123,15 @@ public class PlayerData {
                 }
             }
         }
+        lap(timer, Section.ADVANCEMENTS, lap);
+    }
 
-        if (plugin.isSyncEnabledNewFeature("location")) {
-            this.world = player.getWorld().getName();
-            this.x = player.getLocation().getX();
-            this.y = player.getLocation().getY();
-            this.z = player.getLocation().getZ();
-            this.yaw = player.getLocation().getYaw();
-            this.pitch = player.getLocation().getPitch();
+    private static long lap(SectionTimer timer, Section section, long start) {
+        long now = System.nanoTime();
+        if (timer != null) {
+            timer.record(section, now - start);
         }
+        return now;
     }
 
     private List<String> serializeItemStackArray(ItemStack[] items) {
@@ -0,0 +1,148 @@
+package com.digitalserverhost.plugins.utils;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A JsonWriter that attributes the UTF-8 bytes it writes to the top-level
+ * field they belong to, so the size of every {@link PayloadSection} is known
+ * from the single serialization pass the save does anyway.
+ */
+public class SectionSizingWriter extends JsonWriter {
+
+    private final CountingWriter counter;
+    private final long[] sizes = new long[PayloadSection.values().length];
+    private PayloadSection current = PayloadSection.OTHER;
+    private long mark;
+    private int depth;
+
+    public SectionSizingWriter(Writer out) {
+        this(new CountingWriter(out));
+    }
+
+    private SectionSizingWriter(CountingWriter counter) {
+        super(counter);
+        this.counter = counter;
+    }
+
+    /**
+     * @return bytes written per section, indexed by
+     *         {@link PayloadSection#ordinal()}. Punctuation and field names are
+     *         included in the section they introduce.
+     */
+    public long[] getSizes() {
+        return sizes;
+    }
+
+    public long getTotal() {
+        return counter.bytes;
+    }
+
+    @Override
+    public JsonWriter name(String name) throws IOException {
+        if (depth == 1) {
+            attribute();
+            current = PayloadSection.ofField(name);
+        }
+        return super.name(name);
+    }
+
+    @Override
+    public JsonWriter beginObject() throws IOException {
+        JsonWriter writer = super.beginObject();
+        depth++;
+        return writer;
+    }
+
+    @Override
+    public JsonWriter endObject() throws IOException {
+        if (depth == 1) {
+            attribute();
+            current = PayloadSection.OTHER;
+        }
+        depth--;
+        JsonWriter writer = super.endObject();
+        if (depth == 0) {
+            attribute();
+        }
+        return writer;
+    }
+
+    @Override
+    public JsonWriter beginArray() throws IOException {
+        JsonWriter writer = super.beginArray();
+        depth++;
+        return writer;
+    }
+
+    @Override
+    public JsonWriter endArray() throws IOException {
+        depth--;
+        return super.endArray();
+    }
+
+    @Override
+    public void close() throws IOException {
+        attribute();
+        super.close();
+    }
+
+    private void attribute() {
+        sizes[current.ordinal()] += counter.bytes - mark;
+        mark = counter.bytes;
+    }
+
+    private static class CountingWriter extends Writer {
+        private final Writer out;
+        private long bytes;
+
+        private CountingWriter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            bytes += utf8Length((char) c);
+            out.write(c);
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                bytes += utf8Length(buffer[i]);
+            }
+            out.write(buffer, offset, length);
+        }
+
+        @Override
+        public void write(String text, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                bytes += utf8Length(text.charAt(i));
+            }
+            out.write(text, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        // Each half of a surrogate pair counts 2, for 4 bytes per pair
+        private static int utf8Length(char c) {
+            if (c < 0x80) {
+                return 1;
+            }
+            if (c < 0x800 || Character.isSurrogate(c)) {
+                return 2;
+            }
+            return 3;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.digitalserverhost.plugins.control;
+
+import com.digitalserverhost.plugins.protocol.BridgeCommand;
+import com.digitalserverhost.plugins.protocol.BridgeProtocol;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ControlChannelTest {
+
+    private final Logger logger = Logger.getLogger("MCDataBridge");
+    private final BlockingQueue<BridgeCommand> serverReceived = new LinkedBlockingQueue<>();
+    private final BlockingQueue<BridgeCommand> clientReceived = new LinkedBlockingQueue<>();
+    private ControlServer server;
+    private ControlClient client;
+
+    @AfterEach
+    void tearDown() {
+        if (client != null) {
+            client.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private void startServer() throws IOException {
+        server = new ControlServer("127.0.0.1", 0, "s3cret", serverReceived::add, logger);
+        server.start();
+    }
+
+    private void awaitConnected() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!(client.isConnected() && server.hasSessions()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void testCommandsFlowBothWaysOverLoopback() throws Exception {
+        startServer();
+        client = new ControlClient("lobby", "127.0.0.1", server.getPort(), "s3cret", clientReceived::add, logger);
+        client.start();
+        awaitConnected();
+        assertTrue(client.isConnected());
+
+        UUID uuid = UUID.randomUUID();
+        assertTrue(client.send(BridgeCommand.saveAndRelease(uuid, 9)));
+        BridgeCommand request = serverReceived.poll(5, TimeUnit.SECONDS);
+        assertNotNull(request);
+        assertEquals(BridgeCommand.SAVE_AND_RELEASE, request.getType());
+        assertEquals(uuid, request.getUuid());
+        assertEquals(9, request.getRequestId());
+
+        assertTrue(server.broadcast(BridgeCommand.saved(uuid, 9, 3L)));
+        BridgeCommand ack = clientReceived.poll(5, TimeUnit.SECONDS);
+        assertNotNull(ack);
+        assertEquals(BridgeCommand.SAVED, ack.getType());
+        assertEquals(3L, ack.getVersion());
+    }
+
+    @Test
+    void testWrongSecretIsRejected() throws Exception {
+        startServer();
+        client = new ControlClient("lobby", "127.0.0.1", server.getPort(), "wrong", clientReceived::add, logger);
+        client.start();
+
+        Thread.sleep(500);
+
+        assertFalse(client.isConnected());
+        assertFalse(server.hasSessions());
+        assertFalse(client.send(BridgeCommand.prefetch(UUID.randomUUID())));
+    }
+
+    @Test
+    void testWrongSecretIsRejectedInBothDirections() throws Exception {
+        // A proxy with the wrong secret is turned away by the backend
+        startServer();
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            assertThrows(IOException.class, () -> ControlConnection.connect(socket, "wrong"));
+        }
+        assertFalse(server.hasSessions());
+
+        // A backend with the wrong secret is turned away by the proxy, even
+        // though the proxy proved itself first
+        try (ServerSocket impostor = new ServerSocket(0)) {
+            CompletableFuture<Void> backend = CompletableFuture.runAsync(() -> {
+                try (Socket socket = impostor.accept()) {
+                    DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+                    out.writeInt(0x4D434442);
+                    out.writeByte(BridgeProtocol.VERSION);
+                    out.write(new byte[32]);
+                    in.readFully(new byte[32]); // The proxy's proof
+                    byte[] proxyNonce = new byte[32];
+                    in.readFully(proxyNonce);
+                    out.write(ControlConnection.sign("wrong", "backend".getBytes(StandardCharsets.US_ASCII),
+                            proxyNonce));
+                    out.flush();
+                    in.read(); // Until the proxy hangs up
+                } catch (IOException ignored) {
+                }
+            });
+            try (Socket socket = new Socket("127.0.0.1", impostor.getLocalPort())) {
+                IOException e = assertThrows(IOException.class, () -> ControlConnection.connect(socket, "s3cret"));
+                assertEquals("Backend failed authentication", e.getMessage());
+            }
+            backend.get(5, TimeUnit.SECONDS);
+        }
+    }
+}
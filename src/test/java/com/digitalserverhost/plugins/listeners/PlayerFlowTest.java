@@ -5,6 +5,8 @@ import be.seeseemelk.mockbukkit.ServerMock;
 import be.seeseemelk.mockbukkit.entity.PlayerMock;
 import com.digitalserverhost.plugins.MCDataBridge;
 import com.digitalserverhost.plugins.managers.DatabaseManager;
+import com.digitalserverhost.plugins.protocol.BridgeCommand;
+import com.digitalserverhost.plugins.protocol.BridgeProtocol;
 import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
@@ -23,6 +25,8 @@ import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -53,6 +57,7 @@ class PlayerFlowTest {
         lenient().when(mockPlugin.getServerId()).thenReturn("test-server");
         lenient().when(mockPlugin.getLockHeartbeatSeconds()).thenReturn(30);
         lenient().when(mockPlugin.isDebugMode()).thenReturn(true);
+        lenient().when(mockPlugin.awaitSchemaReady()).thenReturn(true);
     }
 
     @AfterEach
@@ -78,7 +83,7 @@ class PlayerFlowTest {
 
         // Mocks for DB
         when(mockDatabaseManager.getTableName()).thenReturn("`player_data`");
-        when(mockDatabaseManager.acquireLock(eq(uuid), anyString())).thenReturn(true);
+        when(mockDatabaseManager.acquireLock(eq(uuid), anyString(), anyInt())).thenReturn(true);
         when(mockDatabaseManager.getConnection()).thenReturn(mockConnection);
         when(mockConnection.prepareStatement(anyString())).thenReturn(mockStatement);
         when(mockStatement.executeQuery()).thenReturn(mockResultSet);
@@ -95,7 +100,7 @@ class PlayerFlowTest {
 
         // Verify
         assertEquals(AsyncPlayerPreLoginEvent.Result.ALLOWED, event.getLoginResult());
-        verify(mockDatabaseManager).acquireLock(eq(uuid), anyString());
+        verify(mockDatabaseManager).acquireLock(eq(uuid), anyString(), anyInt());
     }
 
     @Test
@@ -106,7 +111,7 @@ class PlayerFlowTest {
 
         PlayerListener listener = new PlayerListener(mockDatabaseManager, mockPlugin);
 
-        lenient().when(mockDatabaseManager.acquireLock(any(UUID.class), anyString())).thenReturn(true);
+        lenient().when(mockDatabaseManager.acquireLock(any(UUID.class), anyString(), anyInt())).thenReturn(true);
         lenient().when(mockDatabaseManager.getTableName()).thenReturn("`player_data`");
         try {
             lenient().when(mockDatabaseManager.getConnection()).thenReturn(mockConnection);
@@ -132,7 +137,7 @@ class PlayerFlowTest {
     void testSaveOnQuit() throws Exception {
         PlayerListener listener = new PlayerListener(mockDatabaseManager, mockPlugin);
 
-        lenient().when(mockDatabaseManager.acquireLock(any(UUID.class), anyString())).thenReturn(true);
+        lenient().when(mockDatabaseManager.acquireLock(any(UUID.class), anyString(), anyInt())).thenReturn(true);
         lenient().when(mockDatabaseManager.getTableName()).thenReturn("`player_data`");
         lenient().when(mockDatabaseManager.getConnection()).thenReturn(mockConnection);
         lenient().when(mockConnection.prepareStatement(anyString())).thenReturn(mockStatement);
@@ -141,7 +146,8 @@ class PlayerFlowTest {
 
         PlayerMock player = server.addPlayer();
 
-        when(mockDatabaseManager.saveAndReleaseLock(anyString(), eq(player.getUniqueId()), anyString()))
+        when(mockDatabaseManager.saveAndReleaseLock(anyString(), eq(player.getUniqueId()), anyString(),
+                anyLong()))
                 .thenReturn(true);
 
         @SuppressWarnings("deprecation")
@@ -151,7 +157,7 @@ class PlayerFlowTest {
 
         // Verify async save call with timeout
         verify(mockDatabaseManager, timeout(2000)).saveAndReleaseLock(anyString(), eq(player.getUniqueId()),
-                anyString());
+                anyString(), anyLong());
     }
 
     @Test
@@ -163,7 +169,7 @@ class PlayerFlowTest {
         PlayerListener listener = new PlayerListener(mockDatabaseManager, mockPlugin);
 
         // Setup passing checks
-        lenient().when(mockDatabaseManager.acquireLock(any(UUID.class), anyString())).thenReturn(true);
+        lenient().when(mockDatabaseManager.acquireLock(any(UUID.class), anyString(), anyInt())).thenReturn(true);
         lenient().when(mockDatabaseManager.getTableName()).thenReturn("`player_data`");
         lenient().when(mockDatabaseManager.getConnection()).thenReturn(mockConnection);
         lenient().when(mockConnection.prepareStatement(anyString())).thenReturn(mockStatement);
@@ -188,7 +194,7 @@ class PlayerFlowTest {
 
         // Wait for save to complete (async)
         verify(mockDatabaseManager, timeout(2000)).saveAndReleaseLock(anyString(), eq(player.getUniqueId()),
-                anyString());
+                anyString(), anyLong());
 
         // 3. Advance time again -> Heartbeat should NOT run
         server.getScheduler().performTicks(30 * 20L + 50);
@@ -212,7 +218,56 @@ class PlayerFlowTest {
 
         listener.onAsyncPlayerPreLogin(event);
 
-        verify(mockDatabaseManager, never()).acquireLock(any(UUID.class), anyString());
+        verify(mockDatabaseManager, never()).acquireLock(any(UUID.class), anyString(), anyInt());
+    }
+
+    @Test
+    void testPreLoginRejectedWhileSchemaNotReady() throws Exception {
+        when(mockPlugin.awaitSchemaReady()).thenReturn(false);
+
+        PlayerListener listener = new PlayerListener(mockDatabaseManager, mockPlugin);
+
+        UUID uuid = UUID.randomUUID();
+        @SuppressWarnings("deprecation")
+        AsyncPlayerPreLoginEvent event = new AsyncPlayerPreLoginEvent(
+                "TestPlayer", InetAddress.getLoopbackAddress(), uuid);
+
+        listener.onAsyncPlayerPreLogin(event);
+
+        assertEquals(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, event.getLoginResult());
+        verify(mockDatabaseManager, never()).acquireLock(any(UUID.class), anyString(), anyInt());
+    }
+
+    @Test
+    void testPrefetchIsUsedByPreLogin() throws Exception {
+        when(mockPlugin.isPrefetchEnabled()).thenReturn(true);
+        when(mockPlugin.getPrefetchTtlMs()).thenReturn(10000L);
+
+        PlayerListener listener = new PlayerListener(mockDatabaseManager, mockPlugin);
+        UUID uuid = UUID.randomUUID();
+
+        when(mockDatabaseManager.getTableName()).thenReturn("`player_data`");
+        when(mockDatabaseManager.acquireLock(eq(uuid), anyString(), anyInt())).thenReturn(true);
+        when(mockDatabaseManager.getConnection()).thenReturn(mockConnection);
+        when(mockConnection.prepareStatement(anyString())).thenReturn(mockStatement);
+        when(mockStatement.executeQuery()).thenReturn(mockResultSet);
+        // isLockOwner -> owned, data load -> no row yet
+        when(mockResultSet.next()).thenReturn(true).thenReturn(false);
+        when(mockResultSet.getString("locking_server")).thenReturn("test-server");
+
+        // The proxy announces the incoming player through someone already online
+        PlayerMock carrier = server.addPlayer();
+        byte[] prefetch = BridgeProtocol.encode(BridgeCommand.prefetch(uuid));
+        listener.onPluginMessageReceived("mc-data-bridge:main", carrier, prefetch);
+
+        @SuppressWarnings("deprecation")
+        AsyncPlayerPreLoginEvent event = new AsyncPlayerPreLoginEvent(
+                "TestPlayer", InetAddress.getLoopbackAddress(), uuid);
+        listener.onAsyncPlayerPreLogin(event);
+
+        assertEquals(AsyncPlayerPreLoginEvent.Result.ALLOWED, event.getLoginResult());
+        // The lock was taken once, by the prefetch; pre-login reused it
+        verify(mockDatabaseManager, times(1)).acquireLock(eq(uuid), anyString(), anyInt());
     }
 
     @Test
@@ -220,7 +275,7 @@ class PlayerFlowTest {
         PlayerListener listener = new PlayerListener(mockDatabaseManager, mockPlugin);
 
         // Setup passing checks for save
-        lenient().when(mockDatabaseManager.saveAndReleaseLock(anyString(), any(UUID.class), anyString()))
+        lenient().when(mockDatabaseManager.saveAndReleaseLock(anyString(), any(UUID.class), anyString(), anyLong()))
                 .thenReturn(true);
 
         PlayerMock player = server.addPlayer();
@@ -236,7 +291,7 @@ class PlayerFlowTest {
         // 1. Receive Message -> Triggers async save
         listener.onPluginMessageReceived("mc-data-bridge:main", player, message);
 
-        verify(mockDatabaseManager, timeout(2000)).saveAndReleaseLock(anyString(), eq(uuid), anyString());
+        verify(mockDatabaseManager, timeout(2000)).saveAndReleaseLock(anyString(), eq(uuid), anyString(), anyLong());
 
         // Clear invocations to verify Quit behavior
         clearInvocations(mockDatabaseManager);
@@ -247,6 +302,22 @@ class PlayerFlowTest {
         listener.onPlayerQuit(quitEvent);
 
         // Verify save was NOT called again
-        verify(mockDatabaseManager, never()).saveAndReleaseLock(anyString(), eq(uuid), anyString());
+        verify(mockDatabaseManager, never()).saveAndReleaseLock(anyString(), eq(uuid), anyString(), anyLong());
+    }
+
+    @Test
+    void testSwitchSaveStoresTheProxysTraceId() throws Exception {
+        PlayerListener listener = new PlayerListener(mockDatabaseManager, mockPlugin);
+        lenient().when(mockDatabaseManager.saveAndReleaseLock(anyString(), any(UUID.class), anyString(), anyLong()))
+                .thenReturn(true);
+
+        PlayerMock player = server.addPlayer();
+        UUID uuid = player.getUniqueId();
+        byte[] message = BridgeProtocol.encode(BridgeCommand.saveAndRelease(uuid, 3, 0xABCDEFL));
+
+        listener.onPluginMessageReceived("mc-data-bridge:main", player, message);
+
+        verify(mockDatabaseManager, timeout(2000)).saveAndReleaseLock(anyString(), eq(uuid), anyString(),
+                eq(0xABCDEFL));
     }
 }
@@ -18,6 +18,7 @@ import java.util.UUID;
 import java.util.logging.Logger;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -50,6 +51,7 @@ class PlayerSyncTest {
         lenient().when(mockPlugin.getServerId()).thenReturn("test-server");
         lenient().when(mockPlugin.getLockHeartbeatSeconds()).thenReturn(30);
         lenient().when(mockPlugin.isDebugMode()).thenReturn(true);
+        lenient().when(mockPlugin.awaitSchemaReady()).thenReturn(true);
         lenient().when(mockPlugin.getServer()).thenReturn(mockServer);
         lenient().when(mockServer.getScheduler()).thenReturn(mockScheduler);
 
@@ -81,7 +83,7 @@ class PlayerSyncTest {
 
         UUID targetUuid = UUID.randomUUID();
         when(mockDatabaseManager.getTableName()).thenReturn("`player_data`");
-        when(mockDatabaseManager.acquireLock(eq(targetUuid), anyString())).thenReturn(true);
+        when(mockDatabaseManager.acquireLock(eq(targetUuid), anyString(), anyInt())).thenReturn(true);
         when(mockDatabaseManager.getConnection()).thenReturn(mockConnection);
         when(mockConnection.prepareStatement(anyString())).thenReturn(mockStatement);
         when(mockStatement.executeQuery()).thenReturn(mockResultSet);
@@ -150,7 +152,7 @@ class PlayerSyncTest {
 
         UUID targetUuid = UUID.randomUUID();
         when(mockDatabaseManager.getTableName()).thenReturn("`player_data`");
-        when(mockDatabaseManager.acquireLock(eq(targetUuid), anyString())).thenReturn(true);
+        when(mockDatabaseManager.acquireLock(eq(targetUuid), anyString(), anyInt())).thenReturn(true);
         when(mockDatabaseManager.getConnection()).thenReturn(mockConnection);
         when(mockConnection.prepareStatement(anyString())).thenReturn(mockStatement);
         when(mockStatement.executeQuery()).thenReturn(mockResultSet);
@@ -213,7 +215,7 @@ class PlayerSyncTest {
         UUID targetUuid = UUID.randomUUID();
 
         when(mockDatabaseManager.getTableName()).thenReturn("`player_data`");
-        when(mockDatabaseManager.acquireLock(eq(targetUuid), anyString())).thenReturn(true);
+        when(mockDatabaseManager.acquireLock(eq(targetUuid), anyString(), anyInt())).thenReturn(true);
         when(mockDatabaseManager.getConnection()).thenReturn(mockConnection);
         when(mockConnection.prepareStatement(anyString())).thenReturn(mockStatement);
         when(mockStatement.executeQuery()).thenReturn(mockResultSet);
@@ -1,5 +1,7 @@
 package com.digitalserverhost.plugins.managers;
 
+import com.digitalserverhost.plugins.metrics.MetricsRegistry;
+import com.digitalserverhost.plugins.metrics.StatementStats;
 import com.zaxxer.hikari.HikariDataSource;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -7,11 +9,22 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -109,10 +122,186 @@ public class DatabaseManagerTest {
 
         assertTrue(result);
         verify(mockConnection).prepareStatement(contains("UPDATE `player_data` SET data = ?"));
+        verify(mockConnection).prepareStatement(contains("data_version = data_version + 1"));
         // cannot easily verify setBytes with argument matchers for specific content but
         // we verify interactions
-        verify(mockStatement).setString(2, uuid.toString());
-        verify(mockStatement).setString(3, serverId);
+        verify(mockStatement).setInt(2, json.length()); // data_size
+        verify(mockStatement).setNull(3, Types.BIGINT); // trace_id, not part of a switch
+        verify(mockStatement).setString(4, uuid.toString());
+        verify(mockStatement).setString(5, serverId);
+    }
+
+    @Test
+    void testSaveAndReleaseLock_StoresTraceId() throws SQLException {
+        when(mockStatement.executeUpdate()).thenReturn(1);
+
+        assertTrue(databaseManager.saveAndReleaseLock("{}", uuid, serverId, 0x1234L));
+
+        verify(mockConnection).prepareStatement(contains("trace_id = ?"));
+        verify(mockStatement).setLong(3, 0x1234L);
+    }
+
+    @Test
+    void testFindLargestPayloads() throws SQLException {
+        UUID other = UUID.randomUUID();
+        when(mockStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true, true, false);
+        when(mockResultSet.getString("uuid")).thenReturn(uuid.toString(), other.toString());
+        when(mockResultSet.getLong("data_size")).thenReturn(90000L, 4000L);
+        when(mockResultSet.getString("locking_server")).thenReturn(serverId, null);
+
+        List<DatabaseManager.PayloadSize> largest = databaseManager.findLargestPayloads(2);
+
+        verify(mockConnection).prepareStatement(contains("ORDER BY data_size DESC LIMIT ?"));
+        verify(mockStatement).setInt(1, 2);
+        assertEquals(2, largest.size());
+        assertEquals(new DatabaseManager.PayloadSize(uuid, 90000L, serverId), largest.get(0));
+        assertEquals(new DatabaseManager.PayloadSize(other, 4000L, null), largest.get(1));
+    }
+
+    @Test
+    void testSaveAndReleaseLock_EmitsFlightRecorderEvent() throws Exception {
+        when(mockStatement.executeUpdate()).thenReturn(1);
+
+        Path dump = Files.createTempFile("mcdb", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("mcdatabridge.DataSave").withThreshold(Duration.ZERO);
+            recording.start();
+            databaseManager.saveAndReleaseLock("{}", uuid, serverId);
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        Files.deleteIfExists(dump);
+        assertEquals(1, events.size());
+        assertEquals(uuid.toString(), events.get(0).getString("player"));
+        assertEquals(serverId, events.get(0).getString("serverId"));
+        assertEquals(2, events.get(0).getLong("bytes"));
+        assertTrue(events.get(0).getBoolean("saved"));
+    }
+
+    @Test
+    void testReleaseServerLocks_FencedByLockTimestampInBatches() throws Exception {
+        when(mockStatement.executeUpdate()).thenReturn(2, 1);
+
+        int released = databaseManager.releaseServerLocks("crashed-server", 1000L, 2, 0);
+
+        assertEquals(3, released);
+        verify(mockConnection, times(2)).prepareStatement(contains("WHERE locking_server = ? AND lock_timestamp < ? LIMIT ?"));
+        verify(mockStatement, times(2)).setString(1, "crashed-server");
+        verify(mockStatement, times(2)).setLong(2, 1000L);
+        verify(mockStatement, times(2)).setInt(3, 2);
+    }
+
+    @Test
+    void testFindLocks_PagesOneServerInIndexOrder() throws SQLException {
+        when(mockStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true, false);
+        when(mockResultSet.getString("uuid")).thenReturn(uuid.toString());
+        when(mockResultSet.getString("locking_server")).thenReturn(serverId);
+        when(mockResultSet.getLong("lock_timestamp")).thenReturn(1234L);
+
+        List<DatabaseManager.HeldLock> locks = databaseManager.findLocks(serverId, 10, 20);
+
+        assertEquals(List.of(new DatabaseManager.HeldLock(uuid, serverId, 1234L)), locks);
+        verify(mockConnection).prepareStatement(contains(
+                "WHERE locking_server = ? AND is_locked = 1 ORDER BY locking_server, lock_timestamp LIMIT ? OFFSET ?"));
+        verify(mockStatement).setString(1, serverId);
+        verify(mockStatement).setInt(2, 10);
+        verify(mockStatement).setInt(3, 20);
+    }
+
+    @Test
+    void testCountLocks_EveryServer() throws SQLException {
+        when(mockStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true);
+        when(mockResultSet.getInt(1)).thenReturn(42);
+
+        assertEquals(42, databaseManager.countLocks(null));
+        verify(mockConnection).prepareStatement(contains("WHERE locking_server IS NOT NULL AND is_locked = 1"));
+        verify(mockStatement, never()).setString(anyInt(), anyString());
+    }
+
+    @Test
+    void testReleaseExpiredLocks_OnlyTheHoldersExpiredLocks() throws Exception {
+        when(mockStatement.executeUpdate()).thenReturn(3);
+
+        int released = databaseManager.releaseExpiredLocks("crashed-server", 1000L, 100, 0);
+
+        assertEquals(3, released);
+        verify(mockConnection).prepareStatement(contains("WHERE locking_server = ? AND lock_timestamp < ? LIMIT ?"));
+        verify(mockStatement).setString(1, "crashed-server");
+        verify(mockStatement).setLong(2, 1000L);
+        verify(mockStatement).setInt(3, 100);
+    }
+
+    @Test
+    void testFindUuidByName_QueriesNameTableCaseInsensitively() throws SQLException {
+        when(mockStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true);
+        when(mockResultSet.getString(1)).thenReturn(uuid.toString());
+
+        assertEquals(uuid, databaseManager.findUuidByName("Notch"));
+        verify(mockConnection).prepareStatement(contains("FROM `player_data_names` WHERE name_lower = ?"));
+        verify(mockStatement).setString(1, "notch");
+    }
+
+    @Test
+    void testReleaseLocksByServer_LoopsUntilABatchComesUpShort() throws Exception {
+        when(mockStatement.executeUpdate()).thenReturn(2, 2, 1);
+        List<Integer> progress = new ArrayList<>();
+
+        int released = databaseManager.releaseLocksByServer("crashed-server", 2, 0, progress::add);
+
+        assertEquals(5, released);
+        assertEquals(List.of(2, 4, 5), progress);
+        verify(mockConnection, times(3)).prepareStatement(contains("WHERE locking_server = ? LIMIT ?"));
+        verify(mockStatement, times(3)).setString(1, "crashed-server");
+        verify(mockStatement, times(3)).setInt(2, 2);
+    }
+
+    @Test
+    void testReleaseLocksNotRefreshedSince_OneHolderAtATime() throws Exception {
+        when(mockStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true, true, false);
+        when(mockResultSet.getString(1)).thenReturn("server-a", "server-b");
+        when(mockStatement.executeUpdate()).thenReturn(2, 0);
+        List<Integer> progress = new ArrayList<>();
+
+        int released = databaseManager.releaseLocksNotRefreshedSince(1000L, 100, 0, progress::add);
+
+        assertEquals(2, released);
+        assertEquals(List.of(2), progress);
+        verify(mockConnection, times(2)).prepareStatement(
+                contains("WHERE locking_server = ? AND lock_timestamp < ? AND is_locked = 1 LIMIT ?"));
+        verify(mockStatement).setString(1, "server-a");
+        verify(mockStatement).setString(1, "server-b");
+        verify(mockStatement, times(2)).setLong(2, 1000L);
+        verify(mockStatement, times(2)).setInt(3, 100);
+    }
+
+    @Test
+    void testReleaseLocks_OneStatementPerBatchOfPlayers() throws Exception {
+        when(mockStatement.executeUpdate()).thenReturn(2, 1);
+        List<UUID> players = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+        StatementStats stats = new StatementStats(new MetricsRegistry(), Logger.getLogger("DatabaseManagerTest"));
+        databaseManager = new DatabaseManager(mockDataSource, "player_data", 60000, stats);
+
+        int released = databaseManager.releaseLocks(players, 2, 0, count -> {
+        });
+
+        assertEquals(3, released);
+        verify(mockConnection).prepareStatement(contains("WHERE uuid IN (?, ?) AND is_locked = 1"));
+        verify(mockConnection).prepareStatement(contains("WHERE uuid IN (?) AND is_locked = 1"));
+        verify(mockStatement).setString(1, players.get(2).toString());
+        // Both batch sizes are timed as one statement
+        assertTrue(stats.report().contains("  UPDATE `player_data` SET is_locked = 0, locking_server = NULL,"
+                + " lock_timestamp = 0 WHERE uuid IN (?, ...) AND is_locked = 1"));
+        List<String> report = stats.report();
+        assertEquals(2, report.size());
+        assertTrue(report.get(0).startsWith("bulk_release_players: "));
+        assertTrue(report.get(0).contains("rows=3"));
     }
 
     @Test
@@ -0,0 +1,73 @@
+package com.digitalserverhost.plugins.managers;
+
+import com.digitalserverhost.plugins.protocol.BridgeCommand;
+import com.digitalserverhost.plugins.protocol.BridgeProtocol;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HandoffManagerTest {
+
+    private final UUID uuid = UUID.randomUUID();
+
+    private void deliver(HandoffManager manager, byte[] message) throws IOException {
+        List<BridgeCommand> commands = BridgeProtocol.decode(message).getCommands();
+        assertEquals(1, commands.size());
+        manager.accept(commands.get(0));
+    }
+
+    @Test
+    void testRoundTrip_MultipleChunksOutOfOrder() throws IOException {
+        // Random content does not compress, so this spans several chunks
+        StringBuilder json = new StringBuilder();
+        Random random = new Random(42);
+        for (int i = 0; i < HandoffManager.CHUNK_SIZE * 2; i++) {
+            json.append((char) ('a' + random.nextInt(26)));
+        }
+
+        List<byte[]> messages = new ArrayList<>(HandoffManager.encode(uuid, 7, json.toString()));
+        assertTrue(messages.size() > 1);
+        for (byte[] message : messages) {
+            assertTrue(message.length < 32767);
+        }
+        Collections.reverse(messages);
+
+        HandoffManager manager = new HandoffManager();
+        for (byte[] message : messages) {
+            deliver(manager, message);
+        }
+
+        assertEquals(json.toString(), manager.take(uuid, 7));
+        assertNull(manager.take(uuid, 7)); // Claimed only once
+    }
+
+    @Test
+    void testTake_VersionMismatchFallsBack() throws IOException {
+        HandoffManager manager = new HandoffManager();
+        for (byte[] message : HandoffManager.encode(uuid, 3, "{\"health\":20.0}")) {
+            deliver(manager, message);
+        }
+
+        assertNull(manager.take(uuid, 4));
+    }
+
+    @Test
+    void testTake_IncompleteSnapshotIsIgnored() throws IOException {
+        HandoffManager manager = new HandoffManager();
+        StringBuilder json = new StringBuilder();
+        Random random = new Random(7);
+        for (int i = 0; i < HandoffManager.CHUNK_SIZE * 2; i++) {
+            json.append((char) ('a' + random.nextInt(26)));
+        }
+        deliver(manager, HandoffManager.encode(uuid, 1, json.toString()).get(0));
+
+        assertNull(manager.take(uuid, 1));
+    }
+}
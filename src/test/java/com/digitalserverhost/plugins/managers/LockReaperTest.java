@@ -0,0 +1,64 @@
+package com.digitalserverhost.plugins.managers;
+
+import com.digitalserverhost.plugins.metrics.BridgeMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class LockReaperTest {
+
+    @Mock
+    private DatabaseManager databaseManager;
+
+    private final BridgeMetrics metrics = new BridgeMetrics();
+    private LockReaper reaper;
+
+    @BeforeEach
+    void setUp() {
+        reaper = new LockReaper(databaseManager, metrics, Logger.getLogger("LockReaperTest"), 100, 0);
+        when(databaseManager.getLockTimeout()).thenReturn(60000L);
+    }
+
+    @Test
+    void testRun_ReapsEachHolderPastTheLockTimeout() throws Exception {
+        when(databaseManager.findLockHolders()).thenReturn(List.of("server-1", "crashed-server"));
+        when(databaseManager.releaseExpiredLocks(eq("server-1"), anyLong(), eq(100), eq(0L))).thenReturn(0);
+        when(databaseManager.releaseExpiredLocks(eq("crashed-server"), anyLong(), eq(100), eq(0L))).thenReturn(7);
+
+        long before = System.currentTimeMillis();
+        reaper.run();
+        long after = System.currentTimeMillis();
+
+        ArgumentCaptor<Long> expiredBefore = ArgumentCaptor.forClass(Long.class);
+        verify(databaseManager).releaseExpiredLocks(eq("crashed-server"), expiredBefore.capture(), eq(100), eq(0L));
+        assertTrue(expiredBefore.getValue() >= before - 60000 && expiredBefore.getValue() <= after - 60000);
+
+        assertEquals(7, metrics.reapedLocks.sum());
+        List<String> report = metrics.getRegistry().report();
+        assertTrue(report.contains("mcdb_reaped_locks_total{server=\"crashed-server\"}: 7"));
+        assertFalse(report.stream().anyMatch(line -> line.contains("server-1")));
+    }
+
+    @Test
+    void testRun_DatabaseErrorIsLoggedNotThrown() throws Exception {
+        when(databaseManager.findLockHolders()).thenThrow(new SQLException("Connection refused"));
+
+        assertDoesNotThrow(reaper::run);
+        verify(databaseManager, never()).releaseExpiredLocks(anyString(), anyLong(), anyInt(), anyLong());
+        assertEquals(0, metrics.reapedLocks.sum());
+    }
+}
@@ -0,0 +1,126 @@
+package com.digitalserverhost.plugins.managers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PlayerNameIndexTest {
+
+    @Mock
+    private DatabaseManager databaseManager;
+
+    private PlayerNameIndex index;
+    private final UUID uuid = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        index = new PlayerNameIndex(databaseManager, 2);
+    }
+
+    @Test
+    void testResolve_RecordedNameIsAnsweredFromMemory() throws SQLException {
+        index.record(uuid, "Notch");
+
+        assertEquals(uuid, index.resolve("notch"));
+        assertEquals("Notch", index.nameOf(uuid));
+        verify(databaseManager).recordPlayerName(uuid, "Notch");
+        verify(databaseManager, never()).findUuidByName(anyString());
+        verify(databaseManager, never()).findNameByUuid(any());
+    }
+
+    @Test
+    void testResolve_UuidNeedsNoLookup() throws SQLException {
+        assertEquals(uuid, index.resolve(uuid.toString()));
+        verifyNoInteractions(databaseManager);
+    }
+
+    @Test
+    void testResolve_MissFallsBackToTableAndIsCached() throws SQLException {
+        when(databaseManager.findUuidByName("Jeb_")).thenReturn(uuid);
+
+        assertEquals(uuid, index.resolve("Jeb_"));
+        assertEquals(uuid, index.resolve("JEB_"));
+        verify(databaseManager, times(1)).findUuidByName(anyString());
+    }
+
+    @Test
+    void testResolve_UnknownNameIsNotCached() throws SQLException {
+        when(databaseManager.findUuidByName("Nobody")).thenReturn(null, uuid);
+
+        assertNull(index.resolve("Nobody"));
+        assertEquals(uuid, index.resolve("Nobody"));
+    }
+
+    @Test
+    void testRecord_RenameForgetsTheOldName() throws SQLException {
+        index.record(uuid, "OldName");
+        index.record(uuid, "NewName");
+
+        assertNull(index.resolve("OldName"));
+        assertEquals(uuid, index.resolve("NewName"));
+        verify(databaseManager).findUuidByName("OldName");
+    }
+
+    @Test
+    void testCache_EvictsLeastRecentlyUsed() throws SQLException {
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+        index.record(uuid, "First");
+        index.record(second, "Second");
+        index.resolve("First"); // Now the most recently used
+        index.record(third, "Third");
+
+        index.resolve("First");
+        index.resolve("Second");
+        verify(databaseManager, never()).findUuidByName("First");
+        verify(databaseManager).findUuidByName("Second");
+    }
+
+    @Test
+    void testResolve_CachedHitExpires() throws SQLException {
+        AtomicLong now = new AtomicLong();
+        PlayerNameIndex expiring = new PlayerNameIndex(databaseManager, 2, 60_000, now::get);
+        UUID newOwner = UUID.randomUUID();
+        expiring.record(uuid, "Notch");
+        when(databaseManager.findUuidByName("Notch")).thenReturn(newOwner);
+
+        now.set(59_999);
+        assertEquals(uuid, expiring.resolve("Notch"));
+        now.set(60_000);
+        // The name moved to another account through a login elsewhere
+        assertEquals(newOwner, expiring.resolve("Notch"));
+    }
+
+    @Test
+    void testResolveFresh_AlwaysAsksTheTable() throws SQLException {
+        UUID newOwner = UUID.randomUUID();
+        index.record(uuid, "Notch");
+        when(databaseManager.findUuidByName("Notch")).thenReturn(newOwner);
+
+        assertEquals(newOwner, index.resolveFresh("Notch"));
+        assertEquals(newOwner, index.resolve("notch"));
+    }
+
+    @Test
+    void testRecord_NameClaimedByNewUuidForgetsTheOldOwner() throws SQLException {
+        UUID newOwner = UUID.randomUUID();
+        index.record(uuid, "Notch");
+        index.record(newOwner, "Notch");
+        when(databaseManager.findNameByUuid(uuid)).thenReturn(null);
+
+        assertEquals(newOwner, index.resolve("Notch"));
+        assertNull(index.nameOf(uuid));
+        verify(databaseManager).findNameByUuid(uuid);
+    }
+}
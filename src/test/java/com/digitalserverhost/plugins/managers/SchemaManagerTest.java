@@ -0,0 +1,122 @@
+package com.digitalserverhost.plugins.managers;
+
+import com.digitalserverhost.plugins.managers.migrations.Migration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SchemaManagerTest {
+
+    @Mock
+    private DatabaseManager mockDatabaseManager;
+    @Mock
+    private Connection mockConnection;
+    @Mock
+    private Statement mockStatement;
+    @Mock
+    private ResultSet mockResultSet;
+    @Mock
+    private Migration mockMigration;
+
+    private SchemaManager schemaManager;
+
+    @BeforeEach
+    void setup() throws SQLException {
+        lenient().when(mockDatabaseManager.getConnection()).thenReturn(mockConnection);
+        lenient().when(mockConnection.createStatement()).thenReturn(mockStatement);
+        lenient().when(mockMigration.getVersion()).thenReturn(1);
+        schemaManager = new SchemaManager(mockDatabaseManager, "player_data", null, Logger.getLogger("MCDataBridge"),
+                List.of(mockMigration));
+    }
+
+    @Test
+    void testDefaultMigrations_VersionsAreContiguous() {
+        List<Migration> migrations = SchemaManager.defaultMigrations();
+
+        for (int i = 0; i < migrations.size(); i++) {
+            assertEquals(i + 1, migrations.get(i).getVersion(), migrations.get(i).getDescription());
+        }
+    }
+
+    @Test
+    void testMigrate_StartupStepRunsBeforeReady() throws SQLException {
+        when(mockStatement.executeQuery(contains("SELECT version FROM `player_data_schema`")))
+                .thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true).thenReturn(false);
+        when(mockResultSet.getInt("version")).thenReturn(1);
+        List<Boolean> readyDuringStep = new ArrayList<>();
+
+        assertTrue(schemaManager.migrate(() -> readyDuringStep.add(schemaManager.awaitReady(0))));
+
+        assertEquals(List.of(false), readyDuringStep);
+        assertTrue(schemaManager.isReady());
+    }
+
+    @Test
+    void testMigrate_UpToDate_SingleVersionCheck() throws SQLException {
+        when(mockStatement.executeQuery(contains("SELECT version FROM `player_data_schema`")))
+                .thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true).thenReturn(false);
+        when(mockResultSet.getInt("version")).thenReturn(1);
+
+        assertTrue(schemaManager.migrate());
+
+        assertTrue(schemaManager.isReady());
+        verify(mockStatement, times(1)).executeQuery(anyString());
+        verify(mockStatement, never()).executeUpdate(anyString());
+        verify(mockConnection, never()).prepareStatement(anyString()); // No schema lock taken
+        verify(mockMigration, never()).migrate(any());
+    }
+
+    @Test
+    void testMigrate_FreshDatabase_AppliesAndRecordsMigration() throws SQLException {
+        ResultSet emptyResultSet = mock(ResultSet.class);
+        when(mockStatement.executeQuery(contains("SELECT version")))
+                .thenThrow(new SQLException("Table 'player_data_schema' doesn't exist"))
+                .thenReturn(emptyResultSet);
+
+        PreparedStatement lockStatement = mock(PreparedStatement.class);
+        PreparedStatement releaseStatement = mock(PreparedStatement.class);
+        PreparedStatement insertStatement = mock(PreparedStatement.class);
+        when(mockConnection.prepareStatement(contains("GET_LOCK"))).thenReturn(lockStatement);
+        when(mockConnection.prepareStatement(contains("RELEASE_LOCK"))).thenReturn(releaseStatement);
+        when(mockConnection.prepareStatement(contains("INSERT IGNORE"))).thenReturn(insertStatement);
+        when(lockStatement.executeQuery()).thenReturn(mockResultSet);
+        when(releaseStatement.executeQuery()).thenReturn(mock(ResultSet.class));
+        when(mockResultSet.next()).thenReturn(true);
+        when(mockResultSet.getInt(1)).thenReturn(1);
+        when(mockMigration.migrate(any())).thenReturn(true);
+
+        assertTrue(schemaManager.migrate());
+
+        assertTrue(schemaManager.awaitReady(0));
+        verify(mockStatement).executeUpdate(contains("CREATE TABLE IF NOT EXISTS `player_data_schema`"));
+        verify(mockMigration).migrate(any());
+        verify(insertStatement).setInt(1, 1);
+        verify(insertStatement).executeUpdate();
+    }
+
+    @Test
+    void testAwaitReady_TimesOutBeforeMigration() {
+        assertFalse(schemaManager.awaitReady(10));
+        assertFalse(schemaManager.isReady());
+    }
+}
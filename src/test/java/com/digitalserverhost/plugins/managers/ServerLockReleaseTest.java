@@ -0,0 +1,60 @@
+package com.digitalserverhost.plugins.managers;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ServerLockReleaseTest {
+
+    private static final long NOW = 1_000_000L;
+
+    @Mock
+    private DatabaseManager databaseManager;
+
+    private final List<Runnable> scheduled = new ArrayList<>();
+    private final List<Long> delays = new ArrayList<>();
+
+    private ServerLockRelease release() {
+        // 30 s heartbeat: a lock is fair game once it missed 60 s of refreshes
+        return new ServerLockRelease(databaseManager, Logger.getLogger("ServerLockReleaseTest"), 30, 100, 0,
+                (task, delayMs) -> {
+                    scheduled.add(task);
+                    delays.add(delayMs);
+                }, () -> NOW);
+    }
+
+    @Test
+    void testDownForLessThanTheHeartbeatFence_ReleasedOnceTheFencePasses() throws Exception {
+        when(databaseManager.releaseServerLocks("crashed-server", NOW - 60_000, 100, 0)).thenReturn(0);
+        when(databaseManager.releaseServerLocks("crashed-server", NOW - 15_000, 100, 0)).thenReturn(4);
+
+        // The proxy reports the crash after two failed pings
+        release().release("crashed-server", 15_000);
+
+        verify(databaseManager).releaseServerLocks("crashed-server", NOW - 60_000, 100, 0);
+        assertEquals(List.of(45_000L), delays);
+
+        scheduled.get(0).run();
+        // Locks refreshed after the server stopped answering are still kept
+        verify(databaseManager).releaseServerLocks("crashed-server", NOW - 15_000, 100, 0);
+    }
+
+    @Test
+    void testDownForLongerThanTheHeartbeatFence_ReleasedRightAway() throws Exception {
+        when(databaseManager.releaseServerLocks("crashed-server", NOW - 90_000, 100, 0)).thenReturn(4);
+
+        release().release("crashed-server", 90_000);
+
+        verify(databaseManager).releaseServerLocks("crashed-server", NOW - 90_000, 100, 0);
+        assertTrue(scheduled.isEmpty());
+    }
+}
@@ -0,0 +1,82 @@
+package com.digitalserverhost.plugins.managers.migrations;
+
+import org.bukkit.configuration.file.FileConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OnlineColumnMigratorTest {
+
+    private Connection connectionFor(String productVersion, int major, int minor) throws SQLException {
+        Connection connection = mock(Connection.class);
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.getDatabaseProductVersion()).thenReturn(productVersion);
+        when(metaData.getDatabaseMajorVersion()).thenReturn(major);
+        when(metaData.getDatabaseMinorVersion()).thenReturn(minor);
+        return connection;
+    }
+
+    @Test
+    void testIsSupported_MySql() throws SQLException {
+        assertTrue(OnlineColumnMigrator.isSupported(connectionFor("8.0.36", 8, 0)));
+        assertFalse(OnlineColumnMigrator.isSupported(connectionFor("5.7.44-log", 5, 7)));
+    }
+
+    @Test
+    void testIsSupported_MariaDb() throws SQLException {
+        assertTrue(OnlineColumnMigrator.isSupported(connectionFor("10.11.6-MariaDB", 10, 11)));
+        assertTrue(OnlineColumnMigrator.isSupported(connectionFor("11.4.2-MariaDB", 11, 4)));
+        assertFalse(OnlineColumnMigrator.isSupported(connectionFor("10.4.32-MariaDB", 10, 4)));
+    }
+
+    @Test
+    void testForEachChunk_BoundedChunksThenAnOpenTail() throws SQLException {
+        Connection connection = mock(Connection.class);
+        FileConfiguration config = mock(FileConfiguration.class);
+        when(config.getInt("online-migration.chunk-size", 1000)).thenReturn(100);
+        when(config.getLong("online-migration.throttle-ms", 50)).thenReturn(0L);
+        MigrationContext context = new MigrationContext(connection, null, "player_data", config,
+                Logger.getLogger("OnlineColumnMigratorTest"));
+
+        PreparedStatement boundary = mock(PreparedStatement.class);
+        PreparedStatement chunk = mock(PreparedStatement.class);
+        PreparedStatement tail = mock(PreparedStatement.class);
+        ResultSet boundaries = mock(ResultSet.class);
+        String update = "UPDATE `player_data` SET data_size = LENGTH(data) WHERE uuid > ?";
+        when(connection.prepareStatement(startsWith("SELECT uuid FROM `player_data`"))).thenReturn(boundary);
+        when(connection.prepareStatement(update + " AND uuid <= ?")).thenReturn(chunk);
+        when(connection.prepareStatement(update)).thenReturn(tail);
+        when(boundary.executeQuery()).thenReturn(boundaries);
+        when(boundaries.next()).thenReturn(true, true, false);
+        when(boundaries.getString(1)).thenReturn("b", "d");
+        when(chunk.executeUpdate()).thenReturn(100, 100);
+        when(tail.executeUpdate()).thenReturn(7);
+
+        List<String> progress = new ArrayList<>();
+        long updated = OnlineColumnMigrator.forEachChunk(context, update,
+                (chunks, rows, upperBound) -> progress.add(chunks + ":" + rows + ":" + upperBound));
+
+        assertEquals(207, updated);
+        assertEquals(List.of("1:100:b", "2:200:d"), progress);
+        verify(boundary, times(3)).setInt(2, 99);
+        verify(chunk).setString(2, "d");
+        verify(tail).setString(1, "d");
+    }
+}
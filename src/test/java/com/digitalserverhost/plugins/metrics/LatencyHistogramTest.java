@@ -0,0 +1,33 @@
+package com.digitalserverhost.plugins.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    void testPercentilesUseBucketUpperBounds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(8); // 10 ms bucket
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(150); // 200 ms bucket
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(10, histogram.getPercentile(50));
+        assertEquals(150, histogram.getPercentile(99)); // Capped at the max seen
+        assertEquals(150, histogram.getMax());
+        assertEquals(22.2, histogram.getMean(), 0.001);
+    }
+
+    @Test
+    void testEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getPercentile(99));
+        assertEquals(0.0, histogram.getMean());
+    }
+}
@@ -0,0 +1,47 @@
+package com.digitalserverhost.plugins.metrics;
+
+import com.digitalserverhost.plugins.metrics.MainThreadBudget.Section;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MainThreadBudgetTest {
+
+    @Test
+    void testWarningNamesHeaviestPlayerAndSection() {
+        MainThreadBudget budget = new MainThreadBudget(new MetricsRegistry());
+        budget.setBudgetNanos(5_000_000);
+
+        budget.record("Alex", Section.INVENTORY, 1_000_000);
+        budget.record("Steve", Section.INVENTORY, 2_000_000);
+        budget.record("Steve", Section.ADVANCEMENTS, 4_000_000);
+
+        String warning = budget.endTick();
+        assertNotNull(warning);
+        assertTrue(warning.contains("7.00 ms"), warning);
+        assertTrue(warning.contains("2 player(s)"), warning);
+        assertTrue(warning.contains("Steve's advancements (4.00 ms)"), warning);
+    }
+
+    @Test
+    void testTicksAreIndependent() {
+        MainThreadBudget budget = new MainThreadBudget(new MetricsRegistry());
+        budget.setBudgetNanos(5_000_000);
+
+        budget.record("Steve", Section.INVENTORY, 3_000_000);
+        assertNull(budget.endTick());
+        budget.record("Steve", Section.INVENTORY, 3_000_000);
+        assertNull(budget.endTick()); // 6 ms in total, but over two ticks
+        assertNull(budget.endTick()); // Idle tick
+    }
+
+    @Test
+    void testZeroBudgetDisablesWarning() {
+        MetricsRegistry registry = new MetricsRegistry();
+        MainThreadBudget budget = new MainThreadBudget(registry);
+
+        budget.record("Steve", Section.ENDER_CHEST, 50_000_000);
+        assertNull(budget.endTick());
+        assertTrue(registry.report().contains("mcdb_main_thread_over_budget_total: 0"));
+    }
+}
@@ -0,0 +1,99 @@
+package com.digitalserverhost.plugins.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsRegistryTest {
+
+    @Test
+    void testPrometheusOutput() {
+        MetricsRegistry registry = new MetricsRegistry();
+        LatencyHistogram histogram = registry.histogram("mcdb_test_us", "Test timing.");
+        LongAdder counter = registry.counter("mcdb_test_total", "Test counter.");
+        registry.gauge("mcdb_test_gauge", "Test gauge.", () -> 7);
+
+        histogram.record(40);
+        histogram.record(60);
+        counter.add(3);
+
+        String text = registry.toPrometheus();
+        assertTrue(text.contains("# TYPE mcdb_test_us summary\n"));
+        assertTrue(text.contains("mcdb_test_us{quantile=\"0.50\"} 50\n"));
+        assertTrue(text.contains("mcdb_test_us_sum 100\n"));
+        assertTrue(text.contains("mcdb_test_us_count 2\n"));
+        assertTrue(text.contains("# TYPE mcdb_test_total counter\nmcdb_test_total 3\n"));
+        assertTrue(text.contains("# TYPE mcdb_test_gauge gauge\nmcdb_test_gauge 7\n"));
+    }
+
+    @Test
+    void testLabeledCounter_OneMetricWithASeriesPerValue() {
+        MetricsRegistry registry = new MetricsRegistry();
+        LabeledCounter counter = registry.labeledCounter("mcdb_test_total", "server", "Test counter.");
+        assertEquals(List.of("mcdb_test_total: 0"), registry.report());
+
+        counter.add("lobby-2", 2);
+        counter.add("lobby-1", 3);
+        counter.add("say \"hi\"", 1);
+
+        assertEquals(6, counter.sum());
+        assertEquals(3, counter.get("lobby-1"));
+        String text = registry.toPrometheus();
+        assertTrue(text.contains("# TYPE mcdb_test_total counter\n"
+                + "mcdb_test_total{server=\"lobby-1\"} 3\n"
+                + "mcdb_test_total{server=\"lobby-2\"} 2\n"));
+        assertTrue(text.contains("mcdb_test_total{server=\"say \\\"hi\\\"\"} 1\n"));
+        assertTrue(registry.report().contains("mcdb_test_total{server=\"lobby-1\"}: 3"));
+    }
+
+    @Test
+    void testReportKeepsRegistrationOrder() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("b_total", "B.");
+        registry.counter("a_total", "A.");
+
+        List<String> report = registry.report();
+        assertEquals(List.of("b_total: 0", "a_total: 0"), report);
+    }
+
+    @Test
+    void testDuplicateNameRejected() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("mcdb_test_total", "Test counter.");
+
+        assertThrows(IllegalArgumentException.class, () -> registry.histogram("mcdb_test_total", "Again."));
+    }
+
+    @Test
+    void testWriteTo(@TempDir Path dir) throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("mcdb_test_total", "Test counter.").increment();
+
+        Path file = dir.resolve("metrics.prom");
+        registry.writeTo(file);
+
+        assertTrue(Files.readString(file).contains("mcdb_test_total 1\n"));
+        assertFalse(Files.exists(dir.resolve("metrics.prom.tmp")));
+    }
+
+    @Test
+    void testPoolGaugesBeforePoolStarts() {
+        BridgeMetrics metrics = new BridgeMetrics();
+        metrics.registerPool(() -> null);
+
+        assertTrue(metrics.getRegistry().report().contains("mcdb_pool_active_connections: -1"));
+    }
+
+    @Test
+    void testUtf8Length() {
+        assertEquals(3, BridgeMetrics.utf8Length("abc"));
+        assertEquals("é€😀".getBytes(java.nio.charset.StandardCharsets.UTF_8).length,
+                BridgeMetrics.utf8Length("é€😀"));
+    }
+}
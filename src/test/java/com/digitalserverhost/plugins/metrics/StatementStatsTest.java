@@ -0,0 +1,81 @@
+package com.digitalserverhost.plugins.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatementStatsTest {
+
+    private final List<String> logged = new ArrayList<>();
+
+    private Logger capturingLogger() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                logged.add(record.getMessage());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        return logger;
+    }
+
+    @Test
+    void testSlowStatementIsLoggedWithContext() {
+        MetricsRegistry registry = new MetricsRegistry();
+        StatementStats stats = new StatementStats(registry, capturingLogger());
+        stats.setSlowThresholdMs(1);
+        UUID uuid = UUID.randomUUID();
+
+        StatementStats.Statement statement = stats.register("lock_acquire", "UPDATE t SET is_locked = 1");
+        statement.record(System.nanoTime() - 5_000_000, 1, 0, uuid, "lobby", 3);
+
+        assertEquals(1, logged.size());
+        String message = logged.get(0);
+        assertTrue(message.startsWith("Slow statement lock_acquire took"), message);
+        assertTrue(message.contains("player " + uuid), message);
+        assertTrue(message.contains("server lobby"), message);
+        assertTrue(message.contains("lock attempt 3"), message);
+        assertTrue(message.endsWith("UPDATE t SET is_locked = 1"), message);
+        assertTrue(registry.report().contains("mcdb_sql_lock_acquire_slow_total: 1"));
+    }
+
+    @Test
+    void testFastStatementIsCountedNotLogged() {
+        MetricsRegistry registry = new MetricsRegistry();
+        StatementStats stats = new StatementStats(registry, capturingLogger());
+        stats.setSlowThresholdMs(1000);
+
+        StatementStats.Statement statement = stats.register("save_release", "UPDATE t SET data = ?");
+        statement.record(System.nanoTime(), 1, 2048, null, "lobby", 0);
+        statement.record(System.nanoTime(), 0, 1024, null, "lobby", 0);
+
+        assertTrue(logged.isEmpty());
+        List<String> report = registry.report();
+        assertTrue(report.contains("mcdb_sql_save_release_rows_total: 1"));
+        assertTrue(report.contains("mcdb_sql_save_release_bytes_total: 3072"));
+        assertTrue(stats.report().get(0).startsWith("save_release: n=2"));
+    }
+
+    @Test
+    void testRegisterReturnsSameStatement() {
+        StatementStats stats = new StatementStats(new MetricsRegistry(), capturingLogger());
+
+        assertSame(stats.register("lock_release", "UPDATE a"), stats.register("lock_release", "UPDATE a"));
+    }
+}
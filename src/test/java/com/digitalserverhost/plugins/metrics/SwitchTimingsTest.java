@@ -0,0 +1,45 @@
+package com.digitalserverhost.plugins.metrics;
+
+import com.digitalserverhost.plugins.protocol.SaveTimings;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SwitchTimingsTest {
+
+    @Test
+    void testCompleteReportsEveryStage() {
+        MetricsRegistry registry = new MetricsRegistry();
+        SwitchTimings timings = new SwitchTimings(registry);
+
+        SwitchTimings.Trace trace = timings.start(0xbeefL, 40_000, new SaveTimings(2_000, 1_000, 30_000));
+        trace.setLockUs(1_500);
+        trace.setLoadUs(6_000);
+        String line = trace.complete("Steve", 3_000);
+
+        assertTrue(line.startsWith("[trace 000000000000beef] Switch of Steve took "), line);
+        assertTrue(line.contains("save wait 40.0 ms (capture 2.0 ms, serialize 1.0 ms, save 30.0 ms)"), line);
+        assertTrue(line.endsWith("lock 1.5 ms, load 6.0 ms, apply 3.0 ms."), line);
+
+        String prometheus = registry.toPrometheus();
+        assertTrue(prometheus.contains("mcdb_switch_total_us_count 1"), prometheus);
+        assertTrue(prometheus.contains("mcdb_switch_source_save_us_count 1"), prometheus);
+        assertTrue(prometheus.contains("mcdb_switch_apply_us_count 1"), prometheus);
+    }
+
+    @Test
+    void testTraceFromTheRowOnlyReportsLocalStages() {
+        MetricsRegistry registry = new MetricsRegistry();
+        SwitchTimings timings = new SwitchTimings(registry);
+
+        SwitchTimings.Trace trace = timings.start(0x1L, -1, null);
+        trace.setLoadUs(2_000);
+        String line = trace.complete("Alex", 1_000);
+
+        assertTrue(line.contains("Switch of Alex finished here in "), line);
+        assertFalse(line.contains("lock"), line);
+        String prometheus = registry.toPrometheus();
+        assertTrue(prometheus.contains("mcdb_switch_total_us_count 0"), prometheus);
+        assertTrue(prometheus.contains("mcdb_switch_load_us_count 1"), prometheus);
+    }
+}
@@ -0,0 +1,150 @@
+package com.digitalserverhost.plugins.protocol;
+
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BridgeProtocolTest {
+
+    @Test
+    void testBatchRoundTrip() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        byte[] message = BridgeProtocol.encode(List.of(
+                BridgeCommand.saveAndRelease(first, 11),
+                BridgeCommand.saveAndRelease(second, 12),
+                BridgeCommand.saved(first, 11, 42L)));
+
+        BridgeFrame frame = BridgeProtocol.decode(message);
+
+        assertFalse(frame.isLegacy());
+        assertEquals(3, frame.getCommands().size());
+        assertEquals(BridgeCommand.SAVE_AND_RELEASE, frame.getCommands().get(0).getType());
+        assertEquals(first, frame.getCommands().get(0).getUuid());
+        assertEquals(12, frame.getCommands().get(1).getRequestId());
+        assertEquals(42L, frame.getCommands().get(2).getVersion());
+    }
+
+    @Test
+    void testHandoffRoundTrip() {
+        UUID uuid = UUID.randomUUID();
+        byte[] chunk = { 1, 2, 3, 4 };
+
+        BridgeCommand command = BridgeProtocol.decode(
+                BridgeProtocol.encode(BridgeCommand.handoff(uuid, 7L, 1, 3, chunk))).getCommands().get(0);
+
+        assertEquals(uuid, command.getUuid());
+        assertEquals(7L, command.getVersion());
+        assertEquals(1, command.getIndex());
+        assertEquals(3, command.getTotal());
+        assertArrayEquals(chunk, command.getData());
+    }
+
+    @Test
+    void testServerCommandsRoundTrip() {
+        List<BridgeCommand> commands = BridgeProtocol.decode(BridgeProtocol.encode(List.of(
+                BridgeCommand.hello("survival-1"),
+                BridgeCommand.releaseServer("lobby-2", 4500L)))).getCommands();
+
+        assertEquals("survival-1", commands.get(0).getServerId());
+        assertEquals(BridgeCommand.RELEASE_SERVER, commands.get(1).getType());
+        assertEquals("lobby-2", commands.get(1).getServerId());
+        assertEquals(4500L, commands.get(1).getVersion());
+    }
+
+    @Test
+    void testUnknownCommandsAndTrailingFieldsAreSkipped() {
+        UUID uuid = UUID.randomUUID();
+        // A newer sender: an unknown type 99, then a prefetch with an extra field
+        ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        out.writeByte(BridgeProtocol.VERSION + 1);
+        out.writeShort(2);
+        out.writeByte(99);
+        out.writeInt(3);
+        out.write(new byte[] { 7, 7, 7 });
+        out.writeByte(BridgeCommand.PREFETCH);
+        out.writeInt(20);
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+        out.writeInt(123);
+
+        BridgeFrame frame = BridgeProtocol.decode(out.toByteArray());
+
+        assertEquals(1, frame.getCommands().size());
+        assertEquals(BridgeCommand.PREFETCH, frame.getCommands().get(0).getType());
+        assertEquals(uuid, frame.getCommands().get(0).getUuid());
+    }
+
+    @Test
+    void testLegacySaveAndRelease() {
+        UUID uuid = UUID.randomUUID();
+        byte[] legacy = BridgeProtocol.encodeLegacy(BridgeCommand.saveAndRelease(uuid, 5));
+
+        BridgeFrame frame = BridgeProtocol.decode(legacy);
+
+        assertTrue(frame.isLegacy());
+        assertEquals(uuid, frame.getCommands().get(0).getUuid());
+        assertNull(BridgeProtocol.encodeLegacy(BridgeCommand.prefetch(uuid)));
+    }
+
+    @Test
+    void testTruncatedFrameIsRejected() {
+        byte[] message = BridgeProtocol.encode(BridgeCommand.saveAndRelease(UUID.randomUUID(), 1));
+        byte[] truncated = new byte[message.length - 4];
+        System.arraycopy(message, 0, truncated, 0, truncated.length);
+
+        assertThrows(IllegalArgumentException.class, () -> BridgeProtocol.decode(truncated));
+    }
+
+    @Test
+    void testTraceRoundTrip() {
+        UUID uuid = UUID.randomUUID();
+        SaveTimings timings = new SaveTimings(1200L, 800L, 15000L);
+        List<BridgeCommand> commands = BridgeProtocol.decode(BridgeProtocol.encode(List.of(
+                BridgeCommand.saveAndRelease(uuid, 4, 77L),
+                BridgeCommand.saved(uuid, 4, 9L, 77L, timings),
+                BridgeCommand.prefetch(uuid, 77L, 30000L, timings),
+                BridgeCommand.saved(uuid, 5, -1L, 78L, null)))).getCommands();
+
+        assertEquals(77L, commands.get(0).getTraceId());
+        assertEquals(4, commands.get(0).getRequestId());
+        assertEquals(77L, commands.get(1).getTraceId());
+        assertEquals(9L, commands.get(1).getVersion());
+        assertEquals(timings, commands.get(1).getTimings());
+        assertEquals(77L, commands.get(2).getTraceId());
+        assertEquals(30000L, commands.get(2).getSaveWaitUs());
+        assertEquals(0L, commands.get(2).getVersion());
+        assertEquals(timings, commands.get(2).getTimings());
+        assertEquals(78L, commands.get(3).getTraceId());
+        assertNull(commands.get(3).getTimings());
+    }
+
+    @Test
+    void testCommandsWithoutTraceFromOlderSenders() {
+        UUID uuid = UUID.randomUUID();
+        ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        out.writeByte(BridgeProtocol.VERSION);
+        out.writeShort(2);
+        out.writeByte(BridgeCommand.SAVE_AND_RELEASE);
+        out.writeInt(20);
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+        out.writeInt(6);
+        out.writeByte(BridgeCommand.PREFETCH);
+        out.writeInt(16);
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+
+        List<BridgeCommand> commands = BridgeProtocol.decode(out.toByteArray()).getCommands();
+
+        assertEquals(6, commands.get(0).getRequestId());
+        assertEquals(TraceId.NONE, commands.get(0).getTraceId());
+        assertEquals(TraceId.NONE, commands.get(1).getTraceId());
+        assertNull(commands.get(1).getTimings());
+    }
+}
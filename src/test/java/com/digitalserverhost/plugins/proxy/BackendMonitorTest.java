@@ -0,0 +1,53 @@
+package com.digitalserverhost.plugins.proxy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BackendMonitorTest {
+
+    private final List<String> downServers = new ArrayList<>();
+    private final BackendMonitor monitor = new BackendMonitor(downServers::add, Logger.getLogger("MCDataBridge"));
+
+    @Test
+    void testDownAfterConsecutiveFailures_ReportedOnce() {
+        monitor.onHello("lobby", "lobby-1");
+
+        monitor.onPing("lobby", false);
+        assertTrue(monitor.isUp("lobby"));
+        assertTrue(downServers.isEmpty());
+
+        monitor.onPing("lobby", false);
+        monitor.onPing("lobby", false);
+
+        assertFalse(monitor.isUp("lobby"));
+        assertEquals(List.of("lobby"), downServers);
+        assertEquals("lobby-1", monitor.getServerId("lobby"));
+    }
+
+    @Test
+    void testRecoveryResetsFailures() {
+        monitor.onHello("lobby", "lobby-1");
+
+        monitor.onPing("lobby", false);
+        monitor.onPing("lobby", true);
+        monitor.onPing("lobby", false);
+
+        assertTrue(monitor.isUp("lobby"));
+        assertEquals(0, monitor.getDownForMs("lobby"));
+        assertTrue(downServers.isEmpty());
+    }
+
+    @Test
+    void testUnannouncedServersAreIgnored() {
+        monitor.onPing("unknown", false);
+        monitor.onPing("unknown", false);
+
+        assertTrue(downServers.isEmpty());
+        assertFalse(monitor.getKnownServers().contains("unknown"));
+    }
+}
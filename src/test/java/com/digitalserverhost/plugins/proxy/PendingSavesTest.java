@@ -0,0 +1,87 @@
+package com.digitalserverhost.plugins.proxy;
+
+import com.digitalserverhost.plugins.protocol.BridgeCommand;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PendingSavesTest {
+
+    private final Set<String> connected = new HashSet<>();
+    private final PendingSaves pendingSaves = new PendingSaves(5000, connected::contains);
+    private final UUID uuid = UUID.randomUUID();
+
+    @Test
+    void testLegacySource_NoAckExpected() {
+        assertFalse(pendingSaves.expectsAck("lobby"));
+        assertFalse(pendingSaves.isFramed("lobby"));
+    }
+
+    @Test
+    void testFramedOrControlConnectedSource_AckExpected() {
+        pendingSaves.onFrame("lobby");
+        connected.add("survival");
+
+        assertTrue(pendingSaves.expectsAck("lobby"));
+        assertTrue(pendingSaves.isFramed("lobby"));
+        assertTrue(pendingSaves.expectsAck("survival"));
+        assertFalse(pendingSaves.isFramed("survival"));
+    }
+
+    @Test
+    void testMatchingSaved_CompletesTheSave() {
+        PendingSaves.PendingSave save = pendingSaves.begin(uuid, 1L);
+
+        pendingSaves.onAck(BridgeCommand.saved(uuid, save.requestId() + 1, 3));
+        assertFalse(save.future().isDone());
+
+        BridgeCommand saved = BridgeCommand.saved(uuid, save.requestId(), 3);
+        pendingSaves.onAck(saved);
+        assertSame(saved, save.future().join());
+        assertTrue(pendingSaves.finish(uuid, save));
+    }
+
+    @Test
+    void testLockReleased_CompletesTheSave() {
+        PendingSaves.PendingSave save = pendingSaves.begin(uuid, 1L);
+
+        BridgeCommand released = BridgeCommand.lockReleased(uuid, 3);
+        pendingSaves.onAck(released);
+
+        assertSame(released, save.future().join());
+    }
+
+    @Test
+    void testNewerRequest_SupersedesTheOld() {
+        PendingSaves.PendingSave first = pendingSaves.begin(uuid, 1L);
+        PendingSaves.PendingSave second = pendingSaves.begin(uuid, 2L);
+
+        assertNotEquals(first.requestId(), second.requestId());
+        assertNull(first.future().join());
+        assertFalse(pendingSaves.finish(uuid, first));
+        assertFalse(second.future().isDone());
+    }
+
+    @Test
+    void testCancel_CompletesWithNull() {
+        PendingSaves.PendingSave save = pendingSaves.begin(uuid, 1L);
+
+        pendingSaves.cancel(uuid);
+
+        assertNull(save.future().join());
+        assertFalse(pendingSaves.finish(uuid, save));
+    }
+
+    @Test
+    void testNoAck_TimesOutWithNull() {
+        PendingSaves quick = new PendingSaves(10, server -> false);
+        PendingSaves.PendingSave save = quick.begin(uuid, 1L);
+
+        assertNull(save.future().join());
+        assertTrue(quick.finish(uuid, save));
+    }
+}
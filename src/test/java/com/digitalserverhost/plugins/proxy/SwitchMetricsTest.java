@@ -0,0 +1,88 @@
+package com.digitalserverhost.plugins.proxy;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SwitchMetricsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testCompleteSwitchIsRecordedPerRoute() throws Exception {
+        SwitchMetrics metrics = new SwitchMetrics();
+        UUID uuid = UUID.randomUUID();
+
+        metrics.onRequestSent(uuid, "lobby", "survival", 0x2aL);
+        assertTrue(metrics.onAck(uuid, true) >= 0);
+        metrics.onConnected(uuid, "survival");
+
+        List<String> report = metrics.report();
+        assertEquals("lobby -> survival", report.get(0));
+        assertTrue(report.get(1).contains("save:    n=1"));
+        assertTrue(report.get(3).contains("total:   n=1"));
+        assertTrue(report.get(4).endsWith("trace 000000000000002a"));
+
+        Path file = tempDir.resolve("switch-metrics.prom");
+        metrics.writeTo(file);
+        String content = Files.readString(file);
+        assertTrue(content.contains(
+                "mcdb_switch_ms_count{source=\"lobby\",destination=\"survival\",phase=\"connect\"} 1"));
+        assertTrue(content.contains(
+                "mcdb_switch_slowest_ms{source=\"lobby\",destination=\"survival\",trace=\"000000000000002a\"}"));
+    }
+
+    @Test
+    void testConnectToAnotherServerIsNotCounted() {
+        SwitchMetrics metrics = new SwitchMetrics();
+        UUID uuid = UUID.randomUUID();
+
+        metrics.onRequestSent(uuid, "lobby", "survival", 0x2bL);
+        metrics.onAck(uuid, false);
+        metrics.onConnected(uuid, "creative");
+
+        List<String> report = metrics.report();
+        assertEquals("lobby -> survival (1 unacknowledged)", report.get(0));
+        assertTrue(report.get(3).contains("n=0"));
+    }
+
+    @Test
+    void testPrometheusFamiliesAreGroupedAndLabelsEscaped() throws Exception {
+        SwitchMetrics metrics = new SwitchMetrics();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        metrics.onRequestSent(first, "lobby", "survival", 0x2cL);
+        metrics.onAck(first, false);
+        metrics.onRequestSent(second, "say \"hi\"\\", "survival", 0x2dL);
+        metrics.onAck(second, true);
+        metrics.onConnected(second, "survival");
+
+        Path file = tempDir.resolve("switch-metrics.prom");
+        metrics.writeTo(file);
+        List<String> lines = Files.readAllLines(file);
+
+        // Every sample follows the HELP and TYPE lines of its own family
+        String family = null;
+        for (String line : lines) {
+            if (line.startsWith("# TYPE ")) {
+                family = line.split(" ")[2];
+            } else if (!line.startsWith("#")) {
+                assertNotNull(family, line);
+                assertTrue(line.startsWith(family + "{") || line.startsWith(family + "_sum{")
+                        || line.startsWith(family + "_count{"), line);
+            }
+        }
+        assertEquals(3, lines.stream().filter(line -> line.startsWith("# HELP ")).count());
+        assertTrue(lines.contains(
+                "mcdb_switch_unacknowledged_total{source=\"lobby\",destination=\"survival\"} 1"));
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith(
+                "mcdb_switch_ms_count{source=\"say \\\"hi\\\"\\\\\",destination=\"survival\",phase=\"total\"} 1")));
+    }
+}
@@ -0,0 +1,60 @@
+package com.digitalserverhost.plugins.utils;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SectionSizingWriterTest {
+
+    private static final Gson GSON = new Gson();
+
+    // Field names match PlayerData's
+    @SuppressWarnings("unused")
+    private static class Payload {
+        double health = 20.0;
+        List<String> inventoryContentsNBT = List.of("AAAA", "BBBBBBBB");
+        List<String> armorContentsNBT = List.of("CC");
+        Map<String, List<String>> advancements = Map.of("story/root", List.of("crafting_table"));
+        String displayName = "Zoë 😀";
+    }
+
+    @Test
+    void testSectionsAddUpToTheSerializedPayload() throws IOException {
+        Payload payload = new Payload();
+        StringWriter buffer = new StringWriter();
+        SectionSizingWriter writer = new SectionSizingWriter(buffer);
+
+        GSON.toJson(payload, Payload.class, writer);
+
+        String json = buffer.toString();
+        assertEquals(GSON.toJson(payload), json);
+        assertEquals(json.getBytes(StandardCharsets.UTF_8).length, writer.getTotal());
+
+        long[] sizes = writer.getSizes();
+        long sum = 0;
+        for (long size : sizes) {
+            sum += size;
+        }
+        assertEquals(writer.getTotal(), sum);
+
+        assertEquals(",\"inventoryContentsNBT\":[\"AAAA\",\"BBBBBBBB\"]".length(),
+                sizes[PayloadSection.INVENTORY.ordinal()]);
+        assertEquals(",\"armorContentsNBT\":[\"CC\"]".length(), sizes[PayloadSection.ARMOR.ordinal()]);
+        assertEquals(",\"advancements\":{\"story/root\":[\"crafting_table\"]}".length(),
+                sizes[PayloadSection.ADVANCEMENTS.ordinal()]);
+        assertEquals(0, sizes[PayloadSection.ENDER_CHEST.ordinal()]);
+    }
+
+    @Test
+    void testOfFieldFallsBackToOther() {
+        assertEquals(PayloadSection.RECIPES, PayloadSection.ofField("discoveredRecipes"));
+        assertEquals(PayloadSection.OTHER, PayloadSection.ofField("health"));
+    }
+}